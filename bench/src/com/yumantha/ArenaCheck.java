@@ -0,0 +1,175 @@
+package com.yumantha;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Checks the two things ASTArena is for. First, that TreeWriter writes the same text for the arena
+// Parser fills as for the ASTNode tree, and that both reject the same inputs: on every sample, on
+// generated programs and on mutated copies of the samples. Then, that the arena retains far less
+// heap per node: the retained bytes of many live copies of each tree are reported, and the check
+// fails unless the arena takes at most half of what ASTNode does on a 1 MB program. Exits with
+// status 1 at the first failure.
+//
+//   java -cp classes com.yumantha.ArenaCheck [mutations] [seed]
+public class ArenaCheck {
+    private static final int GENERATED = 100;
+    private static final String[] JUNK = {";", "end", "begin", "(", ")", ":=", "x", "1", "pool", "else", "if", "then", "+",
+            "*", "<", "eof", ","};
+
+    public static void main(String[] args) throws IOException {
+        int mutations = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        Random random = new Random(args.length > 1 ? Long.parseLong(args[1]) : 11);
+        List<String> samples = BenchInputs.samples();
+        int rejected = 0;
+
+        for (String sample : samples) {
+            if (compare(sample) == null) {
+                fail("Both reject a sample", sample);
+            }
+        }
+
+        for (long seed = 0; seed < GENERATED; seed++) {
+            ProgramGenerator generator = new ProgramGenerator();
+            generator.size = 3000 + seed * 100;
+            generator.functions = (int) (seed % 5);
+            generator.depth = 1 + (int) (seed % 6);
+
+            String program = generator.generate(seed);
+
+            if (compare(program) == null) {
+                fail("Both reject generated program " + seed, program);
+            }
+        }
+
+        for (int i = 0; i < mutations; i++) {
+            StringBuilder source = new StringBuilder(samples.get(random.nextInt(samples.size())));
+            int at = random.nextInt(source.length());
+
+            if (random.nextBoolean()) {
+                source.delete(at, Math.min(source.length(), at + 1 + random.nextInt(5)));
+            } else {
+                source.insert(at, " " + JUNK[random.nextInt(JUNK.length)] + " ");
+            }
+
+            if (compare(source.toString()) == null) {
+                rejected++;
+            }
+        }
+
+        System.out.println(samples.size() + " samples, " + GENERATED + " generated programs and " + mutations
+                + " mutations give the same tree text, " + rejected + " of the mutations rejected by both");
+
+        System.out.printf("%n%-10s %7s %13s %13s%n", "file", "nodes", "ASTNode B/nd", "arena B/nd");
+
+        for (int i = 0; i < samples.size(); i++) {
+            report(String.format("winzig_%02d", i + 1), samples.get(i), 400);
+        }
+
+        double[] scaled = report("scaled_1MB", BenchInputs.load("scaled_1MB"), 4);
+
+        if (scaled[1] > scaled[0] / 2) {
+            System.out.println("The arena retains more than half of what the ASTNode tree does");
+            System.exit(1);
+        }
+    }
+
+    // the tree text both give, or null when both reject the source
+    private static String compare(String source) throws IOException {
+        String expected = null;
+        String actual = null;
+
+        try {
+            ASTNode tree = Parser.parseWinzig(Lexer.stream(source));
+
+            if (tree != null) {
+                StringWriter text = new StringWriter();
+                tree.writeTree(text);
+                expected = text.toString();
+            }
+        } catch (RuntimeException e) {
+            expected = null;
+        }
+
+        try {
+            ASTArena arena = Parser.parseWinzigArena(Lexer.stream(source));
+
+            if (arena != null) {
+                StringWriter text = new StringWriter();
+                TreeWriter.write(arena, text);
+                actual = text.toString();
+            }
+        } catch (RuntimeException e) {
+            actual = null;
+        }
+
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            System.out.println("ASTNode: " + shorten(expected));
+            System.out.println("arena:   " + shorten(actual));
+            fail("The ASTNode tree and the arena differ", source);
+        }
+
+        return expected;
+    }
+
+    // retained bytes per node of copies of source's tree, as ASTNodes and as an arena; the copies
+    // share one token list and NamePool, so only the trees are measured
+    private static double[] report(String name, String source, int copies) {
+        NamePool names = new NamePool();
+        ArrayList<Token> tokens = Lexer.scan(source);
+        Object[] live = new Object[copies];
+
+        long before = used();
+
+        for (int i = 0; i < copies; i++) {
+            live[i] = Parser.parseWinzig(new TokenListStream(tokens, names));
+        }
+
+        long nodes = used() - before;
+        Arrays.fill(live, null);
+        before = used();
+
+        for (int i = 0; i < copies; i++) {
+            live[i] = Parser.parseWinzigArena(new TokenListStream(tokens, names), tokens.size());
+        }
+
+        long arena = used() - before;
+        int size = ((ASTArena) live[0]).size();
+        long total = (long) size * copies;
+        double[] perNode = {(double) nodes / total, (double) arena / total};
+
+        System.out.printf("%-10s %7d %13.1f %13.1f%n", name, size, perNode[0], perNode[1]);
+        // keep the arenas reachable until they have been measured
+        if (live[copies - 1] == null) {
+            throw new IllegalStateException();
+        }
+
+        return perNode;
+    }
+
+    private static long used() {
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void fail(String message, String source) {
+        System.out.println(message + " on:\n" + shorten(source));
+        System.exit(1);
+    }
+
+    private static String shorten(String text) {
+        if (text == null) {
+            return "rejected";
+        }
+
+        return text.length() > 300 ? text.substring(0, 300) + "..." : text;
+    }
+}
@@ -0,0 +1,293 @@
+package com.yumantha;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// Checks that the class JvmBackend generates, Interpreter and the TreeWalker baseline run programs
+// the same way: the same output, and the same run error or none. Runs every sample, checked
+// leniently since they assign to d without declaring it, then random programs that use every
+// statement and operator and always end: each loop counts with a variable of its own nesting level
+// that nothing else assigns, and functions only call the functions before them. Exits with status
+// 1 at the first difference.
+//
+//   java -cp classes com.yumantha.BackendCheck [programs] [seed]
+public class BackendCheck {
+    private static final byte[] INPUT = "5 -3 8 2 9 1 0 4 7 6 12 -20 3".getBytes();
+    private static final String[] CONSTANTS = {"limit", "'a'", "red", "blue", "true", "false", "k2"};
+    private static final String[] RELATIONS = {"<", "<=", ">", ">=", "=", "<>"};
+    private static final String[] ADDITIONS = {"+", "-", "*", "+", "-"};
+    private static final String[] GLOBALS = {"g0", "g1", "g2", "ch"};
+
+    private final Random random;
+    // name and arity of each function generated so far
+    private final List<String> functions = new ArrayList<String>();
+    private final List<Integer> arities = new ArrayList<Integer>();
+
+    private BackendCheck(Random random) {
+        this.random = random;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int programs = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        int failed = 0;
+
+        for (String sample : BenchInputs.samples()) {
+            if (compare(sample, true).contains("Run error: ")) {
+                failed++;
+            }
+        }
+
+        for (int i = 0; i < programs; i++) {
+            String program = new BackendCheck(new Random(seed + i)).program("P" + i);
+
+            if (compare(program, false).contains("Run error: ")) {
+                failed++;
+            }
+        }
+
+        System.out.println(BenchInputs.samples().size() + " samples and " + programs
+                + " generated programs run the same on all three, " + failed + " of them ending in a run error");
+    }
+
+    // what the three give, or the first of them that differs exits
+    private static String compare(String source, boolean lenient) {
+        NamePool names = new NamePool();
+        Diagnostics diagnostics = new Diagnostics();
+        ASTNode prog = Parser.parseWinzig(Lexer.stream(source, names, diagnostics), diagnostics);
+
+        if (prog == null || !diagnostics.isEmpty() || !SemanticChecker.check(prog, names, diagnostics, lenient)) {
+            System.out.println("Does not compile:\n" + diagnostics + "\n" + source);
+            System.exit(1);
+        }
+
+        ClassFile program = JvmBackend.generate(prog, names, null);
+        Interpreter interpreter = Interpreter.compile(prog, names);
+        TreeWalker treeWalker = new TreeWalker(prog);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        String error = "";
+
+        try {
+            JvmBackend.run(program, new ByteArrayInputStream(INPUT), out);
+        } catch (Throwable e) {
+            error = "Run error: " + ProgramIO.errorMessage(e);
+        }
+
+        String expected = out + error;
+        out.reset();
+        error = "";
+
+        try {
+            interpreter.run(new ByteArrayInputStream(INPUT), out);
+        } catch (Throwable e) {
+            error = "Run error: " + ProgramIO.errorMessage(e);
+        }
+
+        String interpreted = out + error;
+        out.reset();
+        error = "";
+
+        try {
+            ProgramIO.use(new ByteArrayInputStream(INPUT), out);
+            treeWalker.run();
+        } catch (Throwable e) {
+            error = "Run error: " + ProgramIO.errorMessage(e);
+        }
+
+        String walked = out + error;
+
+        if (!expected.equals(interpreted) || !expected.equals(walked)) {
+            System.out.println("The backends differ on:\n" + source);
+            System.out.println("JvmBackend:  " + shorten(expected));
+            System.out.println("Interpreter: " + shorten(interpreted));
+            System.out.println("TreeWalker:  " + shorten(walked));
+            System.exit(1);
+        }
+
+        return expected;
+    }
+
+    private String program(String name) {
+        StringBuilder text = new StringBuilder();
+        text.append("program ").append(name).append(":\n");
+        text.append("const limit = 10, k2 = limit;\n");
+        text.append("type Color = (red, green, blue);\n");
+        text.append("var g0, g1, g2 : integer; c0, c1, c2, c3 : integer; ch : char;\n");
+
+        int count = 1 + random.nextInt(5);
+
+        while (functions.size() < count) {
+            String function = "f" + functions.size();
+            int arity = 1 + random.nextInt(3);
+            List<String> variables = new ArrayList<String>();
+            StringBuilder params = new StringBuilder();
+
+            for (int i = 0; i < arity; i++) {
+                variables.add("p" + i);
+                params.append(i == 0 ? "" : ", ").append("p").append(i);
+            }
+
+            variables.add("x0");
+            variables.add("x1");
+
+            for (String global : GLOBALS) {
+                variables.add(global);
+            }
+
+            text.append("function ").append(function).append(" (").append(params).append(" : integer) : integer;\n");
+            text.append("var x0, x1 : integer; c0, c1, c2, c3 : integer;\n");
+            text.append("begin\n");
+            statements(text, variables, 2 + random.nextInt(5));
+            text.append(";\n  return (").append(expression(variables, 2)).append(")\nend ").append(function).append(";\n");
+
+            // declared after its body, so that it never calls itself
+            functions.add(function);
+            arities.add(arity);
+        }
+
+        List<String> variables = new ArrayList<String>();
+
+        for (String global : GLOBALS) {
+            variables.add(global);
+        }
+
+        text.append("begin\n");
+        statements(text, variables, 4 + random.nextInt(9));
+        text.append("\nend ").append(name).append(".\n");
+        return text.toString();
+    }
+
+    private void statements(StringBuilder text, List<String> variables, int count) {
+        for (int i = 0; i < count; i++) {
+            text.append(i == 0 ? "  " : ";\n  ").append(statement(variables, 3, false));
+        }
+    }
+
+    // Loops nest at most depth deep and count with c<depth>, which no other statement assigns.
+    private String statement(List<String> variables, int depth, boolean inLoop) {
+        String variable = pick(variables);
+        String counter = "c" + depth;
+
+        switch (random.nextInt(depth > 0 ? 12 : 4)) {
+            case 0:
+            case 1:
+                return variable + " := " + expression(variables, 3);
+            case 2:
+                return "output (" + expression(variables, 3) + (random.nextInt(10) < 3 ? ", \"s" + random.nextInt(10) + "\"" : "") + ")";
+            case 3:
+                if (random.nextBoolean()) {
+                    return variable + " :=: " + pick(variables);
+                }
+
+                return inLoop && random.nextInt(10) < 3 ? "exit" : "output (" + variable + ")";
+            case 4:
+                return "if " + condition(variables, 2) + " then " + statement(variables, depth - 1, inLoop)
+                        + (random.nextBoolean() ? " else " + statement(variables, depth - 1, inLoop) : "");
+            case 5:
+                return "for (" + counter + " := 0; " + counter + " < " + random.nextInt(5) + "; " + counter + " := " + counter + " + 1) "
+                        + statement(variables, depth - 1, inLoop);
+            case 6:
+                return "begin " + counter + " := 0; repeat " + counter + " := " + counter + " + 1; " + statement(variables, depth - 1, inLoop)
+                        + " until " + counter + " >= " + (1 + random.nextInt(3)) + " end";
+            case 7:
+                return "begin " + counter + " := 0; while " + counter + " < " + random.nextInt(4) + " do begin " + counter + " := "
+                        + counter + " + 1; " + statement(variables, depth - 1, inLoop) + " end end";
+            case 8:
+                return "begin " + counter + " := 0; loop " + counter + " := " + counter + " + 1; " + statement(variables, depth - 1, true)
+                        + "; if " + counter + " > " + random.nextInt(4) + " then exit pool end";
+            case 9: {
+                StringBuilder clauses = new StringBuilder();
+                List<Integer> labels = new ArrayList<Integer>();
+
+                while (labels.size() < 4) {
+                    int label = random.nextInt(12);
+
+                    if (!labels.contains(label)) {
+                        labels.add(label);
+                    }
+                }
+
+                for (int i = 0; i < 4; i++) {
+                    int label = labels.get(i);
+                    String text = i == 3 ? "red, green" : i % 2 == 0 ? String.valueOf(label) : label + ".." + (label + 2);
+                    clauses.append(text).append(": ").append(statement(variables, depth - 1, inLoop)).append("; ");
+                }
+
+                return "case (" + expression(variables, 2) + ") of " + clauses
+                        + (random.nextBoolean() ? "otherwise " + statement(variables, depth - 1, inLoop) + " " : "") + "end";
+            }
+            case 10:
+                return "begin " + statement(variables, depth - 1, inLoop) + "; " + statement(variables, depth - 1, inLoop) + " end";
+            default:
+                return "if not eof then read (" + variable + ")";
+        }
+    }
+
+    private String expression(List<String> variables, int depth) {
+        switch (random.nextInt(depth > 0 ? 13 : 4)) {
+            case 0:
+                return String.valueOf(random.nextInt(31));
+            case 1:
+            case 3:
+                return pick(variables);
+            case 2:
+                return CONSTANTS[random.nextInt(CONSTANTS.length)];
+            case 4:
+            case 5:
+            case 6:
+                return "(" + expression(variables, depth - 1) + " " + ADDITIONS[random.nextInt(ADDITIONS.length)] + " "
+                        + expression(variables, depth - 1) + ")";
+            case 7: {
+                String[] divisors = {"3", "7", expression(variables, depth - 1)};
+                return "(" + expression(variables, depth - 1) + (random.nextBoolean() ? " / " : " mod ")
+                        + divisors[random.nextInt(divisors.length)] + ")";
+            }
+            case 8:
+                return "(" + expression(variables, depth - 1) + " " + RELATIONS[random.nextInt(RELATIONS.length)] + " "
+                        + expression(variables, depth - 1) + ")";
+            case 9:
+                return new String[]{"succ", "pred", "chr", "ord"}[random.nextInt(4)] + "(" + expression(variables, depth - 1) + ")";
+            case 10: {
+                if (functions.isEmpty()) {
+                    return pick(variables);
+                }
+
+                int f = random.nextInt(functions.size());
+                StringBuilder call = new StringBuilder(functions.get(f)).append("(");
+
+                for (int i = 0; i < arities.get(f); i++) {
+                    call.append(i == 0 ? "" : ", ").append(expression(variables, depth - 1));
+                }
+
+                return call.append(")").toString();
+            }
+            case 11:
+                return "(" + condition(variables, depth - 1) + (random.nextBoolean() ? " and " : " or ")
+                        + condition(variables, depth - 1) + ")";
+            default:
+                return "-" + pick(variables);
+        }
+    }
+
+    private String condition(List<String> variables, int depth) {
+        if (random.nextInt(4) == 0) {
+            return depth > 0 ? "not " + condition(variables, depth - 1) : "true";
+        }
+
+        return "(" + expression(variables, depth) + " " + RELATIONS[random.nextInt(RELATIONS.length)] + " "
+                + expression(variables, depth) + ")";
+    }
+
+    private String pick(List<String> names) {
+        return names.get(random.nextInt(names.size()));
+    }
+
+    private static String shorten(String text) {
+        return text.length() > 300 ? text.substring(0, 300) + "..." : text;
+    }
+}
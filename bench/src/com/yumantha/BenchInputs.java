@@ -0,0 +1,106 @@
+package com.yumantha;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Sources for the benchmarks. "winzig_NN" is a sample from winzig_test_programs; "scaled_<n>MB" is
+// winzig_12 with its functions repeated until the program is at least n MB. "chain_<n>k" assigns one
+// expression of n thousand operands joined by operators of both precedences, and "nested_<n>" one
+// wrapped in n levels of parentheses, for the expression parser alone.
+public class BenchInputs {
+    // benchmarks are run from bench/, see the makefile
+    private static final Path corpus = Paths.get(System.getProperty("winzig.corpus", "../winzig_test_programs"));
+
+    public static String load(String input) throws IOException {
+        if (input.startsWith("scaled_") && input.endsWith("MB")) {
+            int megabytes = Integer.parseInt(input.substring("scaled_".length(), input.length() - 2));
+            return scaled(read("winzig_12"), megabytes << 20);
+        } else if (input.startsWith("chain_") && input.endsWith("k")) {
+            return chain(Integer.parseInt(input.substring("chain_".length(), input.length() - 1)) * 1000);
+        } else if (input.startsWith("nested_")) {
+            return nested(Integer.parseInt(input.substring("nested_".length())));
+        }
+
+        return read(input);
+    }
+
+    // every winzig_NN sample, in order
+    public static List<String> samples() throws IOException {
+        List<String> names;
+        List<String> samples = new ArrayList<String>();
+
+        try (Stream<Path> files = Files.list(corpus)) {
+            names = files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.matches("winzig_\\d+"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+
+        for (String name : names) {
+            samples.add(read(name));
+        }
+
+        return samples;
+    }
+
+    private static String read(String name) throws IOException {
+        return new String(Files.readAllBytes(corpus.resolve(name)), FileHandler.SOURCE_CHARSET);
+    }
+
+    private static String chain(int operands) {
+        String[] operators = {" + ", " * ", " - ", " / ", " + ", " mod "};
+        String[] names = {"a", "b", "c", "x"};
+        StringBuilder expression = new StringBuilder(operands * 6);
+
+        expression.append(names[0]);
+
+        for (int i = 1; i < operands; i++) {
+            expression.append(operators[i % operators.length]).append(names[i % names.length]);
+        }
+
+        return assignment("Chain", expression);
+    }
+
+    private static String nested(int depth) {
+        StringBuilder expression = new StringBuilder(depth * 8);
+
+        for (int i = 0; i < depth; i++) {
+            expression.append("(a * ");
+        }
+
+        expression.append('x');
+
+        for (int i = 0; i < depth; i++) {
+            expression.append(" - b)");
+        }
+
+        return assignment("Nested", expression);
+    }
+
+    private static String assignment(String name, CharSequence expression) {
+        return "program " + name + ":\nvar a, b, c, x : integer;\nbegin\n    x := " + expression + "\nend " + name + ".\n";
+    }
+
+    private static String scaled(String program, int size) {
+        int first = program.indexOf("\nfunction");
+        int body = program.lastIndexOf("\nbegin");
+        String functions = program.substring(first, body);
+        StringBuilder result = new StringBuilder(size + program.length());
+
+        result.append(program, 0, first);
+
+        while (result.length() + program.length() - body < size) {
+            result.append(functions);
+        }
+
+        result.append(program, body, program.length());
+
+        return result.toString();
+    }
+}
@@ -0,0 +1,133 @@
+package com.yumantha;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Random;
+
+// Checks that IncrementalParser always ends with the tree, or the error, a full parse of its text
+// gives. Each round opens a sample and applies random edits to it: most of them small ones that
+// keep the program valid (a digit, a letter, whitespace, a statement after a ';'), the rest inserts
+// and deletes of characters and words that may break it. Edits that break it, and half of the
+// others, are undone straight after, which keeps the text near a valid program. Exits with status 1
+// at the first difference.
+//
+//   java -cp classes com.yumantha.IncrementalCheck [rounds] [seed]
+public class IncrementalCheck {
+    private static final int EDITS_PER_ROUND = 60;
+    private static final String ALPHABET = ":=.<>{}#'\"\n\t ;,()+-*/_aZ09";
+    private static final String[] WORDS = {"begin", "end", "if", "then", "x", "1", ";", "(", ")", "+", "*", "<", "=", ":=",
+            "not", "-", "eof", "pool", "until", "case", "..", "'a'", "x := 1;", "begin end;", "{ c }", "# c\n", "{", "}", "#",
+            "\"", "function", "end f;"};
+
+    private static int edits;
+    private static int incremental;
+
+    public static void main(String[] args) throws IOException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        Random random = new Random(args.length > 1 ? Long.parseLong(args[1]) : 1);
+        List<String> samples = BenchInputs.samples();
+        int rejected = 0;
+
+        for (int round = 0; round < rounds; round++) {
+            IncrementalParser parser = new IncrementalParser(samples.get(random.nextInt(samples.size())));
+
+            for (int i = 0; i < EDITS_PER_ROUND; i++) {
+                String text = parser.text().toString();
+                int offset;
+                int removed = 0;
+                String inserted = "";
+
+                if (random.nextInt(10) < 7) {
+                    offset = random.nextInt(text.length());
+                    char c = text.charAt(offset);
+
+                    if (Character.isDigit(c)) {
+                        removed = 1;
+                        inserted = String.valueOf((char) ('0' + random.nextInt(10)));
+                    } else if (Character.isLetter(c)) {
+                        inserted = "q";
+                    } else if (c == ' ' || c == '\n') {
+                        inserted = random.nextBoolean() ? "  " : "\n{c}";
+                    } else if (c == ';') {
+                        offset++;
+                        inserted = " output(1);";
+                    }
+                } else {
+                    offset = random.nextInt(text.length() + 1);
+                    removed = random.nextInt(4) == 0 ? Math.min(random.nextInt(6), text.length() - offset) : 0;
+
+                    switch (random.nextInt(3)) {
+                        case 0:
+                            inserted = String.valueOf(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                            break;
+                        case 1:
+                            inserted = " " + WORDS[random.nextInt(WORDS.length)] + " ";
+                            break;
+                        default:
+                            inserted = random.nextBoolean() ? WORDS[random.nextInt(WORDS.length)] : "";
+                    }
+                }
+
+                String before = text.substring(offset, offset + removed);
+
+                boolean broken = edit(parser, offset, removed, inserted).startsWith("Error ");
+
+                if (broken) {
+                    rejected++;
+                }
+
+                if (broken || random.nextBoolean()) {
+                    edit(parser, offset, inserted.length(), before);
+                }
+            }
+        }
+
+        System.out.println(edits + " edits match a full reparse, " + incremental + " of them reparsed part of the text, "
+                + rejected + " left a program that does not parse");
+    }
+
+    // applies the edit and compares the result with a full parse
+    private static String edit(IncrementalParser parser, int offset, int removed, String inserted) throws IOException {
+        String expected;
+        String actual;
+
+        try {
+            actual = text(parser.edit(offset, removed, inserted));
+        } catch (RuntimeException e) {
+            actual = "Error " + e.getMessage();
+        }
+
+        try {
+            expected = text(Parser.parseWinzig(Lexer.stream(parser.text())));
+        } catch (RuntimeException e) {
+            expected = "Error " + e.getMessage();
+        }
+
+        edits++;
+
+        if (parser.reparsedLength() < parser.text().length()) {
+            incremental++;
+        }
+
+        if (!expected.equals(actual)) {
+            System.out.println("Incremental and full parse differ after replacing " + removed + " characters at " + offset
+                    + " with \"" + inserted + "\" in:\n" + parser.text());
+            System.out.println("full:        " + shorten(expected));
+            System.out.println("incremental: " + shorten(actual));
+            System.exit(1);
+        }
+
+        return expected;
+    }
+
+    private static String text(ASTNode tree) throws IOException {
+        StringWriter text = new StringWriter();
+        tree.writeTree(text);
+        return text.toString();
+    }
+
+    private static String shorten(String text) {
+        return text.length() > 300 ? text.substring(0, 300) + "..." : text;
+    }
+}
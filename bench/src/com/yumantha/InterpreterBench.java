@@ -0,0 +1,134 @@
+package com.yumantha;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+// Running a compiled program, with its input in memory and its output discarded: Interpreter
+// against the TreeWalker baseline, and against the class JvmBackend generates. "primes" and
+// "fibonacci" are here as they run long enough for the loop and the calls to dominate.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InterpreterBench {
+    private static final String PRIMES = "program Primes:\n"
+            + "var n, count, i : integer;\n"
+            + "function isPrime (n : integer) : boolean;\n"
+            + "var i : integer;\n"
+            + "begin\n"
+            + "    if n < 2 then return (false);\n"
+            + "    i := 2;\n"
+            + "    while i * i <= n do\n"
+            + "    begin\n"
+            + "        if n mod i = 0 then return (false);\n"
+            + "        i := i + 1\n"
+            + "    end;\n"
+            + "    return (true)\n"
+            + "end isPrime;\n"
+            + "begin\n"
+            + "    read (n);\n"
+            + "    count := 0;\n"
+            + "    for (i := 1; i <= n; i := i + 1)\n"
+            + "        if isPrime (i) then count := count + 1;\n"
+            + "    output (count)\n"
+            + "end Primes.\n";
+
+    private static final String FIBONACCI = "program Fibonacci:\n"
+            + "var n : integer;\n"
+            + "function fib (n : integer) : integer;\n"
+            + "begin\n"
+            + "    if n < 2 then return (n);\n"
+            + "    return (fib (n - 1) + fib (n - 2))\n"
+            + "end fib;\n"
+            + "begin\n"
+            + "    read (n);\n"
+            + "    output (fib (n))\n"
+            + "end Fibonacci.\n";
+
+    @Param({"winzig_11", "winzig_12", "primes", "fibonacci"})
+    public String program;
+
+    private byte[] input;
+    private Interpreter interpreter;
+    private TreeWalker treeWalker;
+    private Method body;
+
+    @Setup
+    public void load() throws Exception {
+        String source;
+
+        switch (program) {
+            case "primes":
+                source = PRIMES;
+                input = "20000".getBytes();
+                break;
+            case "fibonacci":
+                source = FIBONACCI;
+                input = "20".getBytes();
+                break;
+            case "winzig_11":
+                source = BenchInputs.load(program);
+                input = numbers(1, 200);
+                break;
+            default:
+                source = BenchInputs.load(program);
+                input = "5 -3 9 0 12 7".getBytes();
+        }
+
+        NamePool names = new NamePool();
+        Diagnostics diagnostics = new Diagnostics();
+        ASTNode prog = Parser.parseWinzig(Lexer.stream(source, names, diagnostics), diagnostics);
+
+        if (prog == null || !diagnostics.isEmpty() || !SemanticChecker.check(prog, names, diagnostics, true)) {
+            throw new IOException(program + " does not compile:\n" + diagnostics);
+        }
+
+        interpreter = Interpreter.compile(prog, names);
+        treeWalker = new TreeWalker(prog);
+        body = JvmBackend.load(JvmBackend.generate(prog, names, program)).getMethod(JvmBackend.BODY);
+    }
+
+    private static byte[] numbers(int from, int to) {
+        StringBuilder text = new StringBuilder();
+
+        for (int i = from; i <= to; i++) {
+            text.append(i).append(' ');
+        }
+
+        return text.toString().getBytes();
+    }
+
+    @Benchmark
+    public void interpret() {
+        interpreter.run(new ByteArrayInputStream(input), OutputStream.nullOutputStream());
+    }
+
+    @Benchmark
+    public void walkTree() {
+        ProgramIO.use(new ByteArrayInputStream(input), OutputStream.nullOutputStream());
+        treeWalker.run();
+    }
+
+    @Benchmark
+    public void runGeneratedClass() throws Exception {
+        ProgramIO.use(new ByteArrayInputStream(input), OutputStream.nullOutputStream());
+        body.invoke(null);
+    }
+}
@@ -0,0 +1,74 @@
+package com.yumantha;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+// Checks that Lexer gives exactly the tokens Scanner does (type, text, line and column), or fails
+// with the same message: on every sample, then on copies of them with random characters inserted
+// and deleted. Exits with status 1 at the first difference.
+//
+//   java -cp classes com.yumantha.LexerCheck [mutations] [seed]
+public class LexerCheck {
+    // characters that start, end or break tokens, plus a few Scanner never accepts
+    private static final String ALPHABET = ":=.<>{}#'\"\n\r\t \u000b\f;,()+-*/_aZ09xeof\u2028\u0085!";
+
+    public static void main(String[] args) throws IOException {
+        int mutations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        Random random = new Random(args.length > 1 ? Long.parseLong(args[1]) : 42);
+        List<String> samples = BenchInputs.samples();
+        int rejected = 0;
+
+        for (String sample : samples) {
+            compare(sample);
+        }
+
+        for (int i = 0; i < mutations; i++) {
+            StringBuilder source = new StringBuilder(samples.get(random.nextInt(samples.size())));
+            int edits = 1 + random.nextInt(6);
+
+            for (int edit = 0; edit < edits; edit++) {
+                int at = random.nextInt(source.length());
+
+                if (random.nextBoolean()) {
+                    source.insert(at, ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                } else {
+                    source.deleteCharAt(at);
+                }
+            }
+
+            if (compare(source.toString()).startsWith("Error ")) {
+                rejected++;
+            }
+        }
+
+        System.out.println(samples.size() + " samples and " + mutations + " mutations scan the same, "
+                + rejected + " of the mutations rejected by both");
+    }
+
+    private static String compare(String source) {
+        String expected = scan(source, false);
+        String actual = scan(source, true);
+
+        if (!expected.equals(actual)) {
+            System.out.println("Lexer and Scanner differ on:\n" + source);
+            System.out.println("Scanner: " + shorten(expected));
+            System.out.println("Lexer:   " + shorten(actual));
+            System.exit(1);
+        }
+
+        return expected;
+    }
+
+    private static String scan(String source, boolean lexer) {
+        try {
+            return (lexer ? Lexer.scan(source) : Scanner.scan(source)).toString();
+        } catch (RuntimeException e) {
+            return "Error " + e.getMessage();
+        }
+    }
+
+    private static String shorten(String text) {
+        return text.length() > 300 ? text.substring(0, 300) + "..." : text;
+    }
+}
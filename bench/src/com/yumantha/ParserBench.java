@@ -0,0 +1,54 @@
+package com.yumantha;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+// Parsing alone: the tokens are scanned once in setup.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBench {
+    @Param({"winzig_01", "winzig_05", "winzig_11", "winzig_12", "scaled_1MB", "scaled_8MB", "chain_200k", "nested_1000"})
+    public String input;
+
+    private ArrayList<Token> tokens;
+
+    @Setup
+    public void load() throws IOException {
+        tokens = Scanner.scan(BenchInputs.load(input));
+    }
+
+    @Benchmark
+    public ASTNode parseTokenList() {
+        return Parser.parseWinzig(tokens);
+    }
+
+    // the same trees as ASTArena's flat arrays instead of ASTNode objects; -prof gc gives the bytes
+    // each allocates per parse next to parseTokenList's
+    @Benchmark
+    public ASTArena parseArena() {
+        return Parser.parseWinzigArena(new TokenListStream(tokens), tokens.size());
+    }
+
+    // the same trees from the tables generated out of grammar/winzigc.grammar
+    @Benchmark
+    public ASTNode parseTableDriven() {
+        return TableParser.parseWinzig(new TokenListStream(tokens));
+    }
+}
@@ -0,0 +1,105 @@
+package com.yumantha;
+
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+// Compiles generated programs of growing size and fails when time, allocation or retained memory
+// per source character grows with the size, which is how quadratic behaviour in Lexer, Parser or
+// ASTNode shows up. Sizes below 1 MB are only reported: there the JIT and timer noise dominate.
+//
+//   java -cp classes com.yumantha.ScalingCheck [max-size-in-MB]
+public class ScalingCheck {
+    private static final long[] sizes = {10L << 10, 100L << 10, 1L << 20, 10L << 20, 100L << 20};
+    private static final long BASELINE = 1L << 20;
+    // how much worse per character the largest size may be than the baseline
+    private static final double TIME_TOLERANCE = 2.5;
+    private static final double MEMORY_TOLERANCE = 1.5;
+
+    public static void main(String[] args) throws Exception {
+        long max = (args.length > 0 ? Long.parseLong(args[0]) : 100) << 20;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        double[] baseline = null;
+        double[] largest = null;
+        long largestSize = 0;
+
+        System.out.printf("%12s %10s %10s %14s %14s%n", "chars", "ms", "ns/char", "alloc B/char", "retained B/char");
+
+        for (long size : sizes) {
+            if (size > max) {
+                break;
+            }
+
+            ProgramGenerator generator = new ProgramGenerator();
+            generator.size = size;
+            generator.functions = (int) Math.max(8, size >> 12);
+            String source = generator.generate(size);
+
+            long best = Long.MAX_VALUE;
+            long allocated = 0;
+            long retained = 0;
+
+            try {
+                // repeat small inputs so the JIT has settled, large ones need no help
+                int runs = (int) Math.max(3, Math.min(200, (20L << 20) / size));
+
+                for (int run = 0; run < runs; run++) {
+                    System.gc();
+                    long before = memory.getHeapMemoryUsage().getUsed();
+                    long allocatedBefore = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+                    long start = System.nanoTime();
+
+                    ASTNode tree = Parser.parseWinzig(Lexer.stream(source));
+                    tree.writeTree(Writer.nullWriter());
+
+                    long elapsed = System.nanoTime() - start;
+                    allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+
+                    if (run == runs - 1) {
+                        System.gc();
+                        retained = memory.getHeapMemoryUsage().getUsed() - before;
+                    }
+
+                    best = Math.min(best, elapsed);
+                    // keep the tree reachable until it has been measured
+                    if (tree.getChildren().isEmpty()) {
+                        throw new IllegalStateException();
+                    }
+                }
+            } catch (OutOfMemoryError e) {
+                System.out.printf("%12d  out of memory, rerun with a larger -Xmx%n", source.length());
+                break;
+            }
+
+            int length = source.length();
+            double[] perChar = {(double) best / length, (double) allocated / length, (double) retained / length};
+
+            System.out.printf("%12d %10.1f %10.1f %14.1f %14.1f%n", length, best / 1e6, perChar[0], perChar[1], perChar[2]);
+
+            if (size == BASELINE) {
+                baseline = perChar;
+            } else if (size > BASELINE) {
+                largest = perChar;
+                largestSize = length;
+            }
+        }
+
+        if (baseline == null || largest == null) {
+            System.out.println("Not enough sizes above 1 MB to judge scaling");
+            return;
+        }
+
+        boolean linear = largest[0] <= baseline[0] * TIME_TOLERANCE
+                && largest[1] <= baseline[1] * MEMORY_TOLERANCE
+                && largest[2] <= Math.max(baseline[2], 1) * MEMORY_TOLERANCE;
+
+        System.out.printf("%d chars vs 1 MB, per char: time x%.2f, allocation x%.2f, retained x%.2f: %s%n",
+                largestSize, largest[0] / baseline[0], largest[1] / baseline[1], largest[2] / Math.max(baseline[2], 1),
+                linear ? "linear" : "NOT LINEAR");
+
+        if (!linear) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.yumantha;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScannerBench {
+    @Param({"winzig_01", "winzig_05", "winzig_11", "winzig_12", "scaled_1MB", "scaled_8MB"})
+    public String input;
+
+    private String source;
+
+    @Setup
+    public void load() throws IOException {
+        source = BenchInputs.load(input);
+    }
+
+    @Benchmark
+    public ArrayList<Token> scanner() {
+        return Scanner.scan(source);
+    }
+
+    // the scanner the compiler uses
+    @Benchmark
+    public TokenBuffer lexer() {
+        return Lexer.scanBuffer(source);
+    }
+}
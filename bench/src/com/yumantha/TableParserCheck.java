@@ -0,0 +1,107 @@
+package com.yumantha;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Random;
+
+// Checks that TableParser builds the same trees as Parser, and rejects the same inputs: on every
+// sample, on generated programs of every nesting depth, and on copies of the samples with tokens
+// inserted or a few characters deleted. Exits with status 1 at the first difference.
+//
+//   java -cp classes com.yumantha.TableParserCheck [mutations] [seed]
+public class TableParserCheck {
+    private static final int GENERATED = 300;
+    private static final String[] JUNK = {";", "end", "begin", "(", ")", ":=", "x", "1", "pool", "else", "if", "then", "+",
+            "*", "<", "eof", ","};
+
+    public static void main(String[] args) throws IOException {
+        int mutations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        Random random = new Random(args.length > 1 ? Long.parseLong(args[1]) : 7);
+        List<String> samples = BenchInputs.samples();
+        int rejected = 0;
+
+        for (String sample : samples) {
+            if (compare(sample) == null) {
+                fail("Both parsers reject a sample", sample, null, null);
+            }
+        }
+
+        for (long seed = 0; seed < GENERATED; seed++) {
+            ProgramGenerator generator = new ProgramGenerator();
+            generator.size = 3000 + seed * 50;
+            generator.functions = (int) (seed % 5);
+            generator.depth = 1 + (int) (seed % 6);
+            String program = generator.generate(seed);
+
+            if (compare(program) == null) {
+                fail("Both parsers reject generated program " + seed, program, null, null);
+            }
+        }
+
+        for (int i = 0; i < mutations; i++) {
+            StringBuilder source = new StringBuilder(samples.get(random.nextInt(samples.size())));
+            int at = random.nextInt(source.length());
+
+            if (random.nextBoolean()) {
+                source.delete(at, Math.min(source.length(), at + 1 + random.nextInt(5)));
+            } else {
+                source.insert(at, " " + JUNK[random.nextInt(JUNK.length)] + " ");
+            }
+
+            if (compare(source.toString()) == null) {
+                rejected++;
+            }
+        }
+
+        System.out.println(samples.size() + " samples, " + GENERATED + " generated programs and " + mutations
+                + " mutations parse the same, " + rejected + " of the mutations rejected by both");
+    }
+
+    // the tree both parsers build, or null when both reject the source
+    private static String compare(String source) throws IOException {
+        String expected = parse(source, false);
+        String actual = parse(source, true);
+
+        if (expected == null ? actual != null : !expected.equals(actual)) {
+            fail("TableParser and Parser differ", source, expected, actual);
+        }
+
+        return expected;
+    }
+
+    private static String parse(String source, boolean table) throws IOException {
+        try {
+            ASTNode tree = table ? TableParser.parseWinzig(Lexer.stream(source)) : Parser.parseWinzig(Lexer.stream(source));
+
+            if (tree == null) {
+                return null;
+            }
+
+            StringWriter text = new StringWriter();
+            tree.writeTree(text);
+            return text.toString();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static void fail(String message, String source, String expected, String actual) {
+        System.out.println(message + " on:\n" + source);
+
+        if (expected != null || actual != null) {
+            System.out.println("Parser:      " + shorten(expected));
+            System.out.println("TableParser: " + shorten(actual));
+        }
+
+        System.exit(1);
+    }
+
+    private static String shorten(String text) {
+        if (text == null) {
+            return "rejected";
+        }
+
+        return text.length() > 300 ? text.substring(0, 300) + "..." : text;
+    }
+}
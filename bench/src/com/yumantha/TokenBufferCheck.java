@@ -0,0 +1,141 @@
+package com.yumantha;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+// Checks that Parser builds the same tree, or fails the same way, from a TokenBuffer as from a list
+// of Token objects: on every sample, then on copies of them with random characters and words
+// inserted and characters deleted. Then reports the heap each form retains per token, with many
+// copies of each sample held live. Exits with status 1 at the first difference.
+//
+//   java -cp classes com.yumantha.TokenBufferCheck [mutations] [seed]
+public class TokenBufferCheck {
+    private static final String ALPHABET = ":=.<>{}#'\"\n\t ;,()+-*/_aZ09";
+    private static final String[] WORDS = {"begin", "end", "if", "then", "x", "1", ";", "(", ")", "+", "*", "<", "=", ":=",
+            "not", "-", "eof", "pool", "until", "case", "..", "'a'"};
+
+    public static void main(String[] args) throws IOException {
+        int mutations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        Random random = new Random(args.length > 1 ? Long.parseLong(args[1]) : 7);
+        List<String> samples = BenchInputs.samples();
+        int rejected = 0;
+
+        for (String sample : samples) {
+            compare(sample);
+        }
+
+        for (int i = 0; i < mutations; i++) {
+            StringBuilder source = new StringBuilder(samples.get(random.nextInt(samples.size())));
+            int edits = random.nextInt(4);
+
+            for (int edit = 0; edit < edits; edit++) {
+                int at = random.nextInt(source.length());
+
+                switch (random.nextInt(3)) {
+                    case 0:
+                        source.insert(at, ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+                        break;
+                    case 1:
+                        source.insert(at, " " + WORDS[random.nextInt(WORDS.length)] + " ");
+                        break;
+                    default:
+                        source.deleteCharAt(at);
+                }
+            }
+
+            if (compare(source.toString()).startsWith("Error ")) {
+                rejected++;
+            }
+        }
+
+        System.out.println(samples.size() + " samples and " + mutations + " mutations parse the same, "
+                + rejected + " of the mutations rejected by both");
+
+        System.out.printf("%n%-10s %7s %12s %12s%n", "file", "tokens", "list B/tok", "buffer B/tok");
+        StringBuilder corpus = new StringBuilder();
+
+        for (int i = 0; i < samples.size(); i++) {
+            report(String.format("winzig_%02d", i + 1), samples.get(i), 400);
+            corpus.append(samples.get(i)).append('\n');
+        }
+
+        report("corpus", corpus.toString(), 30);
+    }
+
+    private static String compare(String source) throws IOException {
+        String expected = parse(source, false);
+        String actual = parse(source, true);
+
+        if (!expected.equals(actual)) {
+            System.out.println("TokenBuffer and Token list parse differently:\n" + source);
+            System.out.println("list:   " + shorten(expected));
+            System.out.println("buffer: " + shorten(actual));
+            System.exit(1);
+        }
+
+        return expected;
+    }
+
+    private static String parse(String source, boolean buffer) throws IOException {
+        try {
+            ASTNode tree = buffer ? Parser.parseWinzig(Lexer.scanBuffer(source).stream()) : Parser.parseWinzig(Lexer.scan(source));
+            StringWriter text = new StringWriter();
+            tree.writeTree(text);
+            return text.toString();
+        } catch (RuntimeException e) {
+            return "Error " + e.getMessage();
+        }
+    }
+
+    // retained bytes per token of copies of source, as tokens in a list and in a buffer
+    private static void report(String name, String source, int copies) {
+        Object[] live = new Object[copies];
+        String[] sources = new String[copies];
+
+        for (int i = 0; i < copies; i++) {
+            sources[i] = new String(source.toCharArray());
+        }
+
+        long before = used();
+
+        for (int i = 0; i < copies; i++) {
+            live[i] = Lexer.scan(sources[i]);
+        }
+
+        long list = used() - before;
+        int tokens = ((ArrayList<?>) live[0]).size();
+        Arrays.fill(live, null);
+        before = used();
+
+        for (int i = 0; i < copies; i++) {
+            live[i] = Lexer.scanBuffer(sources[i]);
+        }
+
+        long buffer = used() - before;
+        long total = (long) tokens * copies;
+
+        System.out.printf("%-10s %7d %12.1f %12.1f%n", name, tokens, (double) list / total, (double) buffer / total);
+        // keep the buffers reachable until they have been measured
+        if (live[copies - 1] == null) {
+            throw new IllegalStateException();
+        }
+    }
+
+    private static long used() {
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static String shorten(String text) {
+        return text.length() > 300 ? text.substring(0, 300) + "..." : text;
+    }
+}
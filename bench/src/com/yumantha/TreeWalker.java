@@ -0,0 +1,326 @@
+package com.yumantha;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// The naive way to run a program, kept only as the baseline InterpreterBench measures Interpreter
+// against: it walks the tree on every execution, matching rule names as strings and looking each
+// name up in hash maps of its scopes. Same values and I/O as Interpreter.
+public class TreeWalker {
+    private static class Exit extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Exit() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static class Return extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int value;
+
+        Return(int value) {
+            super(null, null, false, false);
+            this.value = value;
+        }
+    }
+
+    private final ASTNode prog;
+    private final HashMap<String, int[]> globals = new HashMap<String, int[]>();
+    private final HashMap<String, Integer> globalConstants = new HashMap<String, Integer>();
+    private final HashMap<String, ASTNode> functions = new HashMap<String, ASTNode>();
+    // the variables and constants of each call in progress
+    private final ArrayList<HashMap<String, int[]>> frames = new ArrayList<HashMap<String, int[]>>();
+    private final ArrayList<HashMap<String, Integer>> frameConstants = new ArrayList<HashMap<String, Integer>>();
+
+    public TreeWalker(ASTNode prog) {
+        this.prog = prog;
+    }
+
+    public void run() {
+        globals.clear();
+        globalConstants.clear();
+        functions.clear();
+        globalConstants.put("true", 1);
+        globalConstants.put("false", 0);
+        declareConstants(prog.getChild(1), prog.getChild(2), globalConstants);
+
+        for (ASTNode var : prog.getChild(3).getChildren()) {
+            for (int i = 0; i < var.getChildCount() - 1; i++) {
+                globals.put(name(var.getChild(i)), new int[1]);
+                globalConstants.remove(name(var.getChild(i)));
+            }
+        }
+
+        for (ASTNode fcn : prog.getChild(4).getChildren()) {
+            functions.put(name(fcn.getChild(0)), fcn);
+        }
+
+        try {
+            statement(prog.getChild(5));
+        } catch (Return e) {
+            // return in the body ends the program
+        } finally {
+            ProgramIO.flush();
+        }
+    }
+
+    private void declareConstants(ASTNode consts, ASTNode types, HashMap<String, Integer> constants) {
+        for (ASTNode constant : consts.getChildren()) {
+            constants.put(name(constant.getChild(0)), constant(constant.getChild(1)));
+        }
+
+        for (ASTNode type : types.getChildren()) {
+            int position = 0;
+
+            for (ASTNode literal : type.getChild(1).getChildren()) {
+                constants.put(name(literal), position++);
+            }
+        }
+    }
+
+    private int call(ASTNode fcn, int[] arguments) {
+        HashMap<String, int[]> frame = new HashMap<String, int[]>();
+        HashMap<String, Integer> constants = new HashMap<String, Integer>();
+        int next = 0;
+
+        for (ASTNode var : fcn.getChild(1).getChildren()) {
+            for (int i = 0; i < var.getChildCount() - 1; i++) {
+                frame.put(name(var.getChild(i)), new int[] {arguments[next++]});
+            }
+        }
+
+        frames.add(frame);
+        frameConstants.add(constants);
+        declareConstants(fcn.getChild(3), fcn.getChild(4), constants);
+
+        for (ASTNode var : fcn.getChild(5).getChildren()) {
+            for (int i = 0; i < var.getChildCount() - 1; i++) {
+                frame.put(name(var.getChild(i)), new int[1]);
+            }
+        }
+
+        try {
+            statement(fcn.getChild(6));
+            return 0;
+        } catch (Return e) {
+            return e.value;
+        } finally {
+            frames.remove(frames.size() - 1);
+            frameConstants.remove(frameConstants.size() - 1);
+        }
+    }
+
+    // the variable name refers to here, or null for a constant
+    private int[] variable(String name) {
+        if (!frames.isEmpty()) {
+            int[] local = frames.get(frames.size() - 1).get(name);
+
+            if (local != null || frameConstants.get(frameConstants.size() - 1).containsKey(name)) {
+                return local;
+            }
+        }
+
+        return globalConstants.containsKey(name) ? null : globals.get(name);
+    }
+
+    private int constantNamed(String name) {
+        if (!frameConstants.isEmpty()) {
+            Integer local = frameConstants.get(frameConstants.size() - 1).get(name);
+
+            if (local != null) {
+                return local;
+            }
+        }
+
+        return globalConstants.get(name);
+    }
+
+    private void statement(ASTNode node) {
+        switch (node.getRuleName()) {
+            case "block":
+                for (ASTNode child : node.getChildren()) {
+                    statement(child);
+                }
+                break;
+            case "assign":
+                int value = expression(node.getChild(1));
+                variable(name(node.getChild(0)))[0] = value;
+                break;
+            case "swap":
+                int[] first = variable(name(node.getChild(0)));
+                int[] second = variable(name(node.getChild(1)));
+                int swapped = first[0];
+                first[0] = second[0];
+                second[0] = swapped;
+                break;
+            case "output":
+                for (ASTNode item : node.getChildren()) {
+                    if (item.getRuleName().equals("string")) {
+                        String text = name(item.getChild(0));
+                        ProgramIO.output(text.substring(1, text.length() - 1));
+                    } else {
+                        ProgramIO.output(expression(item.getChild(0)));
+                    }
+                }
+                break;
+            case "read":
+                for (ASTNode name : node.getChildren()) {
+                    variable(name(name))[0] = ProgramIO.readInteger();
+                }
+                break;
+            case "if":
+                if (expression(node.getChild(0)) != 0) {
+                    statement(node.getChild(1));
+                } else if (node.getChildCount() == 3) {
+                    statement(node.getChild(2));
+                }
+                break;
+            case "while":
+                while (expression(node.getChild(0)) != 0) {
+                    statement(node.getChild(1));
+                }
+                break;
+            case "repeat":
+                do {
+                    for (int i = 0; i < node.getChildCount() - 1; i++) {
+                        statement(node.getChild(i));
+                    }
+                } while (expression(node.getChild(node.getChildCount() - 1)) == 0);
+                break;
+            case "for":
+                for (statement(node.getChild(0)); expression(node.getChild(1)) != 0; statement(node.getChild(2))) {
+                    statement(node.getChild(3));
+                }
+                break;
+            case "loop":
+                try {
+                    while (true) {
+                        for (ASTNode child : node.getChildren()) {
+                            statement(child);
+                        }
+                    }
+                } catch (Exit e) {
+                    // the end of this loop
+                }
+                break;
+            case "exit":
+                throw new Exit();
+            case "return":
+                throw new Return(expression(node.getChild(0)));
+            case "case":
+                caseStatement(node);
+                break;
+            case "<null>":
+                break;
+            default:
+                throw new RuntimeException("Unexpected " + node.getRuleName());
+        }
+    }
+
+    private void caseStatement(ASTNode node) {
+        int value = expression(node.getChild(0));
+
+        for (int i = 1; i < node.getChildCount(); i++) {
+            ASTNode clause = node.getChild(i);
+
+            if (clause.getRuleName().equals("otherwise")) {
+                statement(clause.getChild(0));
+                return;
+            }
+
+            for (int j = 0; j < clause.getChildCount() - 1; j++) {
+                ASTNode label = clause.getChild(j);
+                boolean matches = label.getRuleName().equals("..")
+                        ? value >= constant(label.getChild(0)) && value <= constant(label.getChild(1))
+                        : value == constant(label);
+
+                if (matches) {
+                    statement(clause.getChild(clause.getChildCount() - 1));
+                    return;
+                }
+            }
+        }
+    }
+
+    private int expression(ASTNode node) {
+        switch (node.getRuleName()) {
+            case "<identifier>":
+                int[] variable = variable(name(node));
+                return variable != null ? variable[0] : constantNamed(name(node));
+            case "<integer>":
+            case "<char>":
+                return constant(node);
+            case "+":
+                return expression(node.getChild(0)) + expression(node.getChild(1));
+            case "-":
+                if (node.getChildCount() == 1) {
+                    return -expression(node.getChild(0));
+                }
+                return expression(node.getChild(0)) - expression(node.getChild(1));
+            case "*":
+                return expression(node.getChild(0)) * expression(node.getChild(1));
+            case "/":
+                return expression(node.getChild(0)) / expression(node.getChild(1));
+            case "mod":
+                return expression(node.getChild(0)) % expression(node.getChild(1));
+            case "and":
+                return expression(node.getChild(0)) & expression(node.getChild(1));
+            case "or":
+                return expression(node.getChild(0)) | expression(node.getChild(1));
+            case "not":
+                return expression(node.getChild(0)) ^ 1;
+            case "=":
+                return expression(node.getChild(0)) == expression(node.getChild(1)) ? 1 : 0;
+            case "<>":
+                return expression(node.getChild(0)) != expression(node.getChild(1)) ? 1 : 0;
+            case "<":
+                return expression(node.getChild(0)) < expression(node.getChild(1)) ? 1 : 0;
+            case "<=":
+                return expression(node.getChild(0)) <= expression(node.getChild(1)) ? 1 : 0;
+            case ">":
+                return expression(node.getChild(0)) > expression(node.getChild(1)) ? 1 : 0;
+            case ">=":
+                return expression(node.getChild(0)) >= expression(node.getChild(1)) ? 1 : 0;
+            case "succ":
+                return expression(node.getChild(0)) + 1;
+            case "pred":
+                return expression(node.getChild(0)) - 1;
+            case "chr":
+            case "ord":
+                return expression(node.getChild(0));
+            case "eof":
+                return ProgramIO.eof();
+            case "true":
+                return 1;
+            case "call":
+                int[] arguments = new int[node.getChildCount() - 1];
+
+                for (int i = 0; i < arguments.length; i++) {
+                    arguments[i] = expression(node.getChild(i + 1));
+                }
+
+                return call(functions.get(name(node.getChild(0))), arguments);
+            default:
+                throw new RuntimeException("Unexpected " + node.getRuleName());
+        }
+    }
+
+    private int constant(ASTNode value) {
+        String text = name(value);
+
+        if (value.getRuleName().equals("<integer>")) {
+            return Integer.parseInt(text);
+        } else if (value.getRuleName().equals("<char>")) {
+            return text.charAt(1);
+        }
+
+        return constantNamed(text);
+    }
+
+    // the text under an <identifier>, <integer>, <char> or <string>
+    private static String name(ASTNode node) {
+        return node.getChild(0).getRuleName();
+    }
+}
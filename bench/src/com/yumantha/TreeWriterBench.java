@@ -0,0 +1,43 @@
+package com.yumantha;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+// Tree text emission into a Writer that drops everything, so no I/O is measured.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TreeWriterBench {
+    @Param({"winzig_01", "winzig_05", "winzig_11", "winzig_12", "scaled_1MB", "scaled_8MB"})
+    public String input;
+
+    private ASTNode tree;
+    private Writer sink;
+
+    @Setup
+    public void load() throws IOException {
+        tree = Parser.parseWinzig(Lexer.stream(BenchInputs.load(input)));
+        sink = Writer.nullWriter();
+    }
+
+    @Benchmark
+    public void writeTree() throws IOException {
+        tree.writeTree(sink);
+    }
+}
@@ -0,0 +1,126 @@
+package com.yumantha;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+// A whole tree in flat primitive arrays. Nodes are numbered in the order Parser finishes them
+// (post-order); the ids of a node's children sit next to each other in links, starting at
+// firstChild[node]. Each node appends its children there as it is finished, so they end where the
+// next node's begin and the child count needs no array of its own: three ints a node, plus one
+// link for each node but the root.
+public class ASTArena implements TreeBuilder {
+    private final NamePool names;
+
+    private int[] kind;
+    private int[] firstChild;
+    private int[] token;
+    private int nodeCount;
+
+    private int[] links;
+    private int linkCount;
+
+    private int[] stack;
+    private int stackSize;
+
+    public ASTArena(NamePool names) {
+        this(names, 64);
+    }
+
+    public ASTArena(NamePool names, int capacity) {
+        this.names = names;
+        this.kind = new int[capacity];
+        this.firstChild = new int[capacity];
+        this.token = new int[capacity];
+        this.nodeCount = 0;
+        this.links = new int[capacity];
+        this.linkCount = 0;
+        this.stack = new int[32];
+        this.stackSize = 0;
+    }
+
+    @Override
+    public void buildTree(int symbol, int n, int tokenIndex) {
+        if (nodeCount == kind.length) {
+            int capacity = nodeCount + (nodeCount >> 1) + 1;
+
+            kind = Arrays.copyOf(kind, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            token = Arrays.copyOf(token, capacity);
+        }
+
+        if (linkCount + n > links.length) {
+            links = Arrays.copyOf(links, Math.max(linkCount + n, links.length + (links.length >> 1)));
+        }
+
+        int node = nodeCount++;
+        kind[node] = symbol;
+        firstChild[node] = linkCount;
+        token[node] = tokenIndex;
+
+        stackSize -= n;
+        System.arraycopy(stack, stackSize, links, linkCount, n);
+        linkCount += n;
+
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+
+        stack[stackSize++] = node;
+    }
+
+    @Override
+    public int depth() {
+        return stackSize;
+    }
+
+    // Drops the room left for growth from a finished tree that is kept, when it is more than an
+    // eighth of the arrays.
+    void trim() {
+        if (nodeCount < kind.length - (kind.length >> 3)) {
+            kind = Arrays.copyOf(kind, nodeCount);
+            firstChild = Arrays.copyOf(firstChild, nodeCount);
+            token = Arrays.copyOf(token, nodeCount);
+        }
+
+        if (linkCount < links.length - (links.length >> 3)) {
+            links = Arrays.copyOf(links, linkCount);
+        }
+    }
+
+    public NamePool names() {
+        return names;
+    }
+
+    public int root() {
+        return stack[0];
+    }
+
+    public int size() {
+        return nodeCount;
+    }
+
+    public int kind(int node) {
+        return kind[node];
+    }
+
+    public String label(int node) {
+        return names.name(kind[node]);
+    }
+
+    public int childCount(int node) {
+        return (node + 1 < nodeCount ? firstChild[node + 1] : linkCount) - firstChild[node];
+    }
+
+    public int child(int node, int i) {
+        return links[firstChild[node] + i];
+    }
+
+    public int token(int node) {
+        return token[node];
+    }
+
+    public void writeTree(Writer out) throws IOException {
+        TreeWriter.write(this, out);
+    }
+}
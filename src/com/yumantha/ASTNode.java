@@ -1,21 +1,84 @@
 package com.yumantha;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 public class ASTNode {
+    // shared by every leaf
+    private static final ASTNode[] NO_CHILDREN = new ASTNode[0];
+
     private String ruleName;
+    private int symbol;
     private int n;
     private ASTNode parent;
-    private ArrayList<ASTNode> children;
+    private ASTNode[] children;
+    // where the token a node was built from starts, or line 0 for nodes not built from a token
+    private int line;
+    private int col;
+
+    public ASTNode(NamePool names, int symbol, int n) {
+        this(names, symbol, n, NO_CHILDREN);
+    }
 
-    public ASTNode(String ruleName, int n) {
-        this.ruleName = ruleName;
+    // Takes over children, which must be exactly sized and in order, and becomes their parent.
+    ASTNode(NamePool names, int symbol, ASTNode[] children) {
+        this(names, symbol, children.length, children.length == 0 ? NO_CHILDREN : children);
+
+        for (ASTNode child : children) {
+            child.parent = this;
+        }
+    }
+
+    private ASTNode(NamePool names, int symbol, int n, ASTNode[] children) {
+        this.ruleName = names.name(symbol);
+        this.symbol = symbol;
         this.n = n;
         this.parent = null;
-        this.children = new ArrayList<ASTNode>();
+        this.children = children;
+        this.line = 0;
+        this.col = 0;
+    }
+
+    public String getRuleName() {
+        return this.ruleName;
+    }
+
+    public int getSymbol() {
+        return this.symbol;
+    }
+
+    public int getN() {
+        return this.n;
+    }
+
+    public int getLine() {
+        return this.line;
+    }
+
+    public int getCol() {
+        return this.col;
+    }
+
+    void setPosition(int line, int col) {
+        this.line = line;
+        this.col = col;
+    }
+
+    // a fixed-size view; addChild is the way to add one
+    public List<ASTNode> getChildren() {
+        return this.children.length == 0 ? Collections.<ASTNode>emptyList() : Arrays.asList(this.children);
+    }
+
+    public int getChildCount() {
+        return this.children.length;
+    }
+
+    public ASTNode getChild(int i) {
+        return this.children[i];
     }
 
     public void setParent(ASTNode parent) {
@@ -27,31 +90,36 @@ public class ASTNode {
     }
 
     public void addChild(ASTNode newChild) {
-        this.children.add(newChild);
+        this.children = Arrays.copyOf(this.children, this.children.length + 1);
+        this.children[this.children.length - 1] = newChild;
     }
 
-    public void reverseChildren() {
-        Collections.reverse(this.children);
-    }
+    public void replaceChild(ASTNode oldChild, ASTNode newChild) {
+        for (int i = 0; i < this.children.length; i++) {
+            if (this.children[i] == oldChild) {
+                this.children[i] = newChild;
+                newChild.setParent(this);
+                oldChild.setParent(null);
+                return;
+            }
+        }
 
-    public void inOrderTraverse() {
-        System.out.println(this);
+        throw new RuntimeException("Not a child of " + this.ruleName);
+    }
 
-        for (ASTNode node : this.children) {
-            node.inOrderTraverse();
-        }
+    public void reverseChildren() {
+        Collections.reverse(Arrays.asList(this.children));
     }
 
-    public void writeTree(BufferedWriter bw) throws IOException {
-        bw.write(this.toString());
-        bw.write("\n");
+    public void inOrderTraverse() throws IOException {
+        TreeWriter.write(this, new OutputStreamWriter(System.out));
+    }
 
-        for (ASTNode node : this.children) {
-            node.writeTree(bw);
-        }
+    public void writeTree(Writer bw) throws IOException {
+        TreeWriter.write(this, bw);
     }
 
-    private int getLevel() {
+    public int getLevel() {
         int level = 0;
 
         ASTNode checkParent = this.getParent();
@@ -67,8 +135,9 @@ public class ASTNode {
     @Override
     public String toString() {
         StringBuilder str = new StringBuilder();
+        int level = getLevel();
 
-        for (int i = 0; i < getLevel(); i++) {
+        for (int i = 0; i < level; i++) {
             str.append(". ");
         }
 
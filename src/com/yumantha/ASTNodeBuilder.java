@@ -0,0 +1,63 @@
+package com.yumantha;
+
+import java.util.Arrays;
+
+public class ASTNodeBuilder implements TreeBuilder {
+    private NamePool names;
+    // finished subtrees without a parent yet, oldest first
+    private ASTNode[] stack;
+    private int top;
+    // the stream being parsed, whose current token is the one a leaf is being built from
+    private TokenStream positions;
+
+    public ASTNodeBuilder(NamePool names) {
+        this(names, null);
+    }
+
+    // Nodes built from a token take its line and column from positions, for messages about them.
+    public ASTNodeBuilder(NamePool names, TokenStream positions) {
+        this.names = names;
+        this.stack = new ASTNode[64];
+        this.top = 0;
+        this.positions = positions;
+    }
+
+    @Override
+    public void buildTree(int symbol, int n, int token) {
+        ASTNode node;
+
+        if (n == 0) {
+            node = new ASTNode(names, symbol, 0);
+        } else {
+            // the last n subtrees on the stack are the children, already in order
+            ASTNode[] children = new ASTNode[n];
+            top -= n;
+            System.arraycopy(stack, top, children, 0, n);
+            node = new ASTNode(names, symbol, children);
+        }
+
+        if (token >= 0 && positions != null) {
+            node.setPosition(positions.line(), positions.col());
+        }
+
+        if (top == stack.length) {
+            stack = Arrays.copyOf(stack, top * 2);
+        }
+
+        stack[top++] = node;
+    }
+
+    @Override
+    public int depth() {
+        return top;
+    }
+
+    public ASTNode root() {
+        return stack[0];
+    }
+
+    // the most recently built node
+    public ASTNode top() {
+        return stack[top - 1];
+    }
+}
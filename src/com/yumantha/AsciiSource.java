@@ -0,0 +1,59 @@
+package com.yumantha;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Presents a buffer of 7-bit ASCII bytes as characters without decoding it first.
+public class AsciiSource implements CharSequence {
+    private final ByteBuffer bytes;
+
+    public AsciiSource(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    public static boolean isAscii(ByteBuffer bytes) {
+        int i = bytes.position();
+        int limit = bytes.limit();
+
+        for (; i + 8 <= limit; i += 8) {
+            if ((bytes.getLong(i) & 0x8080808080808080L) != 0) {
+                return false;
+            }
+        }
+
+        for (; i < limit; i++) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public int length() {
+        return bytes.remaining();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) bytes.get(bytes.position() + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        ByteBuffer slice = bytes.duplicate();
+        slice.position(bytes.position() + start);
+        slice.limit(bytes.position() + end);
+
+        return new AsciiSource(slice.slice());
+    }
+
+    @Override
+    public String toString() {
+        byte[] text = new byte[bytes.remaining()];
+        bytes.duplicate().get(text);
+
+        return new String(text, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,143 @@
+package com.yumantha;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Compiles many sources in one JVM on a work-stealing pool. Each tree is written next to its
+// source as <source>.tree, the way the samples in winzig_test_programs are laid out.
+public class BatchCompiler {
+    public static final String TREE_SUFFIX = ".tree";
+
+    private static final Pattern SOURCE_NAME = Pattern.compile("[A-Za-z][A-Za-z0-9_-]*(\\.wz)?");
+
+    // Expands plain paths, directories (recursively, taking the files isSource accepts) and
+    // @list files holding one path per line. Relative paths are taken from workingDirectory.
+    public static List<String> collectInputs(List<String> paths, Path workingDirectory) throws IOException {
+        List<String> inputs = new ArrayList<String>();
+
+        for (String path : paths) {
+            if (path.startsWith("@")) {
+                for (String line : Files.readAllLines(workingDirectory.resolve(path.substring(1)), FileHandler.SOURCE_CHARSET)) {
+                    line = line.trim();
+
+                    if (!line.isEmpty()) {
+                        inputs.add(workingDirectory.resolve(line).toString());
+                    }
+                }
+            } else if (Files.isDirectory(workingDirectory.resolve(path))) {
+                try (Stream<Path> files = Files.walk(workingDirectory.resolve(path))) {
+                    inputs.addAll(files
+                            .filter(Files::isRegularFile)
+                            .filter(BatchCompiler::isSource)
+                            .map(Path::toString)
+                            .sorted()
+                            .collect(Collectors.toList()));
+                }
+            } else {
+                inputs.add(workingDirectory.resolve(path).toString());
+            }
+        }
+
+        return inputs;
+    }
+
+    // Sources found in directories are named like the samples, with no extension, or end in .wz;
+    // either way the name starts with a letter. That leaves out .tree outputs, hidden files and
+    // editor leftovers such as foo~, foo.swp, #foo# and vim's 4913 probe.
+    public static boolean isSource(Path file) {
+        return SOURCE_NAME.matcher(file.getFileName().toString()).matches();
+    }
+
+    public static List<CompileResult> compileAll(List<String> inputs, int threads) {
+        return compileAll(inputs, threads, null);
+    }
+
+    public static List<CompileResult> compileAll(List<String> inputs, int threads, ParseCache cache) {
+        return compileAll(inputs, threads, cache, null);
+    }
+
+    // stats, when given, holds one CompileStats per input, in the same order
+    public static List<CompileResult> compileAll(List<String> inputs, int threads, ParseCache cache, List<CompileStats> stats) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+
+        try {
+            List<Callable<CompileResult>> tasks = new ArrayList<Callable<CompileResult>>();
+
+            for (int i = 0; i < inputs.size(); i++) {
+                String input = inputs.get(i);
+                CompileStats fileStats = (stats == null) ? null : stats.get(i);
+
+                tasks.add(() -> compileToFile(input, cache, fileStats));
+            }
+
+            List<CompileResult> results = new ArrayList<CompileResult>();
+
+            for (Future<CompileResult> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+
+            return results;
+        } catch (InterruptedException | ExecutionException e) {
+            throw new RuntimeException("Batch compilation interrupted", e);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public static CompileResult compileToFile(String inputPath) {
+        return compileToFile(inputPath, null);
+    }
+
+    public static CompileResult compileToFile(String inputPath, ParseCache cache) {
+        return compileToFile(inputPath, cache, null);
+    }
+
+    public static CompileResult compileToFile(String inputPath, ParseCache cache, CompileStats stats) {
+        return compileToFile(inputPath, (ByteBuffer) null, cache, stats);
+    }
+
+    // source is the content of inputPath when the caller has read it already, or null
+    public static CompileResult compileToFile(String inputPath, ByteBuffer source, ParseCache cache, CompileStats stats) {
+        stats = CompileStats.forFile(inputPath, stats);
+        CompileResult result = Compiler.compile(inputPath, source, cache, stats);
+
+        if (result.succeeded()) {
+            try {
+                if (stats != null) {
+                    stats.begin();
+                }
+
+                if (result.treeText != null) {
+                    Files.write(Paths.get(inputPath + TREE_SUFFIX), result.treeText);
+                } else {
+                    new FileHandler().writeAST(inputPath + TREE_SUFFIX, result.tree);
+                }
+
+                if (stats != null) {
+                    stats.end(CompileStats.EMIT);
+                }
+            } catch (IOException e) {
+                if (stats != null) {
+                    stats.error = "Cannot write tree: " + e.getMessage();
+                }
+
+                return CompileResult.failed(inputPath, "Cannot write tree: " + e.getMessage());
+            }
+        }
+
+        // the tree is on disk now, do not keep every tree of the batch alive until the end
+        return result.succeeded() ? new CompileResult(inputPath, null, null) : result;
+    }
+}
@@ -0,0 +1,202 @@
+package com.yumantha;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// A tree written by BinaryTreeWriter, read in place from a mapped file. Opening only indexes the
+// label table; nodes are decoded one at a time by a Cursor, so no ASTNode is ever built. A file
+// that is truncated or corrupt throws a RuntimeException saying what is wrong with it, from the
+// constructor or from the Cursor once it gets to the bad part.
+public class BinaryTree {
+    public static BinaryTree map(String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            return new BinaryTree(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private final ByteBuffer bytes;
+    private final int[] labelStart;
+    private final int[] labelLength;
+    // decoded on first use
+    private final String[] labels;
+    private final int nodeCount;
+    private final int nodesStart;
+
+    public BinaryTree(ByteBuffer bytes) {
+        this.bytes = bytes;
+
+        if (bytes.remaining() < 4 || bytes.getInt(bytes.position()) != BinaryTreeWriter.MAGIC) {
+            throw new RuntimeException("Not a binary tree file");
+        }
+
+        int[] pos = {bytes.position() + 4};
+        int count = readVarint(bytes, pos);
+
+        // every label takes at least its length byte
+        if (count > bytes.limit() - pos[0]) {
+            throw corrupt("it holds fewer than the " + count + " labels it declares");
+        }
+
+        this.labelStart = new int[count];
+        this.labelLength = new int[count];
+        this.labels = new String[count];
+
+        for (int i = 0; i < count; i++) {
+            labelLength[i] = readVarint(bytes, pos);
+            labelStart[i] = pos[0];
+
+            if (labelLength[i] > bytes.limit() - pos[0]) {
+                throw corrupt("label " + i + " runs past the end of the file");
+            }
+
+            pos[0] += labelLength[i];
+        }
+
+        this.nodeCount = readVarint(bytes, pos);
+        this.nodesStart = pos[0];
+
+        // every node takes at least two bytes
+        if (nodeCount > (bytes.limit() - nodesStart) / 2) {
+            throw corrupt("it holds fewer than the " + nodeCount + " nodes it declares");
+        }
+    }
+
+    public int labelCount() {
+        return labels.length;
+    }
+
+    public String label(int i) {
+        if (labels[i] == null) {
+            byte[] text = new byte[labelLength[i]];
+            bytes.duplicate().position(labelStart[i]).get(text);
+            labels[i] = new String(text, StandardCharsets.UTF_8);
+        }
+
+        return labels[i];
+    }
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    // the same text TreeWriter gives for the tree this file was written from
+    public void writeText(Writer out) throws IOException {
+        TreeWriter.write(this, out);
+    }
+
+    // Walks the nodes in pre-order, the order they are stored in.
+    public class Cursor {
+        private final int[] pos = {nodesStart};
+        private int read = 0;
+        private int label = -1;
+        private int childCount = 0;
+        private int depth = 0;
+        // children still to come for each open ancestor of the next node
+        private int[] remaining = new int[32];
+        private int top = 0;
+
+        // Moves to the next node; false once all nodes have been visited.
+        public boolean next() {
+            if (read == nodeCount) {
+                if (read > 0 && (childCount > 0 || (top > 0 && remaining[top - 1] > 0))) {
+                    throw corrupt("it ends before the last node's children");
+                }
+
+                return false;
+            }
+
+            if (read > 0) {
+                if (childCount > 0) {
+                    if (top == remaining.length) {
+                        remaining = Arrays.copyOf(remaining, top * 2);
+                    }
+
+                    remaining[top++] = childCount;
+                } else {
+                    while (top > 0 && remaining[top - 1] == 0) {
+                        top--;
+                    }
+                }
+            }
+
+            if (top > 0) {
+                remaining[top - 1]--;
+            } else if (read > 0) {
+                throw corrupt("node " + read + " comes after the whole tree");
+            }
+
+            label = readVarint(bytes, pos);
+            childCount = readVarint(bytes, pos);
+
+            if (label >= labels.length) {
+                throw corrupt("node " + read + " has label " + label + ", but there are " + labels.length);
+            }
+
+            // each child is at least one of the nodes still to come
+            if (childCount > nodeCount - read - 1) {
+                throw corrupt("node " + read + " has " + childCount + " children, more than the nodes left");
+            }
+
+            depth = top;
+            read++;
+
+            return true;
+        }
+
+        // index into the label table
+        public int label() {
+            return label;
+        }
+
+        public String labelText() {
+            return BinaryTree.this.label(label);
+        }
+
+        public int childCount() {
+            return childCount;
+        }
+
+        // 0 for the root
+        public int depth() {
+            return depth;
+        }
+    }
+
+    private static int readVarint(ByteBuffer bytes, int[] pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+
+        do {
+            if (pos[0] >= bytes.limit()) {
+                throw corrupt("it ends in the middle of a number");
+            } else if (shift > 28) {
+                throw corrupt("a number at byte " + pos[0] + " is too long");
+            }
+
+            b = bytes.get(pos[0]++);
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+
+        if (value < 0) {
+            throw corrupt("a number before byte " + pos[0] + " is too large");
+        }
+
+        return value;
+    }
+
+    private static RuntimeException corrupt(String reason) {
+        return new RuntimeException("Corrupt binary tree file: " + reason);
+    }
+}
@@ -0,0 +1,145 @@
+package com.yumantha;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Writes a tree in the binary form read by BinaryTree:
+//
+//   int   MAGIC
+//   varint label count, then per label: varint byte length, UTF-8 bytes
+//   varint node count, then per node in pre-order: varint label index, varint child count
+//
+// Varints are unsigned LEB128, seven bits per byte with the high bit set on all but the last.
+public class BinaryTreeWriter {
+    public static final int MAGIC = 0x575a5431; // "WZT1"
+
+    public static void write(ASTNode root, OutputStream out) throws IOException {
+        BinaryTreeWriter writer = new BinaryTreeWriter();
+        writer.writeNodes(root);
+        writer.finish(out);
+    }
+
+    // label index per NamePool symbol, -1 where the symbol has not been seen
+    private int[] labelIndex;
+    private String[] labels;
+    private int labelCount;
+    private byte[] buffer;
+    private int length;
+    private int nodeCount;
+
+    private BinaryTreeWriter() {
+        this.labelIndex = new int[64];
+        this.labels = new String[64];
+        this.labelCount = 0;
+        this.buffer = new byte[1 << 12];
+        this.length = 0;
+        this.nodeCount = 0;
+
+        Arrays.fill(labelIndex, -1);
+    }
+
+    private void writeNodes(ASTNode root) {
+        ASTNode[] stack = new ASTNode[32];
+        int top = 0;
+
+        stack[top++] = root;
+
+        while (top > 0) {
+            ASTNode node = stack[--top];
+            stack[top] = null;
+
+            int n = node.getChildCount();
+
+            putVarint(label(node));
+            putVarint(n);
+            nodeCount++;
+
+            if (top + n > stack.length) {
+                stack = Arrays.copyOf(stack, (top + n) * 2);
+            }
+
+            for (int i = n - 1; i >= 0; i--) {
+                stack[top++] = node.getChild(i);
+            }
+        }
+    }
+
+    private int label(ASTNode node) {
+        int symbol = node.getSymbol();
+
+        if (symbol >= labelIndex.length) {
+            int size = labelIndex.length;
+            labelIndex = Arrays.copyOf(labelIndex, Math.max(symbol + 1, size * 2));
+            Arrays.fill(labelIndex, size, labelIndex.length, -1);
+        }
+
+        if (labelIndex[symbol] < 0) {
+            if (labelCount == labels.length) {
+                labels = Arrays.copyOf(labels, labelCount * 2);
+            }
+
+            labels[labelCount] = node.getRuleName();
+            labelIndex[symbol] = labelCount++;
+        }
+
+        return labelIndex[symbol];
+    }
+
+    // The label table goes before the nodes but is only complete once they are all written, so the
+    // header is assembled in a fresh buffer.
+    private void finish(OutputStream out) throws IOException {
+        byte[] nodeStream = buffer;
+        int nodeStreamLength = length;
+
+        buffer = new byte[256];
+        length = 0;
+
+        putInt(MAGIC);
+        putVarint(labelCount);
+
+        for (int i = 0; i < labelCount; i++) {
+            byte[] bytes = labels[i].getBytes(StandardCharsets.UTF_8);
+            putVarint(bytes.length);
+            putBytes(bytes);
+        }
+
+        putVarint(nodeCount);
+
+        out.write(buffer, 0, length);
+        out.write(nodeStream, 0, nodeStreamLength);
+        out.flush();
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(length + extra, buffer.length * 2));
+        }
+    }
+
+    private void putInt(int value) {
+        ensure(4);
+        buffer[length++] = (byte) (value >>> 24);
+        buffer[length++] = (byte) (value >>> 16);
+        buffer[length++] = (byte) (value >>> 8);
+        buffer[length++] = (byte) value;
+    }
+
+    private void putVarint(int value) {
+        ensure(5);
+
+        while ((value & ~0x7f) != 0) {
+            buffer[length++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+
+        buffer[length++] = (byte) value;
+    }
+
+    private void putBytes(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+}
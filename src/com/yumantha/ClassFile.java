@@ -0,0 +1,502 @@
+package com.yumantha;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+// Writes a JVM class file of static fields and static methods, as much of the format as JvmBackend
+// needs. The class files are version 49, which the verifier checks by type inference, so methods
+// need no StackMapTable frames. Code tracks the operand stack as instructions are added, to size
+// it, and patches branch offsets once every label is placed.
+public class ClassFile {
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_STATIC = 0x0008;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int VERSION = 49;
+    private static final int MAX_CODE = 65535;
+
+    // opcodes
+    public static final int POP = 87;
+    public static final int IADD = 96;
+    public static final int ISUB = 100;
+    public static final int IMUL = 104;
+    public static final int IDIV = 108;
+    public static final int IREM = 112;
+    public static final int INEG = 116;
+    public static final int IAND = 126;
+    public static final int IOR = 128;
+    public static final int IXOR = 130;
+    public static final int IFEQ = 153;
+    public static final int IFNE = 154;
+    public static final int IF_ICMPEQ = 159;
+    public static final int IF_ICMPNE = 160;
+    public static final int IF_ICMPLT = 161;
+    public static final int IF_ICMPGE = 162;
+    public static final int IF_ICMPGT = 163;
+    public static final int IF_ICMPLE = 164;
+    public static final int GOTO = 167;
+    public static final int IRETURN = 172;
+    public static final int RETURN = 177;
+    public static final int ATHROW = 191;
+    private static final int BIPUSH = 16;
+    private static final int SIPUSH = 17;
+    private static final int LDC = 18;
+    private static final int LDC_W = 19;
+    private static final int ILOAD = 21;
+    private static final int ISTORE = 54;
+    private static final int IINC = 132;
+    private static final int GETSTATIC = 178;
+    private static final int PUTSTATIC = 179;
+    private static final int INVOKESTATIC = 184;
+    private static final int WIDE = 196;
+
+    // operand stack change of each opcode that takes no operands
+    private static final int[] stackEffect = new int[256];
+
+    static {
+        stackEffect[POP] = -1;
+        stackEffect[IADD] = -1;
+        stackEffect[ISUB] = -1;
+        stackEffect[IMUL] = -1;
+        stackEffect[IDIV] = -1;
+        stackEffect[IREM] = -1;
+        stackEffect[IAND] = -1;
+        stackEffect[IOR] = -1;
+        stackEffect[IXOR] = -1;
+        stackEffect[IRETURN] = -1;
+        stackEffect[ATHROW] = -1;
+    }
+
+    private final String name;
+    private final ByteArrayOutputStream pool;
+    private final DataOutputStream poolOut;
+    private final HashMap<String, Integer> constants;
+    private int poolCount;
+    private final ByteArrayOutputStream members;
+    private final DataOutputStream membersOut;
+    private int fieldCount;
+    private final ArrayList<Code> methods;
+    private final int thisClass;
+    private final int superClass;
+    private String sourceFile;
+
+    public ClassFile(String name) {
+        this.name = name;
+        this.pool = new ByteArrayOutputStream();
+        this.poolOut = new DataOutputStream(pool);
+        this.constants = new HashMap<String, Integer>();
+        this.poolCount = 1;
+        this.members = new ByteArrayOutputStream();
+        this.membersOut = new DataOutputStream(members);
+        this.fieldCount = 0;
+        this.methods = new ArrayList<Code>();
+        this.thisClass = classRef(name);
+        this.superClass = classRef("java/lang/Object");
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public void setSourceFile(String sourceFile) {
+        this.sourceFile = sourceFile;
+    }
+
+    public void addField(int access, String fieldName, String descriptor) {
+        try {
+            membersOut.writeShort(access);
+            membersOut.writeShort(utf8(fieldName));
+            membersOut.writeShort(utf8(descriptor));
+            membersOut.writeShort(0);
+            fieldCount++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The method's code, to be filled in before toBytes. maxLocals starts at the argument count.
+    public Code addMethod(int access, String methodName, String descriptor, int arguments) {
+        Code code = new Code(access, utf8(methodName), utf8(descriptor), methodName, arguments);
+        methods.add(code);
+        return code;
+    }
+
+    public byte[] toBytes() {
+        try {
+            int sourceFileAttribute = sourceFile == null ? 0 : utf8("SourceFile");
+            int sourceFileName = sourceFile == null ? 0 : utf8(sourceFile);
+            int codeAttribute = methods.isEmpty() ? 0 : utf8("Code");
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(VERSION);
+            out.writeShort(poolCount);
+            pool.writeTo(out);
+            out.writeShort(ACC_PUBLIC | ACC_SUPER);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(fieldCount);
+            members.writeTo(out);
+            out.writeShort(methods.size());
+
+            for (Code code : methods) {
+                code.write(out, codeAttribute);
+            }
+
+            if (sourceFile == null) {
+                out.writeShort(0);
+            } else {
+                out.writeShort(1);
+                out.writeShort(sourceFileAttribute);
+                out.writeInt(2);
+                out.writeShort(sourceFileName);
+            }
+
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public int utf8(String text) {
+        Integer index = constants.get("U" + text);
+
+        if (index != null) {
+            return index;
+        }
+
+        try {
+            poolOut.writeByte(1);
+            poolOut.writeUTF(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return add("U" + text, 1);
+    }
+
+    public int classRef(String className) {
+        return reference("C", 7, utf8(className), -1);
+    }
+
+    public int string(String text) {
+        return reference("S", 8, utf8(text), -1);
+    }
+
+    public int integer(int value) {
+        Integer index = constants.get("I" + value);
+
+        if (index != null) {
+            return index;
+        }
+
+        try {
+            poolOut.writeByte(3);
+            poolOut.writeInt(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return add("I" + value, 1);
+    }
+
+    public int fieldRef(String owner, String fieldName, String descriptor) {
+        return reference("F", 9, classRef(owner), nameAndType(fieldName, descriptor));
+    }
+
+    public int methodRef(String owner, String methodName, String descriptor) {
+        return reference("M", 10, classRef(owner), nameAndType(methodName, descriptor));
+    }
+
+    private int nameAndType(String memberName, String descriptor) {
+        return reference("N", 12, utf8(memberName), utf8(descriptor));
+    }
+
+    // a constant of one or two indexes into the pool
+    private int reference(String kind, int tag, int first, int second) {
+        String key = kind + first + "." + second;
+        Integer index = constants.get(key);
+
+        if (index != null) {
+            return index;
+        }
+
+        try {
+            poolOut.writeByte(tag);
+            poolOut.writeShort(first);
+
+            if (second >= 0) {
+                poolOut.writeShort(second);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return add(key, 1);
+    }
+
+    private int add(String key, int slots) {
+        int index = poolCount;
+        poolCount += slots;
+
+        if (poolCount > 65535) {
+            throw new RuntimeException("Too many constants for one class file");
+        }
+
+        constants.put(key, index);
+        return index;
+    }
+
+    // A position in a method's code that branches go to.
+    public static class Label {
+        private int position = -1;
+        // branch instruction and offset positions waiting for this label, in pairs
+        private int[] fixups = new int[4];
+        private int fixupCount = 0;
+    }
+
+    public class Code {
+        private final int access;
+        private final int nameIndex;
+        private final int descriptorIndex;
+        private final String methodName;
+        private byte[] code;
+        private int length;
+        private int stack;
+        private int maxStack;
+        private int maxLocals;
+        private final ArrayList<Label> labels;
+        // start, end, handler positions of catch-all handlers
+        private int[] handlers;
+        private int handlerCount;
+
+        private Code(int access, int nameIndex, int descriptorIndex, String methodName, int arguments) {
+            this.access = access;
+            this.nameIndex = nameIndex;
+            this.descriptorIndex = descriptorIndex;
+            this.methodName = methodName;
+            this.code = new byte[256];
+            this.length = 0;
+            this.stack = 0;
+            this.maxStack = 0;
+            this.maxLocals = arguments;
+            this.labels = new ArrayList<Label>();
+            this.handlers = new int[0];
+            this.handlerCount = 0;
+        }
+
+        public void op(int opcode) {
+            put(opcode);
+            adjust(stackEffect[opcode]);
+        }
+
+        public void iconst(int value) {
+            if (value >= -1 && value <= 5) {
+                put(3 + value);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                put(BIPUSH);
+                put(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                put(SIPUSH);
+                putShort(value);
+            } else {
+                loadConstant(integer(value));
+                return;
+            }
+
+            adjust(1);
+        }
+
+        public void ldcString(String text) {
+            loadConstant(string(text));
+        }
+
+        private void loadConstant(int index) {
+            if (index < 256) {
+                put(LDC);
+                put(index);
+            } else {
+                put(LDC_W);
+                putShort(index);
+            }
+
+            adjust(1);
+        }
+
+        public void iload(int slot) {
+            local(ILOAD, 26, slot);
+            adjust(1);
+        }
+
+        public void istore(int slot) {
+            local(ISTORE, 59, slot);
+            adjust(-1);
+        }
+
+        public void iinc(int slot, int delta) {
+            useLocal(slot);
+
+            if (slot < 256 && delta >= Byte.MIN_VALUE && delta <= Byte.MAX_VALUE) {
+                put(IINC);
+                put(slot);
+                put(delta);
+            } else {
+                put(WIDE);
+                put(IINC);
+                putShort(slot);
+                putShort(delta);
+            }
+        }
+
+        public void getstatic(int field) {
+            put(GETSTATIC);
+            putShort(field);
+            adjust(1);
+        }
+
+        public void putstatic(int field) {
+            put(PUTSTATIC);
+            putShort(field);
+            adjust(-1);
+        }
+
+        public void invokestatic(int method, int arguments, boolean returnsValue) {
+            put(INVOKESTATIC);
+            putShort(method);
+            adjust((returnsValue ? 1 : 0) - arguments);
+        }
+
+        // IFEQ to IF_ICMPLE or GOTO
+        public void jump(int opcode, Label target) {
+            if (target.fixupCount + 2 > target.fixups.length) {
+                target.fixups = Arrays.copyOf(target.fixups, target.fixups.length * 2);
+            }
+
+            target.fixups[target.fixupCount++] = length;
+            put(opcode);
+            target.fixups[target.fixupCount++] = length;
+            putShort(0);
+
+            if (opcode == GOTO) {
+                return;
+            }
+
+            adjust(opcode >= IF_ICMPEQ ? -2 : -1);
+        }
+
+        // Places label here. Branches carry no values across, so the stack depth there is the depth
+        // wherever code falls into it, which Code keeps tracking in order.
+        public void place(Label label) {
+            label.position = length;
+            labels.add(label);
+        }
+
+        // Runs handler, with what was thrown on the stack, for anything thrown between start and end.
+        public void catchAll(Label start, Label end, Label handler) {
+            if (start.position == end.position) {
+                return;
+            }
+
+            handlers = Arrays.copyOf(handlers, (handlerCount + 1) * 3);
+            handlers[handlerCount * 3] = start.position;
+            handlers[handlerCount * 3 + 1] = end.position;
+            handlers[handlerCount * 3 + 2] = handler.position;
+            handlerCount++;
+        }
+
+        public int stack() {
+            return stack;
+        }
+
+        // the depth where the code that follows starts, after a return, goto or handler entry
+        public void setStack(int depth) {
+            stack = depth;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        public void useLocal(int slot) {
+            maxLocals = Math.max(maxLocals, slot + 1);
+        }
+
+        private void local(int opcode, int shortForm, int slot) {
+            useLocal(slot);
+
+            if (slot <= 3) {
+                put(shortForm + slot);
+            } else if (slot < 256) {
+                put(opcode);
+                put(slot);
+            } else {
+                put(WIDE);
+                put(opcode);
+                putShort(slot);
+            }
+        }
+
+        private void adjust(int delta) {
+            stack += delta;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        private void put(int b) {
+            if (length == code.length) {
+                code = Arrays.copyOf(code, length * 2);
+            }
+
+            code[length++] = (byte) b;
+        }
+
+        private void putShort(int s) {
+            put(s >> 8);
+            put(s);
+        }
+
+        private void write(DataOutputStream out, int codeAttribute) throws IOException {
+            if (length > MAX_CODE) {
+                throw new RuntimeException("Code of " + methodName + " is too large for a JVM method");
+            }
+
+            for (Label label : labels) {
+                for (int i = 0; i < label.fixupCount; i += 2) {
+                    int offset = label.position - label.fixups[i];
+
+                    if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                        throw new RuntimeException("Code of " + methodName + " is too large for a JVM method");
+                    }
+
+                    code[label.fixups[i + 1]] = (byte) (offset >> 8);
+                    code[label.fixups[i + 1] + 1] = (byte) offset;
+                }
+            }
+
+            out.writeShort(access);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+            out.writeShort(1);
+            out.writeShort(codeAttribute);
+            out.writeInt(12 + length + 8 * handlerCount);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(length);
+            out.write(code, 0, length);
+            out.writeShort(handlerCount);
+
+            for (int i = 0; i < handlerCount; i++) {
+                out.writeShort(handlers[i * 3]);
+                out.writeShort(handlers[i * 3 + 1]);
+                out.writeShort(handlers[i * 3 + 2]);
+                out.writeShort(0);
+            }
+
+            out.writeShort(0);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.yumantha;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+// Forwards a command line to a CompileServer and replays its output; see CompileServer for the protocol.
+public class CompileClient {
+    public static int run(Path socket, List<String> args) throws IOException {
+        SocketChannel channel;
+
+        try {
+            channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+            channel.connect(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            System.err.println("No winzigc server listening on " + socket + " (" + e.getMessage() + ")");
+            return 1;
+        }
+
+        try (channel) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+
+            out.writeUTF(Paths.get("").toAbsolutePath().toString());
+            out.writeInt(args.size());
+
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+
+            out.flush();
+
+            byte[] buffer = new byte[8192];
+
+            while (true) {
+                byte kind = in.readByte();
+
+                if (kind == CompileServer.EXIT) {
+                    System.out.flush();
+                    System.err.flush();
+                    return in.readInt();
+                }
+
+                int length = in.readInt();
+
+                while (length > 0) {
+                    int chunk = Math.min(length, buffer.length);
+                    in.readFully(buffer, 0, chunk);
+                    (kind == CompileServer.STDOUT ? System.out : System.err).write(buffer, 0, chunk);
+                    length -= chunk;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.yumantha;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Flight recorder event for one file run through Compiler.compile. Its phases are PhaseEvents on
+// the same thread within its span.
+@Name("com.yumantha.Compile")
+@Label("WinZigC Compile")
+@Category("WinZigC")
+@StackTrace(false)
+@Description("One source file read, scanned and parsed")
+public class CompileEvent extends jdk.jfr.Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Source Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Tokens")
+    public long tokens;
+
+    @Label("Nodes")
+    public long nodes;
+
+    @Label("Max Depth")
+    public int maxDepth;
+
+    @Label("Outcome")
+    public String outcome;
+
+    @Label("Error")
+    public String error;
+
+    @Label("From Cache")
+    public boolean cached;
+}
@@ -0,0 +1,40 @@
+package com.yumantha;
+
+public class CompileResult {
+    public final String inputPath;
+    public final ASTNode tree;
+    public final String error;
+    // the tree as .tree text in UTF-8 when it came from, or went into, a ParseCache
+    public final byte[] treeText;
+    // what the tree's symbols are ids in, when there is a tree
+    public final NamePool names;
+
+    public CompileResult(String inputPath, ASTNode tree, String error) {
+        this(inputPath, tree, error, null);
+    }
+
+    public CompileResult(String inputPath, ASTNode tree, String error, byte[] treeText) {
+        this(inputPath, tree, null, error, treeText);
+    }
+
+    public CompileResult(String inputPath, ASTNode tree, NamePool names, String error, byte[] treeText) {
+        this.inputPath = inputPath;
+        this.tree = tree;
+        this.names = names;
+        this.error = error;
+        this.treeText = treeText;
+    }
+
+    public static CompileResult failed(String inputPath, String error) {
+        return new CompileResult(inputPath, null, error);
+    }
+
+    public boolean succeeded() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return succeeded() ? inputPath + ": ok" : inputPath + ": " + error;
+    }
+}
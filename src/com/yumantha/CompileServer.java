@@ -0,0 +1,182 @@
+package com.yumantha;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Keeps one JVM, and so the JIT-compiled Lexer and Parser, alive between compiles. Only the modes
+// that compile to trees are served: the others read the server's standard input, share ProgramIO's
+// process-wide streams or never finish.
+//
+// Protocol, all through Data{Input,Output}Stream:
+//   request:  UTF working directory, int argc, argc x UTF argument
+//   response: any number of (byte STDOUT|STDERR, int length, bytes) frames, then (byte EXIT, int status)
+public class CompileServer {
+    static final byte STDOUT = 'O';
+    static final byte STDERR = 'E';
+    static final byte EXIT = 'X';
+
+    private static final List<String> servedModes = Arrays.asList("-ast", "-ast-binary", "-ast-text", "-batch");
+
+    public static Path defaultSocket() {
+        return Paths.get(System.getProperty("java.io.tmpdir"), "winzigc-" + System.getProperty("user.name") + ".sock");
+    }
+
+    private final Path socket;
+
+    public CompileServer(Path socket) {
+        this.socket = socket;
+    }
+
+    public void serve() throws IOException {
+        if (listening(socket)) {
+            throw new IOException("A winzigc server is already listening on " + socket);
+        }
+
+        // a socket file left behind by a server that was killed would make bind fail
+        Files.deleteIfExists(socket);
+
+        ExecutorService workers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "winzigc-request");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    Files.deleteIfExists(socket);
+                } catch (IOException ignored) {
+                }
+            }));
+
+            System.err.println("winzigc server listening on " + socket);
+
+            while (true) {
+                SocketChannel client = server.accept();
+                workers.execute(() -> handle(client));
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private static boolean listening(Path socket) {
+        if (!Files.exists(socket)) {
+            return false;
+        }
+
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void handle(SocketChannel channel) {
+        try (channel) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+            String workingDirectory = in.readUTF();
+            int argc = in.readInt();
+            List<String> args = new ArrayList<String>();
+
+            for (int i = 0; i < argc; i++) {
+                args.add(in.readUTF());
+            }
+
+            PrintStream stdout = new PrintStream(new BufferedOutputStream(new FrameOutputStream(out, STDOUT)));
+            PrintStream stderr = new PrintStream(new BufferedOutputStream(new FrameOutputStream(out, STDERR)));
+            int status;
+
+            try {
+                if (servedModes.contains(mode(args))) {
+                    status = winzigc.run(args, Paths.get(workingDirectory), stdout, stderr);
+                } else {
+                    stderr.println("The server only runs " + String.join(", ", servedModes) + "; run other modes without -client");
+                    status = 1;
+                }
+            } catch (IOException | RuntimeException e) {
+                stderr.println(e);
+                status = 1;
+            }
+
+            stdout.flush();
+            stderr.flush();
+
+            synchronized (out) {
+                out.writeByte(EXIT);
+                out.writeInt(status);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // the client went away, nothing left to report to
+        }
+    }
+
+    // the first argument that is not --stats, which may go anywhere
+    private static String mode(List<String> args) {
+        for (String arg : args) {
+            if (!arg.equals("--stats") && !arg.startsWith("--stats=")) {
+                return arg;
+            }
+        }
+
+        return null;
+    }
+
+    private static class FrameOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte kind;
+
+        FrameOutputStream(DataOutputStream out, byte kind) {
+            this.out = out;
+            this.kind = kind;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+
+            synchronized (out) {
+                out.writeByte(kind);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+}
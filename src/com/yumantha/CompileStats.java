@@ -0,0 +1,224 @@
+package com.yumantha;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+// Wall time and allocated bytes per compiler phase for one file, or summed over many, written as
+// one JSON object per line. Allocation comes from the per-thread counters of ThreadMXBean, so each
+// file must be compiled on a single thread. Each phase is also a PhaseEvent when the flight recorder
+// is recording it.
+public class CompileStats {
+    public static final int READ = 0;
+    public static final int SCAN = 1;
+    public static final int PARSE = 2;
+    public static final int EMIT = 3;
+    private static final String[] phases = {"read", "scan", "parse", "emit"};
+
+    private static final com.sun.management.ThreadMXBean threads = allocationCounter();
+
+    public final String inputPath;
+    public final long[] nanos = new long[phases.length];
+    public final long[] allocated = new long[phases.length];
+    public long bytes;
+    public long tokens;
+    public long nodes;
+    public int maxDepth;
+    public boolean cached;
+    public String error;
+    // files summed into this one, for totals
+    public int files;
+    public int failed;
+
+    private long startNanos;
+    private long startAllocated;
+    private PhaseEvent event;
+
+    public CompileStats(String inputPath) {
+        this.inputPath = inputPath;
+        this.files = 1;
+    }
+
+    // The stats to measure a file into: the ones given, or fresh ones when only the flight recorder
+    // wants them, or none, which keeps the compile path free of measuring.
+    public static CompileStats forFile(String inputPath, CompileStats stats) {
+        if (stats == null && (new CompileEvent().isEnabled() || new PhaseEvent().isEnabled())) {
+            return new CompileStats(inputPath);
+        }
+
+        return stats;
+    }
+
+    public void begin() {
+        event = new PhaseEvent();
+        event.begin();
+        startAllocated = allocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    public void end(int phase) {
+        long allocatedNow = allocatedBytes() - startAllocated;
+
+        nanos[phase] += System.nanoTime() - startNanos;
+        allocated[phase] += allocatedNow;
+        event.end();
+
+        if (event.shouldCommit()) {
+            event.path = inputPath;
+            event.phase = phases[phase];
+            event.bytes = bytes;
+            event.tokens = tokens;
+            event.nodes = nodes;
+            event.allocated = allocatedNow;
+            event.commit();
+        }
+
+        event = null;
+    }
+
+    // Ends and commits a CompileEvent begun before this file was compiled.
+    public void commit(CompileEvent file) {
+        file.end();
+
+        if (file.shouldCommit()) {
+            file.path = inputPath;
+            file.bytes = bytes;
+            file.tokens = tokens;
+            file.nodes = nodes;
+            file.maxDepth = maxDepth;
+            file.outcome = error == null ? "ok" : "error";
+            file.error = error;
+            file.cached = cached;
+            file.commit();
+        }
+    }
+
+    // A builder that also counts nodes and the height of the tree into these stats.
+    public TreeBuilder counting(final TreeBuilder tree) {
+        return new TreeBuilder() {
+            // height of each finished subtree, parallel to the builder's own stack
+            private int[] heights = new int[64];
+            private int top = 0;
+
+            @Override
+            public void buildTree(int symbol, int n, int token) {
+                int height = 0;
+
+                for (int i = 0; i < n; i++) {
+                    height = Math.max(height, heights[--top]);
+                }
+
+                if (top == heights.length) {
+                    heights = Arrays.copyOf(heights, top * 2);
+                }
+
+                heights[top++] = height + 1;
+                nodes++;
+                maxDepth = Math.max(maxDepth, height + 1);
+                tree.buildTree(symbol, n, token);
+            }
+
+            @Override
+            public int depth() {
+                return tree.depth();
+            }
+        };
+    }
+
+    public static CompileStats total(List<CompileStats> all) {
+        CompileStats total = new CompileStats(null);
+        total.files = 0;
+
+        for (CompileStats stats : all) {
+            for (int i = 0; i < phases.length; i++) {
+                total.nanos[i] += stats.nanos[i];
+                total.allocated[i] += stats.allocated[i];
+            }
+
+            total.bytes += stats.bytes;
+            total.tokens += stats.tokens;
+            total.nodes += stats.nodes;
+            total.maxDepth = Math.max(total.maxDepth, stats.maxDepth);
+            total.files += stats.files;
+            total.failed += stats.failed + (stats.error != null ? 1 : 0);
+        }
+
+        return total;
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        long totalNanos = 0;
+
+        if (inputPath != null) {
+            json.append("\"file\":");
+            appendString(json, inputPath);
+            json.append(",\"outcome\":\"").append(error == null ? "ok" : "error").append('"');
+
+            if (error != null) {
+                json.append(",\"error\":");
+                appendString(json, error);
+            }
+
+            json.append(",\"cached\":").append(cached);
+        } else {
+            json.append("\"total\":true,\"files\":").append(files).append(",\"failed\":").append(failed);
+        }
+
+        json.append(",\"bytes\":").append(bytes)
+                .append(",\"tokens\":").append(tokens)
+                .append(",\"nodes\":").append(nodes)
+                .append(",\"maxDepth\":").append(maxDepth);
+
+        for (int i = 0; i < phases.length; i++) {
+            json.append(",\"").append(phases[i]).append("\":{\"ms\":").append(nanos[i] / 1e6)
+                    .append(",\"allocatedBytes\":").append(allocated[i]).append('}');
+            totalNanos += nanos[i];
+        }
+
+        json.append(",\"totalMs\":").append(totalNanos / 1e6)
+                .append(",\"tokensPerSec\":").append(totalNanos == 0 ? 0 : (long) (tokens * 1e9 / totalNanos))
+                .append('}');
+
+        return json.toString();
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c == '\n') {
+                json.append("\\n");
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+
+        json.append('"');
+    }
+
+    private static long allocatedBytes() {
+        return threads == null ? 0 : threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        }
+
+        return null;
+    }
+}
@@ -1,26 +1,191 @@
 package com.yumantha;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
 
 public class Compiler {
-    public static void compile(String inputPath) throws IOException {
-        FileHandler fileHandler = new FileHandler();
-        String sourceCode = fileHandler.readFile(inputPath);
-        ArrayList<Token> tokens = Scanner.scan(sourceCode);
+    // Lexer and Parser recover from syntax errors and collect them all; they, or any other error
+    // thrown, become a failed result here so that one bad file never ends a run that compiles others.
+    public static CompileResult compile(String inputPath) {
+        return compile(inputPath, (ParseCache) null);
+    }
+
+    // With a cache, a hit skips scanning and parsing and returns only the tree text; a miss
+    // returns both the tree and its text, which is stored for next time.
+    public static CompileResult compile(String inputPath, ParseCache cache) {
+        return compile(inputPath, cache, null);
+    }
+
+    // With stats, the read, scan and parse phases are timed into it. Scanning then runs to the
+    // end before parsing starts instead of being interleaved with it, so the phases can be told apart.
+    // The same happens without stats while the flight recorder is recording CompileEvents.
+    public static CompileResult compile(String inputPath, ParseCache cache, CompileStats stats) {
+        return compile(inputPath, (ByteBuffer) null, cache, stats);
+    }
+
+    // Compiles source as the content of inputPath without reading the file, for callers that have
+    // read it already; a null source is read from the file.
+    public static CompileResult compile(String inputPath, ByteBuffer source, ParseCache cache, CompileStats stats) {
+        CompileEvent event = new CompileEvent();
+        event.begin();
+
+        CompileStats measured = CompileStats.forFile(inputPath, stats);
+        CompileResult result = compileMeasured(inputPath, source, cache, measured);
+
+        if (measured != null) {
+            measured.error = result.error;
+            measured.commit(event);
+        }
+
+        return result;
+    }
+
+    // Parses the program and checks its names, as running it needs. Leniently, names it assigns
+    // without declaring them become integer variables; see SemanticChecker.
+    public static CompileResult compileChecked(String inputPath, boolean lenient) {
+        CompileResult result = compile(inputPath);
+
+        if (!result.succeeded()) {
+            return result;
+        }
+
+        Diagnostics diagnostics = new Diagnostics();
+
+        if (!SemanticChecker.check(result.tree, result.names, diagnostics, lenient)) {
+            return CompileResult.failed(inputPath, diagnostics.toString());
+        }
+
+        return result;
+    }
+
+    private static CompileResult compileMeasured(String inputPath, ByteBuffer source, ParseCache cache, CompileStats stats) {
+        try {
+            if (stats != null) {
+                stats.begin();
+            }
+
+            if (source == null) {
+                source = new FileHandler().mapBytes(inputPath);
+            }
+
+            String key = null;
+
+            if (cache != null) {
+                key = cache.key(source);
+                byte[] treeText = cache.lookup(key);
+
+                if (treeText != null) {
+                    if (stats != null) {
+                        stats.bytes = source.remaining();
+                        stats.cached = true;
+                        stats.end(CompileStats.READ);
+                    }
 
-//        for (Token token : tokens) {
-//            System.out.println(token);
-//        }
+                    return new CompileResult(inputPath, null, null, treeText);
+                }
+            }
 
-        ASTNode prog = Parser.parseWinzig(tokens);
+            CharSequence sourceCode = FileHandler.decode(source);
+            NamePool names = new NamePool();
+            Diagnostics diagnostics = new Diagnostics();
+            ASTNode prog;
 
-        if (prog != null) {
-            prog.inOrderTraverse();
+            if (stats == null) {
+                prog = Parser.parseWinzig(Lexer.stream(sourceCode, names, diagnostics), diagnostics);
+            } else {
+                stats.bytes = source.remaining();
+                stats.end(CompileStats.READ);
+                prog = parseInPhases(sourceCode, names, diagnostics, stats);
+            }
 
-//            fileHandler.writeAST(outputPath, prog);
-        } else {
-            throw new RuntimeException("Parse Error!");
+            if (!diagnostics.isEmpty()) {
+                return CompileResult.failed(inputPath, diagnostics.toString());
+            }
+
+            if (prog == null) {
+                return CompileResult.failed(inputPath, "Parse Error!");
+            }
+
+            if (cache == null) {
+                return new CompileResult(inputPath, prog, names, null, null);
+            }
+
+            if (stats != null) {
+                stats.begin();
+            }
+
+            StringWriter text = new StringWriter();
+            prog.writeTree(text);
+            byte[] treeText = text.toString().getBytes(FileHandler.SOURCE_CHARSET);
+            cache.store(key, treeText);
+
+            if (stats != null) {
+                stats.end(CompileStats.EMIT);
+            }
+
+            return new CompileResult(inputPath, prog, names, null, treeText);
+        } catch (IOException e) {
+            return CompileResult.failed(inputPath, "Cannot read file: " + e.getMessage());
+        } catch (RuntimeException e) {
+            return CompileResult.failed(inputPath, e.getMessage());
+        } catch (StackOverflowError e) {
+            return CompileResult.failed(inputPath, "Program is nested too deeply");
+        } catch (InternalError e) {
+            // a large, mapped source was truncated under us
+            return CompileResult.failed(inputPath, "Cannot read file: it changed while being read");
+        }
+    }
+
+    private static ASTNode parseInPhases(CharSequence sourceCode, NamePool names, Diagnostics diagnostics, CompileStats stats) {
+        stats.begin();
+        TokenBuffer tokens = Lexer.scanBuffer(sourceCode, names, diagnostics);
+        stats.tokens = tokens.size();
+        stats.end(CompileStats.SCAN);
+
+        stats.begin();
+        TokenStream stream = tokens.stream();
+        ASTNodeBuilder builder = new ASTNodeBuilder(names, stream);
+
+        try {
+            if (Parser.parseWinzig(stream, stats.counting(builder), diagnostics)) {
+                return builder.root();
+            } else {
+                return null;
+            }
+        } finally {
+            stats.end(CompileStats.PARSE);
+        }
+    }
+
+    public static CompileResult compile(String inputPath, Writer out) throws IOException {
+        return compile(inputPath, out, null);
+    }
+
+    public static CompileResult compile(String inputPath, Writer out, ParseCache cache) throws IOException {
+        return compile(inputPath, out, cache, null);
+    }
+
+    public static CompileResult compile(String inputPath, Writer out, ParseCache cache, CompileStats stats) throws IOException {
+        stats = CompileStats.forFile(inputPath, stats);
+        CompileResult result = compile(inputPath, cache, stats);
+
+        if (stats != null) {
+            stats.begin();
+        }
+
+        if (result.treeText != null) {
+            out.write(new String(result.treeText, FileHandler.SOURCE_CHARSET));
+        } else if (result.succeeded()) {
+            result.tree.writeTree(out);
         }
+
+        if (stats != null) {
+            out.flush();
+            stats.end(CompileStats.EMIT);
+        }
+
+        return result;
     }
 }
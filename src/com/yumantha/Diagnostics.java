@@ -0,0 +1,73 @@
+package com.yumantha;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Error messages collected by Lexer and Parser when they recover instead of stopping at the first
+// error. Each message carries the line and column it was found at. Only the first limit messages
+// are kept; after that they are only counted, and Parser gives up at its next error.
+public class Diagnostics {
+    public static final int LIMIT = 100;
+
+    private final int limit;
+    private final ArrayList<String> messages;
+    private int count;
+
+    public Diagnostics() {
+        this(LIMIT);
+    }
+
+    public Diagnostics(int limit) {
+        this.limit = limit;
+        this.messages = new ArrayList<String>();
+        this.count = 0;
+    }
+
+    // Returns false when the limit had already been reached.
+    public boolean report(String message) {
+        count++;
+
+        if (messages.size() < limit) {
+            messages.add(message);
+            return true;
+        }
+
+        return false;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public boolean isFull() {
+        return messages.size() >= limit;
+    }
+
+    // all errors found, including those past the limit
+    public int count() {
+        return count;
+    }
+
+    public List<String> messages() {
+        return messages;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+
+        for (String message : messages) {
+            if (text.length() > 0) {
+                text.append('\n');
+            }
+
+            text.append(message);
+        }
+
+        if (count > messages.size()) {
+            text.append("\nToo many errors, stopped after ").append(limit);
+        }
+
+        return text.toString();
+    }
+}
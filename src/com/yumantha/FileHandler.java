@@ -1,32 +1,71 @@
 package com.yumantha;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 public class FileHandler {
+    public static final Charset SOURCE_CHARSET = StandardCharsets.UTF_8;
+
     public String readFile(String inputPath) throws IOException {
-        File f = new File(inputPath);
-        FileReader fr = new FileReader(f);
-        BufferedReader br = new BufferedReader(fr);
+        return mapFile(inputPath).toString();
+    }
+
+    // Pure-ASCII files are handed out as a view over the mapped bytes; anything else is decoded in one go.
+    public CharSequence mapFile(String inputPath) throws IOException {
+        return decode(mapBytes(inputPath));
+    }
+
+    // Files below this size are read into the heap: mapping them gains nothing, and an editor
+    // truncating a file while it is compiled cannot fault a read from the heap.
+    private static final long MAP_THRESHOLD = 1 << 20;
+
+    // The channel is closed before returning, the mapping stays valid until the buffer is collected.
+    // Reading a mapped file that has been truncated since throws InternalError.
+    public ByteBuffer mapBytes(String inputPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(inputPath), StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            if (size >= MAP_THRESHOLD) {
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+
+            ByteBuffer bytes = ByteBuffer.allocate((int) size);
 
-        int c = 0;
-        StringBuilder sourceCode = new StringBuilder();
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes) < 0) {
+                    break;
+                }
+            }
 
-        while ((c = br.read()) != -1) {
-            char character = (char) c;
-            sourceCode.append(character);
+            bytes.flip();
+            return bytes;
+        }
+    }
+
+    public static CharSequence decode(ByteBuffer bytes) {
+        if (AsciiSource.isAscii(bytes)) {
+            return new AsciiSource(bytes);
         }
 
-        return sourceCode.toString();
+        return SOURCE_CHARSET.decode(bytes.duplicate());
     }
 
     public void writeAST(String filePath, ASTNode prog) throws IOException {
-        File f = new File(filePath);
-        FileWriter fw = new FileWriter(f);
-        BufferedWriter bw = new BufferedWriter(fw);
-
-        prog.writeTree(bw);
+        try (BufferedWriter bw = Files.newBufferedWriter(Paths.get(filePath), SOURCE_CHARSET)) {
+            prog.writeTree(bw);
+        }
+    }
 
-        bw.close();
-        fw.close();
+    // the compact form read back by BinaryTree.map
+    public void writeBinaryAST(String filePath, ASTNode prog) throws IOException {
+        try (OutputStream out = Files.newOutputStream(Paths.get(filePath))) {
+            BinaryTreeWriter.write(prog, out);
+        }
     }
 }
@@ -0,0 +1,102 @@
+package com.yumantha;
+
+// Text kept as a gap buffer: the characters before the last edit at the start of one array, those
+// after it at the end, and free room in between. An edit first moves the gap to itself, which
+// copies only the characters between it and the last edit, so a run of edits in one place costs
+// nothing for the rest of the text however long it is.
+public class GapText implements CharSequence {
+    private static final int MIN_GAP = 64;
+
+    private char[] chars;
+    private int gapStart;
+    private int gapEnd;
+
+    public GapText(CharSequence text) {
+        String string = text.toString();
+
+        this.chars = new char[string.length() + MIN_GAP];
+        this.gapStart = string.length();
+        this.gapEnd = chars.length;
+
+        string.getChars(0, string.length(), chars, 0);
+    }
+
+    // Replaces [start, end) with inserted.
+    public void replace(int start, int end, String inserted) {
+        if (start < 0 || start > end || end > length()) {
+            throw new IndexOutOfBoundsException("Replace " + start + ".." + end + " of " + length());
+        }
+
+        moveGap(end);
+        gapStart = start;
+
+        if (gapEnd - gapStart < inserted.length()) {
+            grow(inserted.length());
+        }
+
+        inserted.getChars(0, inserted.length(), chars, gapStart);
+        gapStart += inserted.length();
+    }
+
+    private void moveGap(int index) {
+        if (index < gapStart) {
+            int count = gapStart - index;
+            System.arraycopy(chars, index, chars, gapEnd - count, count);
+            gapStart -= count;
+            gapEnd -= count;
+        } else if (index > gapStart) {
+            int count = index - gapStart;
+            System.arraycopy(chars, gapEnd, chars, gapStart, count);
+            gapStart += count;
+            gapEnd += count;
+        }
+    }
+
+    // makes the gap at least needed long
+    private void grow(int needed) {
+        int after = chars.length - gapEnd;
+        int capacity = Math.max(chars.length + (chars.length >> 1), length() + needed + MIN_GAP);
+        char[] grown = new char[capacity];
+
+        System.arraycopy(chars, 0, grown, 0, gapStart);
+        System.arraycopy(chars, gapEnd, grown, capacity - after, after);
+        chars = grown;
+        gapEnd = capacity - after;
+    }
+
+    @Override
+    public int length() {
+        return chars.length - (gapEnd - gapStart);
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < gapStart) {
+            return chars[index];
+        } else if (index < length()) {
+            return chars[index + gapEnd - gapStart];
+        }
+
+        throw new IndexOutOfBoundsException("Index " + index + " of " + length());
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        StringBuilder text = new StringBuilder(end - start);
+
+        for (int i = start; i < end; i++) {
+            text.append(charAt(i));
+        }
+
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(length());
+        text.append(chars, 0, gapStart);
+        text.append(chars, gapEnd, chars.length - gapEnd);
+
+        return text.toString();
+    }
+}
@@ -0,0 +1,253 @@
+package com.yumantha;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+// Keeps a source text and its tree in step across edits. An edit that falls inside a fcn or block
+// re-scans and re-parses only the smallest such node around it and splices the new subtree in;
+// anything else (edits between functions, regions that no longer parse as one node, tokens that
+// would lex differently across the region boundary) falls back to parsing the whole text, so the
+// tree always equals what a full parse of the new text gives.
+//
+// Edits cost in proportion to what they touch and to their distance from the last edit, not to
+// the size of the file. The text is a GapText, and the spans past an edit, which all move by its
+// length, share one pending shift the same way: the spans from index shiftFrom on are shift
+// characters further on than their start and end say. Each edit moves that point to itself,
+// applying or taking back the shift of the spans in between.
+public class IncrementalParser {
+    private static class Span {
+        int start;
+        int end;
+        ASTNode node;
+        // the smallest span around this one, or null
+        Span parent;
+
+        Span(int start, int end, ASTNode node) {
+            this.start = start;
+            this.end = end;
+            this.node = node;
+        }
+    }
+
+    private static final Comparator<Span> byStart = new Comparator<Span>() {
+        @Override
+        public int compare(Span a, Span b) {
+            return Integer.compare(a.start, b.start);
+        }
+    };
+
+    private final NamePool names;
+    private final GapText text;
+    private ASTNode tree;
+    // fcn and block nodes of tree, ordered by start offset
+    private ArrayList<Span> spans;
+    private int shiftFrom;
+    private int shift;
+    private int reparsedLength;
+
+    public IncrementalParser(CharSequence text) {
+        this.names = new NamePool();
+        this.text = new GapText(text);
+        this.spans = new ArrayList<Span>();
+
+        parseAll();
+    }
+
+    public CharSequence text() {
+        return text;
+    }
+
+    public ASTNode tree() {
+        return tree;
+    }
+
+    // number of characters scanned again by the last edit
+    public int reparsedLength() {
+        return reparsedLength;
+    }
+
+    // Replaces text[offset, offset + removed) with inserted and returns the updated tree. Parse
+    // errors in the new text are thrown just as a full parse would throw them; the text keeps the
+    // edit and the next edit parses from scratch.
+    public ASTNode edit(int offset, int removed, String inserted) {
+        if (offset < 0 || removed < 0 || offset + removed > text.length()) {
+            throw new RuntimeException("Edit out of range: " + offset + "+" + removed);
+        }
+
+        int editEnd = offset + removed;
+        int delta = inserted.length() - removed;
+        int index = (tree == null) ? -1 : enclosingSpan(offset, editEnd);
+
+        text.replace(offset, editEnd, inserted);
+
+        if (index < 0 || !reparse(index, delta)) {
+            parseAll();
+        }
+
+        return tree;
+    }
+
+    private void parseAll() {
+        tree = null;
+        spans.clear();
+        shiftFrom = 0;
+        shift = 0;
+        reparsedLength = text.length();
+
+        ASTNodeBuilder builder = new ASTNodeBuilder(names);
+        ArrayList<Span> found = new ArrayList<Span>();
+
+        if (Parser.parseWinzig(Lexer.stream(text, names), builder, recorder(builder, found))) {
+            link(found, null);
+            spans = found;
+            shiftFrom = found.size();
+            tree = builder.root();
+        }
+    }
+
+    // Replaces the span at index, whose start and end are current, and the spans inside it.
+    private boolean reparse(int index, int delta) {
+        Span old = spans.get(index);
+        int start = old.start;
+        int oldEnd = old.end;
+        int end = oldEnd + delta;
+        boolean fcn = old.node.getSymbol() == NamePool.FCN;
+
+        reparsedLength = end - start;
+
+        ASTNodeBuilder builder = new ASTNodeBuilder(names);
+        ArrayList<Span> found = new ArrayList<Span>();
+        Lexer region;
+
+        try {
+            region = Lexer.region(text, start, end, names);
+
+            if (!Parser.parseFragment(region, builder, recorder(builder, found), fcn)) {
+                return false;
+            }
+        } catch (RuntimeException e) {
+            return false;
+        }
+
+        // the node must use up the whole region, and its last token must end the same way when
+        // the text past the region is visible too
+        if (region.offset() != end || !Lexer.followedAt(text, names, region.lastStart(), region.lastEnd(), end)) {
+            return false;
+        }
+
+        ASTNode node = builder.root();
+        old.node.getParent().replaceChild(old.node, node);
+
+        int last = index + 1;
+
+        while (last < spans.size() && start(last) < oldEnd) {
+            last++;
+        }
+
+        // the spans past the old node move by delta, and the spans around it end delta further on
+        moveShift(last);
+        shift += delta;
+
+        for (Span outer = old.parent; outer != null; outer = outer.parent) {
+            outer.end += delta;
+        }
+
+        link(found, old.parent);
+
+        if (found.size() == last - index) {
+            for (int i = 0; i < found.size(); i++) {
+                spans.set(index + i, found.get(i));
+            }
+        } else {
+            spans.subList(index, last).clear();
+            spans.addAll(index, found);
+        }
+
+        shiftFrom = index + found.size();
+        return true;
+    }
+
+    // Moves the start of the pending shift to index, applying it to the spans it passes over going
+    // forward and taking it back from those it passes over going back.
+    private void moveShift(int index) {
+        for (; shiftFrom < index; shiftFrom++) {
+            Span span = spans.get(shiftFrom);
+            span.start += shift;
+            span.end += shift;
+        }
+
+        for (; shiftFrom > index; shiftFrom--) {
+            Span span = spans.get(shiftFrom - 1);
+            span.start -= shift;
+            span.end -= shift;
+        }
+    }
+
+    private int start(int index) {
+        return spans.get(index).start + (index >= shiftFrom ? shift : 0);
+    }
+
+    // Index of the smallest span holding [from, to], or -1. Every span holding from is around the
+    // last span that starts at or before it, so only that one's parents are looked at.
+    private int enclosingSpan(int from, int to) {
+        int high = lastStartingAt(from);
+
+        if (high < 0) {
+            return -1;
+        }
+
+        moveShift(Math.max(shiftFrom, high + 1));
+
+        for (Span span = spans.get(high); span != null; span = span.parent) {
+            if (span.end >= to) {
+                return lastStartingAt(span.start);
+            }
+        }
+
+        return -1;
+    }
+
+    // index of the last span starting at or before offset, or -1
+    private int lastStartingAt(int offset) {
+        int low = 0;
+        int high = spans.size() - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+
+            if (start(mid) <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return high;
+    }
+
+    // Sorts spans by start and gives each the smallest span around it, or outer when none of them is.
+    // Spans nest, so those still open at a span's start are the ones around it.
+    private static void link(ArrayList<Span> spans, Span outer) {
+        ArrayList<Span> open = new ArrayList<Span>();
+        Collections.sort(spans, byStart);
+
+        for (Span span : spans) {
+            while (!open.isEmpty() && open.get(open.size() - 1).end <= span.start) {
+                open.remove(open.size() - 1);
+            }
+
+            span.parent = open.isEmpty() ? outer : open.get(open.size() - 1);
+            open.add(span);
+        }
+    }
+
+    private static SpanListener recorder(final ASTNodeBuilder builder, final ArrayList<Span> found) {
+        return new SpanListener() {
+            @Override
+            public void span(int start, int end) {
+                found.add(new Span(start, end, builder.top()));
+            }
+        };
+    }
+}
@@ -0,0 +1,279 @@
+package com.yumantha;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+// Runs a program InterpreterCompiler has turned into a flat int[] of instructions for a stack
+// machine, each an opcode followed by its operands. Local slots, global indexes, function numbers
+// and jump targets are all resolved to ints beforehand, so the dispatch loop never looks at the
+// tree. Locals live in the operand stack below each call's operands: a call leaves its arguments
+// where they are as the first locals of the new frame. Values and I/O are as in JvmBackend.
+public class Interpreter {
+    // push operand
+    public static final int CONST = 0;
+    // push or pop the local slot or global index operand
+    public static final int LOAD = 1;
+    public static final int STORE = 2;
+    public static final int GLOAD = 3;
+    public static final int GSTORE = 4;
+    // add the second operand to the local slot in the first
+    public static final int INC = 5;
+    public static final int ADD = 6;
+    public static final int SUB = 7;
+    public static final int MUL = 8;
+    public static final int DIV = 9;
+    public static final int MOD = 10;
+    public static final int NEG = 11;
+    public static final int AND = 12;
+    public static final int OR = 13;
+    public static final int NOT = 14;
+    // compare the top two values and push 0 or 1; in pairs that are each other's negation
+    public static final int EQ = 15;
+    public static final int NE = 16;
+    public static final int LT = 17;
+    public static final int GE = 18;
+    public static final int GT = 19;
+    public static final int LE = 20;
+    // compare the top two values and jump to the operand when the relation holds, in the same order
+    public static final int JEQ = 21;
+    public static final int JNE = 22;
+    public static final int JLT = 23;
+    public static final int JGE = 24;
+    public static final int JGT = 25;
+    public static final int JLE = 26;
+    // jump to the operand, always or when the popped value is 0 or not 0
+    public static final int JUMP = 27;
+    public static final int JFALSE = 28;
+    public static final int JTRUE = 29;
+    // call the function numbered by the operand, return the popped value from one
+    public static final int CALL = 30;
+    public static final int RETURN = 31;
+    public static final int POP = 32;
+    public static final int READ = 33;
+    public static final int OUTPUT = 34;
+    // output the string numbered by the operand
+    public static final int OUTPUT_STRING = 35;
+    public static final int EOF = 36;
+    public static final int HALT = 37;
+
+    // calls deeper than this end the program
+    private static final int MAX_DEPTH = 1 << 20;
+
+    final int[] code;
+    final String[] strings;
+    final int globals;
+    // per function: where its code starts, its parameters, its locals including the parameters,
+    // and the most operands it stacks
+    final int[] entry;
+    final int[] arity;
+    final int[] frameSize;
+    final int[] maxStack;
+    // the body, as function number entry.length
+    final int main;
+
+    Interpreter(int[] code, String[] strings, int globals, int[] entry, int[] arity, int[] frameSize, int[] maxStack) {
+        this.code = code;
+        this.strings = strings;
+        this.globals = globals;
+        this.entry = entry;
+        this.arity = arity;
+        this.frameSize = frameSize;
+        this.maxStack = maxStack;
+        this.main = entry.length - 1;
+    }
+
+    public static Interpreter compile(ASTNode prog, NamePool names) {
+        return InterpreterCompiler.compile(prog, names);
+    }
+
+    public void run(InputStream in, OutputStream out) {
+        ProgramIO.use(in, out);
+
+        try {
+            execute();
+        } finally {
+            ProgramIO.flush();
+        }
+    }
+
+    private void execute() {
+        final int[] code = this.code;
+        int[] stack = new int[Math.max(1024, frameSize[main] + maxStack[main])];
+        int[] global = new int[globals];
+        // return pc and frame pointer of each call in progress
+        int[] calls = new int[64];
+        int depth = 0;
+        int pc = entry[main];
+        int fp = 0;
+        int sp = frameSize[main];
+
+        while (true) {
+            switch (code[pc++]) {
+                case CONST:
+                    stack[sp++] = code[pc++];
+                    break;
+                case LOAD:
+                    stack[sp++] = stack[fp + code[pc++]];
+                    break;
+                case STORE:
+                    stack[fp + code[pc++]] = stack[--sp];
+                    break;
+                case GLOAD:
+                    stack[sp++] = global[code[pc++]];
+                    break;
+                case GSTORE:
+                    global[code[pc++]] = stack[--sp];
+                    break;
+                case INC:
+                    stack[fp + code[pc]] += code[pc + 1];
+                    pc += 2;
+                    break;
+                case ADD:
+                    sp--;
+                    stack[sp - 1] += stack[sp];
+                    break;
+                case SUB:
+                    sp--;
+                    stack[sp - 1] -= stack[sp];
+                    break;
+                case MUL:
+                    sp--;
+                    stack[sp - 1] *= stack[sp];
+                    break;
+                case DIV:
+                    sp--;
+                    stack[sp - 1] /= stack[sp];
+                    break;
+                case MOD:
+                    sp--;
+                    stack[sp - 1] %= stack[sp];
+                    break;
+                case NEG:
+                    stack[sp - 1] = -stack[sp - 1];
+                    break;
+                case AND:
+                    sp--;
+                    stack[sp - 1] &= stack[sp];
+                    break;
+                case OR:
+                    sp--;
+                    stack[sp - 1] |= stack[sp];
+                    break;
+                case NOT:
+                    stack[sp - 1] ^= 1;
+                    break;
+                case EQ:
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] == stack[sp] ? 1 : 0;
+                    break;
+                case NE:
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] != stack[sp] ? 1 : 0;
+                    break;
+                case LT:
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] < stack[sp] ? 1 : 0;
+                    break;
+                case GE:
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] >= stack[sp] ? 1 : 0;
+                    break;
+                case GT:
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] > stack[sp] ? 1 : 0;
+                    break;
+                case LE:
+                    sp--;
+                    stack[sp - 1] = stack[sp - 1] <= stack[sp] ? 1 : 0;
+                    break;
+                case JEQ:
+                    sp -= 2;
+                    pc = stack[sp] == stack[sp + 1] ? code[pc] : pc + 1;
+                    break;
+                case JNE:
+                    sp -= 2;
+                    pc = stack[sp] != stack[sp + 1] ? code[pc] : pc + 1;
+                    break;
+                case JLT:
+                    sp -= 2;
+                    pc = stack[sp] < stack[sp + 1] ? code[pc] : pc + 1;
+                    break;
+                case JGE:
+                    sp -= 2;
+                    pc = stack[sp] >= stack[sp + 1] ? code[pc] : pc + 1;
+                    break;
+                case JGT:
+                    sp -= 2;
+                    pc = stack[sp] > stack[sp + 1] ? code[pc] : pc + 1;
+                    break;
+                case JLE:
+                    sp -= 2;
+                    pc = stack[sp] <= stack[sp + 1] ? code[pc] : pc + 1;
+                    break;
+                case JUMP:
+                    pc = code[pc];
+                    break;
+                case JFALSE:
+                    pc = stack[--sp] == 0 ? code[pc] : pc + 1;
+                    break;
+                case JTRUE:
+                    pc = stack[--sp] != 0 ? code[pc] : pc + 1;
+                    break;
+                case CALL: {
+                    int function = code[pc++];
+                    int base = sp - arity[function];
+                    int top = base + frameSize[function];
+
+                    if (top + maxStack[function] > stack.length) {
+                        stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + maxStack[function]));
+                    }
+
+                    if (depth == calls.length) {
+                        if (depth >= MAX_DEPTH * 2) {
+                            throw new RuntimeException("Calls nested too deeply");
+                        }
+
+                        calls = Arrays.copyOf(calls, depth * 2);
+                    }
+
+                    // the locals after the parameters start at zero
+                    Arrays.fill(stack, sp, top, 0);
+                    calls[depth++] = pc;
+                    calls[depth++] = fp;
+                    fp = base;
+                    sp = top;
+                    pc = entry[function];
+                    break;
+                }
+                case RETURN: {
+                    int value = stack[sp - 1];
+                    sp = fp;
+                    fp = calls[--depth];
+                    pc = calls[--depth];
+                    stack[sp++] = value;
+                    break;
+                }
+                case POP:
+                    sp--;
+                    break;
+                case READ:
+                    stack[sp++] = ProgramIO.readInteger();
+                    break;
+                case OUTPUT:
+                    ProgramIO.output(stack[--sp]);
+                    break;
+                case OUTPUT_STRING:
+                    ProgramIO.output(strings[code[pc++]]);
+                    break;
+                case EOF:
+                    stack[sp++] = ProgramIO.eof();
+                    break;
+                case HALT:
+                    return;
+                default:
+                    throw new IllegalStateException("Bad opcode " + code[pc - 1] + " at " + (pc - 1));
+            }
+        }
+    }
+}
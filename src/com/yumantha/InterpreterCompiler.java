@@ -0,0 +1,651 @@
+package com.yumantha;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// Lowers a checked program to Interpreter instructions in one walk over the tree, the way
+// JvmBackend lowers it to JVM bytecode: names are resolved through a SymbolTable to local slots,
+// global indexes, function numbers or folded constants, and jumps to labels are patched with
+// absolute positions once each function is done.
+public class InterpreterCompiler {
+    private final NamePool names;
+    private final SymbolTable symbols;
+    private int[] code;
+    private int length;
+    private final ArrayList<String> strings;
+    private int globals;
+
+    // per function, the body last
+    private int[] entry;
+    private int[] arity;
+    private int[] frameSize;
+    private int[] maxStack;
+    private int functions;
+
+    // the function being compiled: its next free local, and the operands stacked so far
+    private int nextSlot;
+    private int slots;
+    private int stack;
+    private int stackLimit;
+    private boolean inFunction;
+    private final ArrayList<Label> labels;
+    // the end of each enclosing loop ... pool, innermost last
+    private final ArrayList<Label> exits;
+    private Label mainEnd;
+    // "program X" or "function f", for messages
+    private String where;
+
+    private static class Label {
+        private int position = -1;
+        // operand positions waiting for this label
+        private int[] fixups = new int[4];
+        private int fixupCount = 0;
+        private boolean pending = false;
+    }
+
+    private InterpreterCompiler(NamePool names) {
+        this.names = names;
+        this.symbols = new SymbolTable();
+        this.code = new int[1024];
+        this.length = 0;
+        this.strings = new ArrayList<String>();
+        this.globals = 0;
+        this.entry = new int[8];
+        this.arity = new int[8];
+        this.frameSize = new int[8];
+        this.maxStack = new int[8];
+        this.functions = 0;
+        this.labels = new ArrayList<Label>();
+        this.exits = new ArrayList<Label>();
+    }
+
+    public static Interpreter compile(ASTNode prog, NamePool names) {
+        InterpreterCompiler compiler = new InterpreterCompiler(names);
+        compiler.program(prog);
+
+        return new Interpreter(Arrays.copyOf(compiler.code, compiler.length), compiler.strings.toArray(new String[0]), compiler.globals,
+                Arrays.copyOf(compiler.entry, compiler.functions), Arrays.copyOf(compiler.arity, compiler.functions),
+                Arrays.copyOf(compiler.frameSize, compiler.functions), Arrays.copyOf(compiler.maxStack, compiler.functions));
+    }
+
+    // program(7): name consts types dclns subprogs block name
+    private void program(ASTNode prog) {
+        where = "program " + nameOf(prog.getChild(0));
+
+        // Variables hold the local slot, or for globals the complement of the global index.
+        symbols.enterScope();
+        symbols.declare(names.intern("boolean"), SymbolTable.TYPE, -1);
+        symbols.declare(names.intern("integer"), SymbolTable.TYPE, -1);
+        symbols.declare(names.intern("char"), SymbolTable.TYPE, -1);
+        symbols.declare(names.intern("true"), SymbolTable.LITERAL, 1);
+        symbols.declare(names.intern("false"), SymbolTable.LITERAL, 0);
+
+        symbols.enterScope();
+        declareConstants(prog.getChild(1), prog.getChild(2));
+        ASTNode dclns = prog.getChild(3);
+
+        for (int i = 0; i < dclns.getChildCount(); i++) {
+            ASTNode var = dclns.getChild(i);
+
+            for (int j = 0; j < var.getChildCount() - 1; j++) {
+                symbols.declare(symbolOf(var.getChild(j)), SymbolTable.VARIABLE, ~globals++);
+            }
+        }
+
+        ASTNode subprogs = prog.getChild(4);
+
+        for (int i = 0; i < subprogs.getChildCount(); i++) {
+            function(subprogs.getChild(i));
+        }
+
+        where = "program " + nameOf(prog.getChild(0));
+        inFunction = false;
+        mainEnd = new Label();
+        begin(functions);
+        statement(prog.getChild(5));
+        place(mainEnd);
+        emit(Interpreter.HALT, 0);
+        end(functions++);
+
+        symbols.exitScope();
+        symbols.exitScope();
+    }
+
+    // fcn(8): name params type consts types dclns block name
+    private void function(ASTNode fcn) {
+        ASTNode params = fcn.getChild(1);
+        int function = functions++;
+        int count = 0;
+
+        for (int i = 0; i < params.getChildCount(); i++) {
+            count += params.getChild(i).getChildCount() - 1;
+        }
+
+        where = "function " + nameOf(fcn.getChild(0));
+        inFunction = true;
+        symbols.declare(symbolOf(fcn.getChild(0)), SymbolTable.FUNCTION, function);
+        begin(function);
+        arity[function] = count;
+
+        symbols.enterScope();
+        declareLocals(params);
+        declareConstants(fcn.getChild(3), fcn.getChild(4));
+        declareLocals(fcn.getChild(5));
+        statement(fcn.getChild(6));
+
+        // what a function returns when it ends without return
+        constant(0);
+        emit(Interpreter.RETURN, -1);
+        symbols.exitScope();
+        end(function);
+    }
+
+    private void declareConstants(ASTNode consts, ASTNode types) {
+        // const(2): name value
+        for (int i = 0; i < consts.getChildCount(); i++) {
+            ASTNode constant = consts.getChild(i);
+            symbols.declare(symbolOf(constant.getChild(0)), SymbolTable.CONST, constant(constant.getChild(1)));
+        }
+
+        // type(2): name lit(n)
+        for (int i = 0; i < types.getChildCount(); i++) {
+            ASTNode type = types.getChild(i);
+            ASTNode literals = type.getChild(1);
+            symbols.declare(symbolOf(type.getChild(0)), SymbolTable.TYPE, -1);
+
+            for (int j = 0; j < literals.getChildCount(); j++) {
+                symbols.declare(symbolOf(literals.getChild(j)), SymbolTable.LITERAL, j);
+            }
+        }
+    }
+
+    // var(n): names type, under params or dclns
+    private void declareLocals(ASTNode dclns) {
+        for (int i = 0; i < dclns.getChildCount(); i++) {
+            ASTNode var = dclns.getChild(i);
+
+            for (int j = 0; j < var.getChildCount() - 1; j++) {
+                symbols.declare(symbolOf(var.getChild(j)), SymbolTable.VARIABLE, allocate());
+            }
+        }
+    }
+
+    private void statement(ASTNode node) {
+        switch (node.getSymbol()) {
+            case NamePool.BLOCK:
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    statement(node.getChild(i));
+                }
+                break;
+            case NamePool.ASSIGN:
+                assign(node.getChild(0), node.getChild(1));
+                break;
+            case NamePool.SWAP:
+                load(node.getChild(0));
+                load(node.getChild(1));
+                store(node.getChild(0));
+                store(node.getChild(1));
+                break;
+            case NamePool.OUTPUT:
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    ASTNode item = node.getChild(i);
+
+                    if (item.getSymbol() == NamePool.OUTPUT_STRING) {
+                        String text = item.getChild(0).getChild(0).getRuleName();
+                        strings.add(text.substring(1, text.length() - 1));
+                        emit(Interpreter.OUTPUT_STRING, 0);
+                        operand(strings.size() - 1);
+                    } else {
+                        expression(item.getChild(0));
+                        emit(Interpreter.OUTPUT, -1);
+                    }
+                }
+                break;
+            case NamePool.READ:
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    emit(Interpreter.READ, 1);
+                    store(node.getChild(i));
+                }
+                break;
+            case NamePool.IF: {
+                Label otherwise = new Label();
+                branch(node.getChild(0), otherwise, false);
+                statement(node.getChild(1));
+
+                if (node.getChildCount() == 3) {
+                    Label end = new Label();
+                    jump(Interpreter.JUMP, end);
+                    place(otherwise);
+                    statement(node.getChild(2));
+                    place(end);
+                } else {
+                    place(otherwise);
+                }
+                break;
+            }
+            case NamePool.WHILE: {
+                // the test at the bottom, entered once from the top
+                Label test = new Label();
+                Label body = new Label();
+                jump(Interpreter.JUMP, test);
+                place(body);
+                statement(node.getChild(1));
+                place(test);
+                branch(node.getChild(0), body, true);
+                break;
+            }
+            case NamePool.REPEAT: {
+                // repeat(n): statements condition
+                Label top = new Label();
+                place(top);
+
+                for (int i = 0; i < node.getChildCount() - 1; i++) {
+                    statement(node.getChild(i));
+                }
+
+                branch(node.getChild(node.getChildCount() - 1), top, false);
+                break;
+            }
+            case NamePool.FOR: {
+                // for(4): initial condition step statement
+                Label test = new Label();
+                Label body = new Label();
+                statement(node.getChild(0));
+                jump(Interpreter.JUMP, test);
+                place(body);
+                statement(node.getChild(3));
+                statement(node.getChild(2));
+                place(test);
+                branch(node.getChild(1), body, true);
+                break;
+            }
+            case NamePool.LOOP: {
+                Label top = new Label();
+                Label end = new Label();
+                exits.add(end);
+                place(top);
+
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    statement(node.getChild(i));
+                }
+
+                jump(Interpreter.JUMP, top);
+                place(end);
+                exits.remove(exits.size() - 1);
+                break;
+            }
+            case NamePool.EXIT:
+                if (exits.isEmpty()) {
+                    throw new RuntimeException("Code generation error in " + where + " \nexit outside of loop ... pool");
+                }
+
+                jump(Interpreter.JUMP, exits.get(exits.size() - 1));
+                break;
+            case NamePool.RETURN:
+                expression(node.getChild(0));
+
+                if (inFunction) {
+                    emit(Interpreter.RETURN, -1);
+                } else {
+                    emit(Interpreter.POP, -1);
+                    jump(Interpreter.JUMP, mainEnd);
+                }
+                break;
+            case NamePool.CASE:
+                caseStatement(node);
+                break;
+            case NamePool.NULL:
+                break;
+            default:
+                throw new RuntimeException("Code generation error in " + where + " \nUnexpected " + node.getRuleName());
+        }
+    }
+
+    // case(n): expression case_clause... otherwise?, with the value in a local while the clauses
+    // compare their labels with it in order
+    private void caseStatement(ASTNode node) {
+        int value = allocate();
+        Label end = new Label();
+
+        expression(node.getChild(0));
+        emit(Interpreter.STORE, -1);
+        operand(value);
+
+        for (int i = 1; i < node.getChildCount(); i++) {
+            ASTNode clause = node.getChild(i);
+
+            if (clause.getSymbol() == NamePool.OTHERWISE) {
+                statement(clause.getChild(0));
+                break;
+            }
+
+            // case_clause(n): labels statement
+            Label body = new Label();
+            Label next = new Label();
+
+            for (int j = 0; j < clause.getChildCount() - 1; j++) {
+                ASTNode label = clause.getChild(j);
+
+                if (label.getSymbol() == NamePool.RANGE) {
+                    Label outside = new Label();
+                    loadLocal(value);
+                    constant(constant(label.getChild(0)));
+                    jump(Interpreter.JLT, outside);
+                    loadLocal(value);
+                    constant(constant(label.getChild(1)));
+                    jump(Interpreter.JLE, body);
+                    place(outside);
+                } else {
+                    loadLocal(value);
+                    constant(constant(label));
+                    jump(Interpreter.JEQ, body);
+                }
+            }
+
+            jump(Interpreter.JUMP, next);
+            place(body);
+            statement(clause.getChild(clause.getChildCount() - 1));
+            jump(Interpreter.JUMP, end);
+            place(next);
+        }
+
+        place(end);
+        nextSlot--;
+    }
+
+    private void assign(ASTNode target, ASTNode value) {
+        int entry = symbols.lookup(symbolOf(target));
+        int operator = value.getSymbol();
+
+        // x := x + c and x := x - c on a local are one INC
+        if (symbols.info(entry) >= 0 && (operator == NamePool.PLUS || operator == NamePool.MINUS) && value.getChildCount() == 2
+                && value.getChild(0).getSymbol() == NamePool.IDENTIFIER && symbolOf(value.getChild(0)) == symbolOf(target)
+                && value.getChild(1).getSymbol() == NamePool.INTEGER) {
+            int delta = constant(value.getChild(1));
+            emit(Interpreter.INC, 0);
+            operand(symbols.info(entry));
+            operand(operator == NamePool.MINUS ? -delta : delta);
+            return;
+        }
+
+        expression(value);
+        store(target);
+    }
+
+    // Jumps to target when the condition is when, and falls through otherwise.
+    private void branch(ASTNode condition, Label target, boolean when) {
+        int operator = condition.getSymbol();
+        int compare = comparison(operator);
+
+        if (compare >= 0) {
+            expression(condition.getChild(0));
+            expression(condition.getChild(1));
+            // JEQ to JLE follow EQ to LE, and each even-odd pair is a relation and its negation
+            jump(Interpreter.JEQ + (when ? compare : compare ^ 1), target);
+        } else if (operator == NamePool.NOT) {
+            branch(condition.getChild(0), target, !when);
+        } else if (operator == NamePool.TRUE && condition.getChildCount() == 0) {
+            // the missing condition of a for
+            if (when) {
+                jump(Interpreter.JUMP, target);
+            }
+        } else {
+            expression(condition);
+            jump(when ? Interpreter.JTRUE : Interpreter.JFALSE, target);
+        }
+    }
+
+    // leaves the value on the stack
+    private void expression(ASTNode node) {
+        int symbol = node.getSymbol();
+
+        if (symbol == NamePool.IDENTIFIER) {
+            load(node);
+            return;
+        } else if (symbol == NamePool.INTEGER || symbol == NamePool.CHAR) {
+            constant(constant(node));
+            return;
+        }
+
+        int compare = comparison(symbol);
+
+        if (compare >= 0) {
+            binary(node, Interpreter.EQ + compare);
+            return;
+        }
+
+        switch (symbol) {
+            case NamePool.PLUS:
+                binary(node, Interpreter.ADD);
+                break;
+            case NamePool.MINUS:
+                if (node.getChildCount() == 1) {
+                    expression(node.getChild(0));
+                    emit(Interpreter.NEG, 0);
+                } else {
+                    binary(node, Interpreter.SUB);
+                }
+                break;
+            case NamePool.TIMES:
+                binary(node, Interpreter.MUL);
+                break;
+            case NamePool.DIVIDE:
+                binary(node, Interpreter.DIV);
+                break;
+            case NamePool.MOD:
+                binary(node, Interpreter.MOD);
+                break;
+            case NamePool.AND:
+                binary(node, Interpreter.AND);
+                break;
+            case NamePool.OR:
+                binary(node, Interpreter.OR);
+                break;
+            case NamePool.NOT:
+                expression(node.getChild(0));
+                emit(Interpreter.NOT, 0);
+                break;
+            case NamePool.SUCC:
+                expression(node.getChild(0));
+                constant(1);
+                emit(Interpreter.ADD, -1);
+                break;
+            case NamePool.PRED:
+                expression(node.getChild(0));
+                constant(1);
+                emit(Interpreter.SUB, -1);
+                break;
+            case NamePool.CHR:
+            case NamePool.ORD:
+                expression(node.getChild(0));
+                break;
+            case NamePool.EOF:
+                emit(Interpreter.EOF, 1);
+                break;
+            case NamePool.TRUE:
+                constant(1);
+                break;
+            case NamePool.CALL: {
+                // call(n): name arguments; the arguments become the callee's first locals
+                int arguments = node.getChildCount() - 1;
+
+                for (int i = 1; i <= arguments; i++) {
+                    expression(node.getChild(i));
+                }
+
+                emit(Interpreter.CALL, 1 - arguments);
+                operand(symbols.info(symbols.lookup(symbolOf(node.getChild(0)))));
+                break;
+            }
+            default:
+                throw new RuntimeException("Code generation error in " + where + " \nUnexpected " + node.getRuleName());
+        }
+    }
+
+    private void binary(ASTNode node, int opcode) {
+        expression(node.getChild(0));
+        expression(node.getChild(1));
+        emit(opcode, -1);
+    }
+
+    private void load(ASTNode name) {
+        int entry = symbols.lookup(symbolOf(name));
+        int info = symbols.info(entry);
+
+        if (symbols.kind(entry) != SymbolTable.VARIABLE) {
+            constant(info);
+        } else if (info >= 0) {
+            loadLocal(info);
+        } else {
+            emit(Interpreter.GLOAD, 1);
+            operand(~info);
+        }
+    }
+
+    private void loadLocal(int slot) {
+        emit(Interpreter.LOAD, 1);
+        operand(slot);
+    }
+
+    private void store(ASTNode name) {
+        int info = symbols.info(symbols.lookup(symbolOf(name)));
+
+        if (info >= 0) {
+            emit(Interpreter.STORE, -1);
+            operand(info);
+        } else {
+            emit(Interpreter.GSTORE, -1);
+            operand(~info);
+        }
+    }
+
+    private void constant(int value) {
+        emit(Interpreter.CONST, 1);
+        operand(value);
+    }
+
+    // the value of an <integer>, a <char> or a named constant
+    private int constant(ASTNode value) {
+        String text = value.getChild(0).getRuleName();
+
+        if (value.getSymbol() == NamePool.INTEGER) {
+            return SemanticChecker.integerValue(value);
+        } else if (value.getSymbol() == NamePool.CHAR) {
+            return text.charAt(1);
+        }
+
+        return symbols.info(symbols.lookup(symbolOf(value)));
+    }
+
+    // the offset of the relation from EQ, or -1 for other operators
+    private static int comparison(int operator) {
+        switch (operator) {
+            case NamePool.EQ:
+                return 0;
+            case NamePool.NE:
+                return 1;
+            case NamePool.LT:
+                return 2;
+            case NamePool.GE:
+                return 3;
+            case NamePool.GT:
+                return 4;
+            case NamePool.LE:
+                return 5;
+            default:
+                return -1;
+        }
+    }
+
+    private void begin(int function) {
+        ensureFunctions(function);
+        entry[function] = length;
+        nextSlot = 0;
+        slots = 0;
+        stack = 0;
+        stackLimit = 0;
+    }
+
+    private void end(int function) {
+        ensureFunctions(function);
+        frameSize[function] = slots;
+        maxStack[function] = stackLimit;
+
+        for (Label label : labels) {
+            for (int i = 0; i < label.fixupCount; i++) {
+                code[label.fixups[i]] = label.position;
+            }
+
+            label.pending = false;
+        }
+
+        labels.clear();
+    }
+
+    private void ensureFunctions(int function) {
+        if (function >= entry.length) {
+            int size = Math.max(entry.length * 2, function + 1);
+            entry = Arrays.copyOf(entry, size);
+            arity = Arrays.copyOf(arity, size);
+            frameSize = Arrays.copyOf(frameSize, size);
+            maxStack = Arrays.copyOf(maxStack, size);
+        }
+    }
+
+    private int allocate() {
+        int slot = nextSlot++;
+        slots = Math.max(slots, nextSlot);
+        return slot;
+    }
+
+    // An opcode and how it changes the stack depth; no value crosses a jump, so tracking the depth
+    // in code order gives the most the function stacks.
+    private void emit(int opcode, int stackChange) {
+        operand(opcode);
+        stack += stackChange;
+        stackLimit = Math.max(stackLimit, stack);
+    }
+
+    private void operand(int value) {
+        if (length == code.length) {
+            code = Arrays.copyOf(code, length * 2);
+        }
+
+        code[length++] = value;
+    }
+
+    // JEQ to JTRUE, which pop the two, none or one values they test
+    private void jump(int opcode, Label target) {
+        int popped = opcode >= Interpreter.JEQ && opcode <= Interpreter.JLE ? -2 : (opcode == Interpreter.JUMP ? 0 : -1);
+        emit(opcode, popped);
+
+        if (target.fixupCount == target.fixups.length) {
+            target.fixups = Arrays.copyOf(target.fixups, target.fixupCount * 2);
+        }
+
+        target.fixups[target.fixupCount++] = length;
+        operand(-1);
+        patchLater(target);
+    }
+
+    private void place(Label label) {
+        label.position = length;
+        patchLater(label);
+    }
+
+    // labels are patched when their function ends
+    private void patchLater(Label label) {
+        if (!label.pending) {
+            label.pending = true;
+            labels.add(label);
+        }
+    }
+
+    private static int symbolOf(ASTNode identifier) {
+        return identifier.getChild(0).getSymbol();
+    }
+
+    private String nameOf(ASTNode identifier) {
+        return names.name(symbolOf(identifier));
+    }
+}
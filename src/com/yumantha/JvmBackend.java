@@ -0,0 +1,649 @@
+package com.yumantha;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+// Turns a checked program into a JVM class named after it. Every value is an int: characters are
+// their codes, booleans 0 and 1, and enumeration literals their position in the type. Program
+// variables become static fields, each function a static method taking and returning ints, with
+// its parameters and variables in locals, and the program body a method of its own. main runs
+// it and, when it throws, reports the run error as -run does and exits with status 1, so a written
+// jar fails the same way the compiler's own run of the program does. Constants are folded
+// into the code. and, or and not work on 0 and 1 and evaluate both operands, / and mod truncate
+// toward zero, and a case value no clause matches does nothing. I/O goes through ProgramIO.
+public class JvmBackend {
+    private static final String IO = "com/yumantha/ProgramIO";
+    // the method holding the program body; no WinZigC name has a $
+    static final String BODY = "$body";
+
+    private final NamePool names;
+    private final SymbolTable symbols;
+    private final ClassFile classFile;
+    private ClassFile.Code code;
+    // next free local of the method being generated
+    private int nextSlot;
+    private boolean inFunction;
+    // the end of each enclosing loop ... pool, innermost last
+    private final ArrayList<ClassFile.Label> exits;
+    // where return goes in the program body
+    private ClassFile.Label mainEnd;
+    // "program X" or "function f", for messages
+    private String where;
+
+    private JvmBackend(NamePool names, String className) {
+        this.names = names;
+        this.symbols = new SymbolTable();
+        this.classFile = new ClassFile(className);
+        this.exits = new ArrayList<ClassFile.Label>();
+    }
+
+    public static ClassFile generate(ASTNode prog, NamePool names, String sourceFile) {
+        JvmBackend backend = new JvmBackend(names, nameOf(names, prog.getChild(0)));
+
+        if (sourceFile != null) {
+            backend.classFile.setSourceFile(sourceFile);
+        }
+
+        backend.program(prog);
+        return backend.classFile;
+    }
+
+    // Defines the class in a loader of its own and runs the body with in and out as the program's
+    // input and output. Anything the program throws is rethrown as it is.
+    public static void run(ClassFile program, InputStream in, OutputStream out) throws Throwable {
+        Class<?> main = load(program);
+        ProgramIO.use(in, out);
+
+        try {
+            main.getMethod(BODY).invoke(null);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    static Class<?> load(ClassFile program) {
+        return new Loader(JvmBackend.class.getClassLoader()).define(program.name(), program.toBytes());
+    }
+
+    // A jar that runs the program with java -jar, holding ProgramIO beside it.
+    public static void writeJar(ClassFile program, Path jar) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, program.name());
+
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar), manifest);
+             InputStream io = ProgramIO.class.getResourceAsStream("ProgramIO.class")) {
+            if (io == null) {
+                throw new IOException("Cannot find ProgramIO.class to put in the jar");
+            }
+
+            out.putNextEntry(new JarEntry(program.name() + ".class"));
+            out.write(program.toBytes());
+            out.closeEntry();
+            out.putNextEntry(new JarEntry(IO + ".class"));
+            io.transferTo(out);
+            out.closeEntry();
+        }
+    }
+
+    private static class Loader extends ClassLoader {
+        Loader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    // program(7): name consts types dclns subprogs block name
+    private void program(ASTNode prog) {
+        where = "program " + nameOf(prog.getChild(0));
+
+        // Variables hold the local slot, or for fields the complement of the field reference.
+        symbols.enterScope();
+        symbols.declare(names.intern("boolean"), SymbolTable.TYPE, -1);
+        symbols.declare(names.intern("integer"), SymbolTable.TYPE, -1);
+        symbols.declare(names.intern("char"), SymbolTable.TYPE, -1);
+        symbols.declare(names.intern("true"), SymbolTable.LITERAL, 1);
+        symbols.declare(names.intern("false"), SymbolTable.LITERAL, 0);
+
+        symbols.enterScope();
+        declareConstants(prog.getChild(1), prog.getChild(2));
+        ASTNode dclns = prog.getChild(3);
+
+        for (int i = 0; i < dclns.getChildCount(); i++) {
+            ASTNode var = dclns.getChild(i);
+
+            for (int j = 0; j < var.getChildCount() - 1; j++) {
+                String field = nameOf(var.getChild(j));
+                classFile.addField(ClassFile.ACC_PUBLIC | ClassFile.ACC_STATIC, field, "I");
+                symbols.declare(symbolOf(var.getChild(j)), SymbolTable.VARIABLE, ~classFile.fieldRef(classFile.name(), field, "I"));
+            }
+        }
+
+        ASTNode subprogs = prog.getChild(4);
+
+        for (int i = 0; i < subprogs.getChildCount(); i++) {
+            function(subprogs.getChild(i));
+        }
+
+        // the body flushes the output, also when it throws
+        where = "program " + nameOf(prog.getChild(0));
+        inFunction = false;
+        code = classFile.addMethod(ClassFile.ACC_PUBLIC | ClassFile.ACC_STATIC, BODY, "()V", 0);
+        nextSlot = 0;
+        mainEnd = new ClassFile.Label();
+        ClassFile.Label start = new ClassFile.Label();
+        ClassFile.Label handler = new ClassFile.Label();
+
+        code.place(start);
+        statement(prog.getChild(5));
+        code.place(mainEnd);
+        code.invokestatic(classFile.methodRef(IO, "flush", "()V"), 0, false);
+        code.op(ClassFile.RETURN);
+        code.place(handler);
+        code.setStack(1);
+        code.invokestatic(classFile.methodRef(IO, "flush", "()V"), 0, false);
+        code.op(ClassFile.ATHROW);
+        code.catchAll(start, mainEnd, handler);
+
+        code = classFile.addMethod(ClassFile.ACC_PUBLIC | ClassFile.ACC_STATIC, "main", "([Ljava/lang/String;)V", 1);
+        ClassFile.Label call = new ClassFile.Label();
+        ClassFile.Label end = new ClassFile.Label();
+        handler = new ClassFile.Label();
+        code.place(call);
+        code.invokestatic(classFile.methodRef(classFile.name(), BODY, "()V"), 0, false);
+        code.place(end);
+        code.op(ClassFile.RETURN);
+        code.place(handler);
+        code.setStack(1);
+        code.invokestatic(classFile.methodRef(IO, "fail", "(Ljava/lang/Throwable;)V"), 1, false);
+        code.op(ClassFile.RETURN);
+        code.catchAll(call, end, handler);
+
+        symbols.exitScope();
+        symbols.exitScope();
+    }
+
+    // fcn(8): name params type consts types dclns block name
+    private void function(ASTNode fcn) {
+        ASTNode params = fcn.getChild(1);
+        String name = nameOf(fcn.getChild(0));
+        StringBuilder descriptor = new StringBuilder("(");
+        int arity = 0;
+
+        for (int i = 0; i < params.getChildCount(); i++) {
+            arity += params.getChild(i).getChildCount() - 1;
+        }
+
+        for (int i = 0; i < arity; i++) {
+            descriptor.append('I');
+        }
+
+        descriptor.append(")I");
+        where = "function " + name;
+        inFunction = true;
+        symbols.declare(symbolOf(fcn.getChild(0)), SymbolTable.FUNCTION, classFile.methodRef(classFile.name(), name, descriptor.toString()));
+        code = classFile.addMethod(ClassFile.ACC_PUBLIC | ClassFile.ACC_STATIC, name, descriptor.toString(), arity);
+        nextSlot = 0;
+
+        symbols.enterScope();
+        declareLocals(params, false);
+        declareConstants(fcn.getChild(3), fcn.getChild(4));
+        declareLocals(fcn.getChild(5), true);
+        statement(fcn.getChild(6));
+
+        // what a function returns when it ends without return
+        code.iconst(0);
+        code.op(ClassFile.IRETURN);
+        symbols.exitScope();
+    }
+
+    private void declareConstants(ASTNode consts, ASTNode types) {
+        // const(2): name value
+        for (int i = 0; i < consts.getChildCount(); i++) {
+            ASTNode constant = consts.getChild(i);
+            symbols.declare(symbolOf(constant.getChild(0)), SymbolTable.CONST, constant(constant.getChild(1)));
+        }
+
+        // type(2): name lit(n)
+        for (int i = 0; i < types.getChildCount(); i++) {
+            ASTNode type = types.getChild(i);
+            ASTNode literals = type.getChild(1);
+            symbols.declare(symbolOf(type.getChild(0)), SymbolTable.TYPE, -1);
+
+            for (int j = 0; j < literals.getChildCount(); j++) {
+                symbols.declare(symbolOf(literals.getChild(j)), SymbolTable.LITERAL, j);
+            }
+        }
+    }
+
+    // var(n): names type, under params or dclns; variables start at zero as locals must be set
+    // before the verifier lets them be read
+    private void declareLocals(ASTNode dclns, boolean initialize) {
+        for (int i = 0; i < dclns.getChildCount(); i++) {
+            ASTNode var = dclns.getChild(i);
+
+            for (int j = 0; j < var.getChildCount() - 1; j++) {
+                int slot = nextSlot++;
+                symbols.declare(symbolOf(var.getChild(j)), SymbolTable.VARIABLE, slot);
+                code.useLocal(slot);
+
+                if (initialize) {
+                    code.iconst(0);
+                    code.istore(slot);
+                }
+            }
+        }
+    }
+
+    private void statement(ASTNode node) {
+        switch (node.getSymbol()) {
+            case NamePool.BLOCK:
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    statement(node.getChild(i));
+                }
+                break;
+            case NamePool.ASSIGN:
+                assign(node.getChild(0), node.getChild(1));
+                break;
+            case NamePool.SWAP:
+                load(node.getChild(0));
+                load(node.getChild(1));
+                store(node.getChild(0));
+                store(node.getChild(1));
+                break;
+            case NamePool.OUTPUT:
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    ASTNode item = node.getChild(i);
+
+                    if (item.getSymbol() == NamePool.OUTPUT_STRING) {
+                        String text = item.getChild(0).getChild(0).getRuleName();
+                        code.ldcString(text.substring(1, text.length() - 1));
+                        code.invokestatic(classFile.methodRef(IO, "output", "(Ljava/lang/String;)V"), 1, false);
+                    } else {
+                        expression(item.getChild(0));
+                        code.invokestatic(classFile.methodRef(IO, "output", "(I)V"), 1, false);
+                    }
+                }
+                break;
+            case NamePool.READ:
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    code.invokestatic(classFile.methodRef(IO, "readInteger", "()I"), 0, true);
+                    store(node.getChild(i));
+                }
+                break;
+            case NamePool.IF: {
+                ClassFile.Label otherwise = new ClassFile.Label();
+                branch(node.getChild(0), otherwise, false);
+                statement(node.getChild(1));
+
+                if (node.getChildCount() == 3) {
+                    ClassFile.Label end = new ClassFile.Label();
+                    code.jump(ClassFile.GOTO, end);
+                    code.place(otherwise);
+                    statement(node.getChild(2));
+                    code.place(end);
+                } else {
+                    code.place(otherwise);
+                }
+                break;
+            }
+            case NamePool.WHILE: {
+                ClassFile.Label top = new ClassFile.Label();
+                ClassFile.Label end = new ClassFile.Label();
+                code.place(top);
+                branch(node.getChild(0), end, false);
+                statement(node.getChild(1));
+                code.jump(ClassFile.GOTO, top);
+                code.place(end);
+                break;
+            }
+            case NamePool.REPEAT: {
+                // repeat(n): statements condition
+                ClassFile.Label top = new ClassFile.Label();
+                code.place(top);
+
+                for (int i = 0; i < node.getChildCount() - 1; i++) {
+                    statement(node.getChild(i));
+                }
+
+                branch(node.getChild(node.getChildCount() - 1), top, false);
+                break;
+            }
+            case NamePool.FOR: {
+                // for(4): initial condition step statement
+                ClassFile.Label top = new ClassFile.Label();
+                ClassFile.Label end = new ClassFile.Label();
+                statement(node.getChild(0));
+                code.place(top);
+                branch(node.getChild(1), end, false);
+                statement(node.getChild(3));
+                statement(node.getChild(2));
+                code.jump(ClassFile.GOTO, top);
+                code.place(end);
+                break;
+            }
+            case NamePool.LOOP: {
+                ClassFile.Label top = new ClassFile.Label();
+                ClassFile.Label end = new ClassFile.Label();
+                exits.add(end);
+                code.place(top);
+
+                for (int i = 0; i < node.getChildCount(); i++) {
+                    statement(node.getChild(i));
+                }
+
+                code.jump(ClassFile.GOTO, top);
+                code.place(end);
+                exits.remove(exits.size() - 1);
+                break;
+            }
+            case NamePool.EXIT:
+                if (exits.isEmpty()) {
+                    throw new RuntimeException("Code generation error in " + where + " \nexit outside of loop ... pool");
+                }
+
+                code.jump(ClassFile.GOTO, exits.get(exits.size() - 1));
+                break;
+            case NamePool.RETURN:
+                expression(node.getChild(0));
+
+                if (inFunction) {
+                    code.op(ClassFile.IRETURN);
+                } else {
+                    code.op(ClassFile.POP);
+                    code.jump(ClassFile.GOTO, mainEnd);
+                }
+                break;
+            case NamePool.CASE:
+                caseStatement(node);
+                break;
+            case NamePool.NULL:
+                break;
+            default:
+                throw new RuntimeException("Code generation error in " + where + " \nUnexpected " + node.getRuleName());
+        }
+    }
+
+    // case(n): expression case_clause... otherwise?, with the value in a local while the clauses
+    // compare their labels with it in order
+    private void caseStatement(ASTNode node) {
+        int value = nextSlot++;
+        ClassFile.Label end = new ClassFile.Label();
+
+        expression(node.getChild(0));
+        code.istore(value);
+
+        for (int i = 1; i < node.getChildCount(); i++) {
+            ASTNode clause = node.getChild(i);
+
+            if (clause.getSymbol() == NamePool.OTHERWISE) {
+                statement(clause.getChild(0));
+                break;
+            }
+
+            // case_clause(n): labels statement
+            ClassFile.Label body = new ClassFile.Label();
+            ClassFile.Label next = new ClassFile.Label();
+
+            for (int j = 0; j < clause.getChildCount() - 1; j++) {
+                ASTNode label = clause.getChild(j);
+
+                if (label.getSymbol() == NamePool.RANGE) {
+                    ClassFile.Label outside = new ClassFile.Label();
+                    code.iload(value);
+                    code.iconst(constant(label.getChild(0)));
+                    code.jump(ClassFile.IF_ICMPLT, outside);
+                    code.iload(value);
+                    code.iconst(constant(label.getChild(1)));
+                    code.jump(ClassFile.IF_ICMPLE, body);
+                    code.place(outside);
+                } else {
+                    code.iload(value);
+                    code.iconst(constant(label));
+                    code.jump(ClassFile.IF_ICMPEQ, body);
+                }
+            }
+
+            code.jump(ClassFile.GOTO, next);
+            code.place(body);
+            statement(clause.getChild(clause.getChildCount() - 1));
+            code.jump(ClassFile.GOTO, end);
+            code.place(next);
+        }
+
+        code.place(end);
+        nextSlot--;
+    }
+
+    private void assign(ASTNode target, ASTNode value) {
+        int entry = symbols.lookup(symbolOf(target));
+        int operator = value.getSymbol();
+
+        // x := x + c and x := x - c on a local are one iinc
+        if (symbols.info(entry) >= 0 && (operator == NamePool.PLUS || operator == NamePool.MINUS) && value.getChildCount() == 2
+                && value.getChild(0).getSymbol() == NamePool.IDENTIFIER && symbolOf(value.getChild(0)) == symbolOf(target)
+                && value.getChild(1).getSymbol() == NamePool.INTEGER) {
+            int delta = constant(value.getChild(1));
+
+            if (operator == NamePool.MINUS) {
+                delta = -delta;
+            }
+
+            if (delta >= Short.MIN_VALUE && delta <= Short.MAX_VALUE) {
+                code.iinc(symbols.info(entry), delta);
+                return;
+            }
+        }
+
+        expression(value);
+        store(target);
+    }
+
+    // Jumps to target when the condition is when, and falls through otherwise.
+    private void branch(ASTNode condition, ClassFile.Label target, boolean when) {
+        int operator = condition.getSymbol();
+        int compare = comparison(operator);
+
+        if (compare != 0) {
+            expression(condition.getChild(0));
+            expression(condition.getChild(1));
+            code.jump(when ? compare : negate(compare), target);
+        } else if (operator == NamePool.NOT) {
+            branch(condition.getChild(0), target, !when);
+        } else if (operator == NamePool.TRUE && condition.getChildCount() == 0) {
+            // the missing condition of a for
+            if (when) {
+                code.jump(ClassFile.GOTO, target);
+            }
+        } else {
+            expression(condition);
+            code.jump(when ? ClassFile.IFNE : ClassFile.IFEQ, target);
+        }
+    }
+
+    // leaves the value on the stack
+    private void expression(ASTNode node) {
+        int symbol = node.getSymbol();
+
+        if (symbol == NamePool.IDENTIFIER) {
+            load(node);
+            return;
+        } else if (symbol == NamePool.INTEGER || symbol == NamePool.CHAR) {
+            code.iconst(constant(node));
+            return;
+        }
+
+        int compare = comparison(symbol);
+
+        if (compare != 0) {
+            ClassFile.Label isFalse = new ClassFile.Label();
+            ClassFile.Label end = new ClassFile.Label();
+            expression(node.getChild(0));
+            expression(node.getChild(1));
+            int depth = code.stack() - 2;
+            code.jump(negate(compare), isFalse);
+            code.iconst(1);
+            code.jump(ClassFile.GOTO, end);
+            code.place(isFalse);
+            code.setStack(depth);
+            code.iconst(0);
+            code.place(end);
+            return;
+        }
+
+        switch (symbol) {
+            case NamePool.PLUS:
+                binary(node, ClassFile.IADD);
+                break;
+            case NamePool.MINUS:
+                if (node.getChildCount() == 1) {
+                    expression(node.getChild(0));
+                    code.op(ClassFile.INEG);
+                } else {
+                    binary(node, ClassFile.ISUB);
+                }
+                break;
+            case NamePool.TIMES:
+                binary(node, ClassFile.IMUL);
+                break;
+            case NamePool.DIVIDE:
+                binary(node, ClassFile.IDIV);
+                break;
+            case NamePool.MOD:
+                binary(node, ClassFile.IREM);
+                break;
+            case NamePool.AND:
+                binary(node, ClassFile.IAND);
+                break;
+            case NamePool.OR:
+                binary(node, ClassFile.IOR);
+                break;
+            case NamePool.NOT:
+                expression(node.getChild(0));
+                code.iconst(1);
+                code.op(ClassFile.IXOR);
+                break;
+            case NamePool.SUCC:
+                expression(node.getChild(0));
+                code.iconst(1);
+                code.op(ClassFile.IADD);
+                break;
+            case NamePool.PRED:
+                expression(node.getChild(0));
+                code.iconst(1);
+                code.op(ClassFile.ISUB);
+                break;
+            case NamePool.CHR:
+            case NamePool.ORD:
+                expression(node.getChild(0));
+                break;
+            case NamePool.EOF:
+                code.invokestatic(classFile.methodRef(IO, "eof", "()I"), 0, true);
+                break;
+            case NamePool.TRUE:
+                code.iconst(1);
+                break;
+            case NamePool.CALL:
+                // call(n): name arguments
+                for (int i = 1; i < node.getChildCount(); i++) {
+                    expression(node.getChild(i));
+                }
+
+                code.invokestatic(symbols.info(symbols.lookup(symbolOf(node.getChild(0)))), node.getChildCount() - 1, true);
+                break;
+            default:
+                throw new RuntimeException("Code generation error in " + where + " \nUnexpected " + node.getRuleName());
+        }
+    }
+
+    private void binary(ASTNode node, int opcode) {
+        expression(node.getChild(0));
+        expression(node.getChild(1));
+        code.op(opcode);
+    }
+
+    private void load(ASTNode name) {
+        int entry = symbols.lookup(symbolOf(name));
+        int info = symbols.info(entry);
+
+        if (symbols.kind(entry) != SymbolTable.VARIABLE) {
+            code.iconst(info);
+        } else if (info >= 0) {
+            code.iload(info);
+        } else {
+            code.getstatic(~info);
+        }
+    }
+
+    private void store(ASTNode name) {
+        int info = symbols.info(symbols.lookup(symbolOf(name)));
+
+        if (info >= 0) {
+            code.istore(info);
+        } else {
+            code.putstatic(~info);
+        }
+    }
+
+    // the value of an <integer>, a <char> or a named constant
+    private int constant(ASTNode value) {
+        String text = value.getChild(0).getRuleName();
+
+        if (value.getSymbol() == NamePool.INTEGER) {
+            return SemanticChecker.integerValue(value);
+        } else if (value.getSymbol() == NamePool.CHAR) {
+            return text.charAt(1);
+        }
+
+        return symbols.info(symbols.lookup(symbolOf(value)));
+    }
+
+    // the branch taken when the relation holds, or 0 for other operators
+    private static int comparison(int operator) {
+        switch (operator) {
+            case NamePool.EQ:
+                return ClassFile.IF_ICMPEQ;
+            case NamePool.NE:
+                return ClassFile.IF_ICMPNE;
+            case NamePool.LT:
+                return ClassFile.IF_ICMPLT;
+            case NamePool.GE:
+                return ClassFile.IF_ICMPGE;
+            case NamePool.GT:
+                return ClassFile.IF_ICMPGT;
+            case NamePool.LE:
+                return ClassFile.IF_ICMPLE;
+            default:
+                return 0;
+        }
+    }
+
+    // the relation that holds exactly when compare's does not: eq and ne, lt and ge, gt and le
+    private static int negate(int compare) {
+        return ((compare - ClassFile.IF_ICMPEQ) ^ 1) + ClassFile.IF_ICMPEQ;
+    }
+
+    private static int symbolOf(ASTNode identifier) {
+        return identifier.getChild(0).getSymbol();
+    }
+
+    private String nameOf(ASTNode identifier) {
+        return nameOf(names, identifier);
+    }
+
+    private static String nameOf(NamePool names, ASTNode identifier) {
+        return names.name(symbolOf(identifier));
+    }
+}
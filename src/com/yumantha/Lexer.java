@@ -0,0 +1,546 @@
+package com.yumantha;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static com.yumantha.Token.Type;
+
+public class Lexer implements TokenStream {
+    public static ArrayList<Token> scan(CharSequence input) {
+        Lexer lexer = new Lexer(input, new NamePool());
+        ArrayList<Token> result = new ArrayList<Token>();
+
+        while (!lexer.atEnd) {
+            result.add(new Token(lexer.type, lexer.text(), lexer.tokenLine, lexer.tokenCol));
+            lexer.advance();
+        }
+
+        return result;
+    }
+
+    public static TokenStream stream(CharSequence input) {
+        return new Lexer(input, new NamePool());
+    }
+
+    public static TokenStream stream(CharSequence input, NamePool names) {
+        return new Lexer(input, names);
+    }
+
+    // With diagnostics, a character that cannot start a token is reported there and skipped
+    // instead of ending the scan.
+    public static TokenStream stream(CharSequence input, NamePool names, Diagnostics diagnostics) {
+        return new Lexer(input, names, 0, input.length(), diagnostics);
+    }
+
+    public static TokenBuffer scanBuffer(CharSequence input) {
+        return scanBuffer(input, new NamePool());
+    }
+
+    public static TokenBuffer scanBuffer(CharSequence input, NamePool names) {
+        return scanBuffer(input, names, null);
+    }
+
+    public static TokenBuffer scanBuffer(CharSequence input, NamePool names, Diagnostics diagnostics) {
+        Lexer lexer = new Lexer(input, names, 0, input.length(), diagnostics);
+        TokenBuffer buffer = new TokenBuffer(input, names);
+
+        while (!lexer.atEnd) {
+            buffer.add(lexer.type, lexer.tokenStart, lexer.tokenEnd, lexer.tokenLine, lexer.tokenCol);
+            lexer.advance();
+        }
+
+        buffer.setEof(lexer.tokenLine, lexer.tokenCol);
+
+        return buffer;
+    }
+
+    // Lexes only input[from, to), as if the text ended at to. Offsets stay relative to the whole input.
+    static Lexer region(CharSequence input, int from, int to, NamePool names) {
+        return new Lexer(input, names, from, to);
+    }
+
+    // True when lexing all of input from the token at tokenStart ends that token at tokenEnd and puts
+    // the next token (or the end of input) at next, i.e. nothing lexes differently across that boundary.
+    static boolean followedAt(CharSequence input, NamePool names, int tokenStart, int tokenEnd, int next) {
+        try {
+            Lexer lexer = new Lexer(input, names, tokenStart, input.length());
+
+            if (lexer.tokenEnd != tokenEnd) {
+                return false;
+            }
+
+            lexer.advance();
+            return lexer.tokenStart == next;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    static String fixedText(Type t_type) {
+        return fixedText[t_type.ordinal()];
+    }
+
+    private static final String[] fixedText = new String[Type.values().length];
+    private static final Type[][] keywordsByFirstChar = new Type['z' + 1][];
+
+    static {
+        fixedText[Type.AND_OP.ordinal()] = "and";
+        fixedText[Type.BEGIN.ordinal()] = "begin";
+        fixedText[Type.CASE.ordinal()] = "case";
+        fixedText[Type.CONST.ordinal()] = "const";
+        fixedText[Type.CHR.ordinal()] = "chr";
+        fixedText[Type.DO.ordinal()] = "do";
+        fixedText[Type.END.ordinal()] = "end";
+        fixedText[Type.ELSE.ordinal()] = "else";
+        fixedText[Type.EXIT.ordinal()] = "exit";
+        fixedText[Type.EOF.ordinal()] = "eof";
+        fixedText[Type.FUNCTION.ordinal()] = "function";
+        fixedText[Type.FOR.ordinal()] = "for";
+        fixedText[Type.IF.ordinal()] = "if";
+        fixedText[Type.LOOP.ordinal()] = "loop";
+        fixedText[Type.MOD_OP.ordinal()] = "mod";
+        fixedText[Type.NOT_OP.ordinal()] = "not";
+        fixedText[Type.OUTPUT.ordinal()] = "output";
+        fixedText[Type.OF.ordinal()] = "of";
+        fixedText[Type.OTHERWISE.ordinal()] = "otherwise";
+        fixedText[Type.OR_OP.ordinal()] = "or";
+        fixedText[Type.ORD.ordinal()] = "ord";
+        fixedText[Type.PROG.ordinal()] = "program";
+        fixedText[Type.POOL.ordinal()] = "pool";
+        fixedText[Type.PRED.ordinal()] = "pred";
+        fixedText[Type.RETURN.ordinal()] = "return";
+        fixedText[Type.REPEAT.ordinal()] = "repeat";
+        fixedText[Type.READ.ordinal()] = "read";
+        fixedText[Type.SUCC.ordinal()] = "succ";
+        fixedText[Type.TYPE.ordinal()] = "type";
+        fixedText[Type.THEN.ordinal()] = "then";
+        fixedText[Type.UNTIL.ordinal()] = "until";
+        fixedText[Type.VAR.ordinal()] = "var";
+        fixedText[Type.WHILE.ordinal()] = "while";
+        fixedText[Type.SWAP.ordinal()] = ":=:";
+        fixedText[Type.ASSIGN.ordinal()] = ":=";
+        fixedText[Type.CASE_DOTS.ordinal()] = "..";
+        fixedText[Type.LESS_EQUAL_OP.ordinal()] = "<=";
+        fixedText[Type.NOT_EQUAL_OP.ordinal()] = "<>";
+        fixedText[Type.LESS_OP.ordinal()] = "<";
+        fixedText[Type.GREATER_EQUAL_OP.ordinal()] = ">=";
+        fixedText[Type.GREATER_OP.ordinal()] = ">";
+        fixedText[Type.EQUAL_OP.ordinal()] = "=";
+        fixedText[Type.BLOCK_BEGIN.ordinal()] = "{";
+        fixedText[Type.COLON.ordinal()] = ":";
+        fixedText[Type.SEMI_COLON.ordinal()] = ";";
+        fixedText[Type.DOT.ordinal()] = ".";
+        fixedText[Type.COMMA.ordinal()] = ",";
+        fixedText[Type.LPAREN.ordinal()] = "(";
+        fixedText[Type.RPAREN.ordinal()] = ")";
+        fixedText[Type.PLUS_OP.ordinal()] = "+";
+        fixedText[Type.MINUS_OP.ordinal()] = "-";
+        fixedText[Type.MULTIPLY_OP.ordinal()] = "*";
+        fixedText[Type.DIVIDE_OP.ordinal()] = "/";
+
+        for (Type t_type : Type.values()) {
+            String keyword = fixedText[t_type.ordinal()];
+
+            if (keyword != null && Character.isLetter(keyword.charAt(0))) {
+                Type[] candidates = keywordsByFirstChar[keyword.charAt(0)];
+                candidates = (candidates == null) ? new Type[1] : Arrays.copyOf(candidates, candidates.length + 1);
+                candidates[candidates.length - 1] = t_type;
+                keywordsByFirstChar[keyword.charAt(0)] = candidates;
+            }
+        }
+    }
+
+    private final CharSequence input;
+    private final NamePool names;
+    private final int length;
+    private final Diagnostics diagnostics;
+    private int pos;
+    private int line;
+    private int col;
+
+    private Type type;
+    private int tokenStart;
+    private int tokenEnd;
+    private int tokenLine;
+    private int tokenCol;
+    private int tokenSymbol;
+    private boolean atEnd;
+    private int lastStart;
+    private int lastEnd;
+
+    private Lexer(CharSequence input, NamePool names) {
+        this(input, names, 0, input.length());
+    }
+
+    private Lexer(CharSequence input, NamePool names, int from, int to) {
+        this(input, names, from, to, null);
+    }
+
+    private Lexer(CharSequence input, NamePool names, int from, int to, Diagnostics diagnostics) {
+        this.input = input;
+        this.names = names;
+        this.length = to;
+        this.diagnostics = diagnostics;
+        this.pos = from;
+        this.line = 1;
+        this.col = 1;
+        this.tokenLine = 0;
+        this.tokenCol = 0;
+
+        advance();
+    }
+
+    @Override
+    public Token.Type type() {
+        return type;
+    }
+
+    @Override
+    public String text() {
+        if (atEnd) {
+            return "<EOF>";
+        }
+
+        String text = fixedText[type.ordinal()];
+
+        if (text != null) {
+            return text;
+        }
+
+        return names.name(symbol());
+    }
+
+    @Override
+    public int symbol() {
+        if (tokenSymbol < 0) {
+            tokenSymbol = names.intern(input, tokenStart, tokenEnd);
+        }
+
+        return tokenSymbol;
+    }
+
+    @Override
+    public NamePool names() {
+        return names;
+    }
+
+    @Override
+    public int line() {
+        return tokenLine;
+    }
+
+    @Override
+    public int col() {
+        return tokenCol;
+    }
+
+    @Override
+    public int offset() {
+        return tokenStart;
+    }
+
+    // source range of the most recent real token
+    int lastStart() {
+        return lastStart;
+    }
+
+    int lastEnd() {
+        return lastEnd;
+    }
+
+    @Override
+    public void advance() {
+        if (atEnd) {
+            return;
+        }
+
+        int endCol = tokenCol + (tokenEnd - tokenStart);
+        tokenSymbol = -1;
+
+        // type is null after a bad character was skipped
+        do {
+            skipWhitespacesAndComments();
+
+            if (pos >= length) {
+                // positioned like the end marker Parser used to synthesise after the last token
+                type = Type.EOF;
+                tokenCol = (tokenLine == 0) ? 0 : endCol;
+                tokenStart = pos;
+                tokenEnd = pos;
+                atEnd = true;
+                return;
+            }
+
+            tokenLine = line;
+            tokenCol = col;
+            tokenStart = pos;
+
+            char c = input.charAt(pos);
+
+            switch (c) {
+                case ':':
+                    if (charAt(pos + 1) == '=') {
+                        if (charAt(pos + 2) == ':') {
+                            setToken(Type.SWAP);
+                        } else {
+                            setToken(Type.ASSIGN);
+                        }
+                    } else {
+                        setToken(Type.COLON);
+                    }
+                    break;
+                case '.':
+                    if (charAt(pos + 1) == '.') {
+                        setToken(Type.CASE_DOTS);
+                    } else {
+                        setToken(Type.DOT);
+                    }
+                    break;
+                case '<':
+                    if (charAt(pos + 1) == '=') {
+                        setToken(Type.LESS_EQUAL_OP);
+                    } else if (charAt(pos + 1) == '>') {
+                        setToken(Type.NOT_EQUAL_OP);
+                    } else {
+                        setToken(Type.LESS_OP);
+                    }
+                    break;
+                case '>':
+                    if (charAt(pos + 1) == '=') {
+                        setToken(Type.GREATER_EQUAL_OP);
+                    } else {
+                        setToken(Type.GREATER_OP);
+                    }
+                    break;
+                case '=':
+                    setToken(Type.EQUAL_OP);
+                    break;
+                case '{':
+                    // only reached when the brace does not open a closed comment
+                    setToken(Type.BLOCK_BEGIN);
+                    break;
+                case ';':
+                    setToken(Type.SEMI_COLON);
+                    break;
+                case ',':
+                    setToken(Type.COMMA);
+                    break;
+                case '(':
+                    setToken(Type.LPAREN);
+                    break;
+                case ')':
+                    setToken(Type.RPAREN);
+                    break;
+                case '+':
+                    setToken(Type.PLUS_OP);
+                    break;
+                case '-':
+                    setToken(Type.MINUS_OP);
+                    break;
+                case '*':
+                    setToken(Type.MULTIPLY_OP);
+                    break;
+                case '/':
+                    setToken(Type.DIVIDE_OP);
+                    break;
+                case '\'':
+                    scanChar();
+                    break;
+                case '"':
+                    scanString();
+                    break;
+                default:
+                    if (isIdentifierStart(c)) {
+                        scanIdentifier();
+                    } else if (isDigit(c)) {
+                        scanInteger();
+                    } else {
+                        badCharacter();
+                    }
+            }
+        } while (type == null);
+
+        tokenEnd = pos;
+        lastStart = tokenStart;
+        lastEnd = tokenEnd;
+    }
+
+    private char charAt(int i) {
+        return i < length ? input.charAt(i) : '\0';
+    }
+
+    private int indexOf(char c, int from) {
+        for (int i = from; i < length; i++) {
+            if (input.charAt(i) == c) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private static boolean isWhiteSpace(char c) {
+        // space, form feed, horizontal tab, vertical tab, line feed (new line)
+        return c == ' ' || c == '\f' || c == '\t' || c == '\u000b' || c == '\n';
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || isDigit(c);
+    }
+
+    private void skipWhitespacesAndComments() {
+        while (pos < length) {
+            char c = input.charAt(pos);
+
+            if (c == '\n') {
+                pos++;
+                line++;
+                col = 1;
+            } else if (isWhiteSpace(c)) {
+                pos++;
+                col++;
+            } else if (c == '#') {
+                int end = pos + 1;
+
+                while (end < length && !isLineTerminator(input.charAt(end))) {
+                    end++;
+                }
+
+                col += end - pos;
+                pos = end;
+            } else if (c == '{') {
+                int end = indexOf('}', pos + 1);
+
+                if (end < 0) {
+                    return;
+                }
+
+                readInput(end + 1);
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void scanChar() {
+        if (pos + 2 < length && input.charAt(pos + 1) != '\'' && input.charAt(pos + 2) == '\'') {
+            type = Type.CHAR;
+            readInput(pos + 3);
+        } else {
+            badCharacter();
+        }
+    }
+
+    private void scanString() {
+        int end = indexOf('"', pos + 1);
+
+        if (end < 0) {
+            badCharacter();
+            return;
+        }
+
+        type = Type.STRING;
+        readInput(end + 1);
+    }
+
+    private void badCharacter() {
+        String message = "Cannot tokenize at line: " + line + " col: " + col;
+
+        if (diagnostics == null) {
+            throw new RuntimeException(message);
+        }
+
+        diagnostics.report(message);
+        type = null;
+        pos++;
+        col++;
+    }
+
+    private void scanInteger() {
+        int end = pos + 1;
+
+        while (end < length && isDigit(input.charAt(end))) {
+            end++;
+        }
+
+        type = Type.INTEGER;
+        col += end - pos;
+        pos = end;
+    }
+
+    private void scanIdentifier() {
+        int end = pos + 1;
+
+        while (end < length && isIdentifierPart(input.charAt(end))) {
+            end++;
+        }
+
+        int len = end - pos;
+        Type t_type = keyword(pos, len);
+
+        type = (t_type != null) ? t_type : Type.IDENTIFIER;
+        col += len;
+        pos = end;
+    }
+
+    private Type keyword(int start, int len) {
+        Type[] candidates = keywordsByFirstChar[input.charAt(start)];
+
+        if (candidates == null) {
+            return null;
+        }
+
+        for (Type candidate : candidates) {
+            String keyword = fixedText[candidate.ordinal()];
+
+            if (keyword.length() == len && regionMatches(start, keyword)) {
+                return candidate;
+            }
+        }
+
+        return null;
+    }
+
+    private boolean regionMatches(int start, String keyword) {
+        for (int i = 0; i < keyword.length(); i++) {
+            if (input.charAt(start + i) != keyword.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void setToken(Type t_type) {
+        int len = fixedText[t_type.ordinal()].length();
+
+        type = t_type;
+        col += len;
+        pos += len;
+    }
+
+    private void readInput(int end) {
+        for (int i = pos; i < end; ++i) {
+            if (input.charAt(i) == '\n') {
+                line++;
+                col = 1;
+            } else {
+                col++;
+            }
+        }
+
+        pos = end;
+    }
+}
@@ -0,0 +1,175 @@
+package com.yumantha;
+
+import java.util.Arrays;
+
+// Interns identifier spellings and tree labels so each distinct name is stored once and can be
+// referred to, and compared, by a small int id. Rule labels are seeded first so they get the same
+// ids in every pool.
+public class NamePool {
+    private static final String[] ruleLabels = {
+            "program", "consts", "const", "types", "type", "lit", "subprogs", "fcn", "params", "dclns",
+            "var", "block", "output", "if", "while", "repeat", "for", "loop", "case", "read", "exit",
+            "return", "<null>", "integer", "string", "case_clause", "..", "otherwise", "assign", "swap",
+            "true", "<=", "<", ">=", ">", "=", "<>", "+", "-", "or", "*", "/", "and", "mod", "not", "eof",
+            "call", "succ", "pred", "chr", "ord", "<identifier>", "<string>", "<integer>", "<char>",
+    };
+
+    // ids of the labels code generators and checkers dispatch on, by their place in ruleLabels
+    public static final int FCN = 7;
+    public static final int BLOCK = 11;
+    public static final int OUTPUT = 12;
+    public static final int IF = 13;
+    public static final int WHILE = 14;
+    public static final int REPEAT = 15;
+    public static final int FOR = 16;
+    public static final int LOOP = 17;
+    public static final int CASE = 18;
+    public static final int READ = 19;
+    public static final int EXIT = 20;
+    public static final int RETURN = 21;
+    public static final int NULL = 22;
+    // a string item of an output, over its <string>
+    public static final int OUTPUT_STRING = 24;
+    public static final int CASE_CLAUSE = 25;
+    public static final int RANGE = 26;
+    public static final int OTHERWISE = 27;
+    public static final int ASSIGN = 28;
+    public static final int SWAP = 29;
+    public static final int TRUE = 30;
+    public static final int LE = 31;
+    public static final int LT = 32;
+    public static final int GE = 33;
+    public static final int GT = 34;
+    public static final int EQ = 35;
+    public static final int NE = 36;
+    public static final int PLUS = 37;
+    public static final int MINUS = 38;
+    public static final int OR = 39;
+    public static final int TIMES = 40;
+    public static final int DIVIDE = 41;
+    public static final int AND = 42;
+    public static final int MOD = 43;
+    public static final int NOT = 44;
+    public static final int EOF = 45;
+    public static final int CALL = 46;
+    public static final int SUCC = 47;
+    public static final int PRED = 48;
+    public static final int CHR = 49;
+    public static final int ORD = 50;
+
+    public static final int IDENTIFIER = 51;
+    public static final int STRING = 52;
+    public static final int INTEGER = 53;
+    public static final int CHAR = 54;
+
+    private String[] names;
+    private int[] hashes;
+    private int size;
+    private int[] table;
+
+    public NamePool() {
+        this.names = new String[128];
+        this.hashes = new int[128];
+        this.size = 0;
+        this.table = new int[256];
+
+        for (String label : ruleLabels) {
+            intern(label);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    public int intern(String name) {
+        int hash = name.hashCode();
+        int mask = table.length - 1;
+
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+
+            if (id < 0) {
+                return add(slot, hash, name);
+            }
+
+            if (hashes[id] == hash && names[id].equals(name)) {
+                return id;
+            }
+        }
+    }
+
+    public int intern(CharSequence source, int start, int end) {
+        int hash = 0;
+
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+
+        int mask = table.length - 1;
+
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+
+            if (id < 0) {
+                return add(slot, hash, source.subSequence(start, end).toString());
+            }
+
+            if (hashes[id] == hash && matches(names[id], source, start, end)) {
+                return id;
+            }
+        }
+    }
+
+    private static boolean matches(String name, CharSequence source, int start, int end) {
+        if (name.length() != end - start) {
+            return false;
+        }
+
+        for (int i = start; i < end; i++) {
+            if (name.charAt(i - start) != source.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int add(int slot, int hash, String name) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+
+        int id = size++;
+        names[id] = name;
+        hashes[id] = hash;
+        table[slot] = id + 1;
+
+        // keep the load factor at or below one half
+        if (size * 2 > table.length) {
+            rehash();
+        }
+
+        return id;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+
+            table[slot] = id + 1;
+        }
+    }
+}
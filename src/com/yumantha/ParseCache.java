@@ -0,0 +1,258 @@
+package com.yumantha;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Finished .tree outputs on disk, keyed by the SHA-256 of the source bytes and of the compiler
+// classes, all of them, so a rebuilt compiler never sees entries of an older one.
+//
+// Entries are written to a temporary file and renamed into place, so several compiler processes
+// can share one directory and a reader sees either a whole entry or none. A hit sets the entry's
+// modification time, which is what eviction orders by: once the directory grows past its limit
+// the least recently used entries are deleted until it is back under 90% of it.
+public class ParseCache {
+    public static final String DIRECTORY_VARIABLE = "WINZIGC_CACHE";
+    public static final String LIMIT_VARIABLE = "WINZIGC_CACHE_LIMIT";
+    public static final long DEFAULT_LIMIT = 256L << 20;
+
+    private static final String ENTRY_SUFFIX = ".tree";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // temporary files this old were left by a process that died mid-write
+    private static final long STALE_TEMP_MILLIS = 10 * 60 * 1000;
+
+    // The cache named by WINZIGC_CACHE (size limit in bytes from WINZIGC_CACHE_LIMIT), or null
+    // when the variable is not set. A limit that is not a byte count throws IllegalArgumentException.
+    public static ParseCache fromEnvironment() throws IOException {
+        String directory = System.getenv(DIRECTORY_VARIABLE);
+
+        if (directory == null || directory.isEmpty()) {
+            return null;
+        }
+
+        String limit = System.getenv(LIMIT_VARIABLE);
+        long bytes = DEFAULT_LIMIT;
+
+        if (limit != null) {
+            try {
+                bytes = Long.parseLong(limit.trim());
+            } catch (NumberFormatException e) {
+                bytes = -1;
+            }
+
+            if (bytes < 0) {
+                throw new IllegalArgumentException(LIMIT_VARIABLE + " must be a size in bytes, not '" + limit + "'");
+            }
+        }
+
+        return new ParseCache(Paths.get(directory), bytes);
+    }
+
+    private final Path directory;
+    private final long limit;
+    private final byte[] versionStamp;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    // bytes in the directory as far as this process knows, -1 until first counted
+    private final AtomicLong size = new AtomicLong(-1);
+
+    public ParseCache(Path directory, long limit) throws IOException {
+        this.directory = directory;
+        this.limit = limit;
+        this.versionStamp = versionStamp();
+
+        Files.createDirectories(directory);
+    }
+
+    public String key(ByteBuffer source) {
+        MessageDigest digest = sha256();
+        digest.update(versionStamp);
+        digest.update(source.duplicate());
+
+        StringBuilder key = new StringBuilder();
+
+        for (byte b : digest.digest()) {
+            key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+
+        return key.toString();
+    }
+
+    // The stored tree text, or null on a miss.
+    public byte[] lookup(String key) {
+        Path entry = directory.resolve(key + ENTRY_SUFFIX);
+
+        try {
+            byte[] tree = Files.readAllBytes(entry);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.incrementAndGet();
+            return tree;
+        } catch (IOException e) {
+            // missing, or evicted by another process between the two calls
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    // Failing to store only costs a later miss, so errors are swallowed.
+    public void store(String key, byte[] tree) {
+        try {
+            Path temp = Files.createTempFile(directory, key, TEMP_SUFFIX);
+
+            try {
+                Files.write(temp, tree);
+                Files.move(temp, directory.resolve(key + ENTRY_SUFFIX), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+
+            if (size.get() < 0) {
+                evict();
+            } else if (size.addAndGet(tree.length) > limit) {
+                evict();
+            }
+        } catch (IOException ignored) {
+        }
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "Cache: " + hits() + " hits, " + misses() + " misses, " + evictions() + " evicted";
+    }
+
+    // Recounts the directory, since other processes write to it too, and deletes the least
+    // recently used entries while it is over the limit.
+    private synchronized void evict() throws IOException {
+        List<Path> entries = new ArrayList<Path>();
+        List<FileTime> times = new ArrayList<FileTime>();
+        List<Long> sizes = new ArrayList<Long>();
+        long total = 0;
+        long now = System.currentTimeMillis();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+
+                try {
+                    if (name.endsWith(TEMP_SUFFIX)) {
+                        if (now - Files.getLastModifiedTime(file).toMillis() > STALE_TEMP_MILLIS) {
+                            Files.deleteIfExists(file);
+                        }
+                    } else if (name.endsWith(ENTRY_SUFFIX)) {
+                        long bytes = Files.size(file);
+
+                        entries.add(file);
+                        times.add(Files.getLastModifiedTime(file));
+                        sizes.add(bytes);
+                        total += bytes;
+                    }
+                } catch (NoSuchFileException ignored) {
+                    // removed by another process while listing
+                }
+            }
+        }
+
+        if (total > limit) {
+            List<Integer> order = new ArrayList<Integer>();
+
+            for (int i = 0; i < entries.size(); i++) {
+                order.add(i);
+            }
+
+            Collections.sort(order, Comparator.comparing(times::get));
+
+            for (int i : order) {
+                if (total <= limit - limit / 10) {
+                    break;
+                }
+
+                if (Files.deleteIfExists(entries.get(i))) {
+                    evictions.incrementAndGet();
+                }
+
+                total -= sizes.get(i);
+            }
+        }
+
+        size.set(total);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    }
+
+    // The digest of the jar the compiler was loaded from, or of every class file in its package
+    // when it was loaded from a directory. Which classes a tree depends on is not kept by hand: a
+    // rebuild that changes any of them changes the stamp.
+    private static byte[] versionStamp() throws IOException {
+        MessageDigest digest = sha256();
+        CodeSource source = ParseCache.class.getProtectionDomain().getCodeSource();
+        Path location;
+
+        if (source == null) {
+            throw new IOException("Cannot find the compiler classes to stamp the cache with");
+        }
+
+        try {
+            location = Paths.get(source.getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IOException("Cannot find the compiler classes at " + source.getLocation(), e);
+        }
+
+        if (!Files.isDirectory(location)) {
+            digest.update(Files.readAllBytes(location));
+            return digest.digest();
+        }
+
+        List<Path> classes = new ArrayList<Path>();
+        Path classDirectory = location.resolve(ParseCache.class.getPackage().getName().replace('.', '/'));
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(classDirectory, "*.class")) {
+            for (Path file : files) {
+                classes.add(file);
+            }
+        }
+
+        Collections.sort(classes);
+
+        for (Path file : classes) {
+            digest.update(file.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+            digest.update(Files.readAllBytes(file));
+        }
+
+        return digest.digest();
+    }
+}
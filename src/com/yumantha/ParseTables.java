@@ -0,0 +1,129 @@
+package com.yumantha;
+
+// Generated by ParserGenerator from winzigc.grammar; do not edit, run make tables instead.
+//
+// Parse stack codes: a terminal is its Token.Type ordinal, nonterminal a is TERMINALS + a, then
+// POP drops the innermost mark and BUILD + i builds labels[i] from the subtrees since that mark.
+// Nonterminal a with lookahead t expands production next[base[a] + t] when check[base[a] + t] == a;
+// its symbols are rhs[rhsStart[p]] up to rhsStart[p + 1], last symbol first.
+final class ParseTables {
+    static final int TERMINALS = 57;
+    static final int NONTERMINALS = 50;
+    static final int START = TERMINALS;
+    static final int POP = TERMINALS + NONTERMINALS;
+    static final int BUILD = POP + 1;
+
+    // Token.Type names the tables were built for, checked when TableParser loads
+    static final String[] terminals = {
+            "PROG", "VAR", "CONST", "TYPE", "FUNCTION", "RETURN",
+            "BEGIN", "END", "SWAP", "ASSIGN", "OUTPUT", "IF",
+            "THEN", "ELSE", "WHILE", "DO", "CASE", "OF",
+            "CASE_DOTS", "OTHERWISE", "REPEAT", "FOR", "UNTIL", "LOOP",
+            "POOL", "EXIT", "LESS_EQUAL_OP", "NOT_EQUAL_OP", "LESS_OP", "GREATER_EQUAL_OP",
+            "GREATER_OP", "EQUAL_OP", "MOD_OP", "AND_OP", "OR_OP", "NOT_OP",
+            "READ", "SUCC", "PRED", "CHR", "ORD", "EOF",
+            "BLOCK_BEGIN", "COLON", "SEMI_COLON", "DOT", "COMMA", "LPAREN",
+            "RPAREN", "PLUS_OP", "MINUS_OP", "MULTIPLY_OP", "DIVIDE_OP", "INTEGER",
+            "CHAR", "STRING", "IDENTIFIER",
+    };
+    static final String[] nonterminals = {
+            "Winzig", "Name", "Consts", "Types", "Dclns", "SubProgs",
+            "Body", "Const", "Consts_1", "ConstValue", "Type", "Types_2",
+            "LitList", "LitList_3", "Fcn", "SubProgs_4", "Params", "Dcln",
+            "Params_5", "Dclns_6", "Dcln_7", "Statement", "Body_8", "Assignment",
+            "OutExp", "Statement_9", "Expression", "Statement_10", "Statement_11", "ForStat",
+            "ForExp", "Statement_12", "Caseclauses", "OtherwiseClause", "Statement_13", "StringNode",
+            "Caseclause", "Caseclauses_14", "CaseExpression", "Caseclause_15", "Term", "Factor",
+            "Primary", "Primary_16", "Term_17", "Factor_18", "Assignment_19", "Expression_20",
+            "CaseExpression_21", "Primary_22",
+    };
+    static final String[] labels = {
+            "program", "consts", "const", "types", "type", "lit",
+            "subprogs", "fcn", "params", "dclns", "var", "block",
+            "output", "if", "while", "repeat", "for", "loop",
+            "case", "read", "exit", "return", "<null>", "integer",
+            "string", "case_clause", "..", "otherwise", "assign", "swap",
+            "true", "<=", "<", ">=", ">", "=",
+            "<>", "+", "-", "or", "*", "/",
+            "and", "mod", "not", "eof", "call", "succ",
+            "pred", "chr", "ord",
+    };
+    // nonterminals that mark the tree depth when expanded
+    static final boolean[] marks = {
+            true, false, true, true, true, true, true, true, false, false, true, false, true, false, true, false, true, true, false, false,
+            false, true, false, true, true, false, true, false, false, true, true, false, false, true, false, false, true, false, true, false,
+            true, true, true, false, false, false, false, false, false, false,
+    };
+    static final int[] base = {
+            0, 10, 0, 15, 56, 5, 4, 29, 25, 11, 30, 37, 8, 64, 1, 125, 59, 78, 58, 31,
+            89, 138, 126, 100, 171, 91, 213, 1, 102, 69, 193, 12, 28, 146, 109, 112, 47, 35, 74, 104,
+            233, 253, 273, 118, 92, 46, 31, 171, 65, 0,
+    };
+    static final int[] check = {
+            0, 2, 2, 2, 2, 14, 2, 49, 27, 5, 6, 5, 49, 49, 27, 49, 3, 49, 3, 3,
+            -1, 3, 49, 27, 49, 27, 49, 49, 49, 49, 49, 49, 49, 49, 49, 19, 31, 19, 11, 46,
+            46, 11, 37, 11, 49, 27, 49, 49, 49, 49, 49, 49, 49, 45, 37, 12, 31, 4, 45, 45,
+            4, 45, 4, 45, 9, 9, 1, 9, 45, 8, 45, 8, 45, 45, 45, 45, 45, 45, 45, 45,
+            45, 32, 32, 48, 32, 7, 10, 19, 37, 37, 45, 37, 45, 11, 45, 45, 45, 45, 45, 44,
+            36, 36, 18, 36, 44, 44, 18, 44, 48, 44, 13, 48, 13, 29, 44, 16, 44, 29, 44, 44,
+            44, 44, 44, 44, 28, 29, 44, 38, 38, 15, 38, 15, 20, 22, 17, 20, 44, 25, 44, 25,
+            44, 44, 44, 21, 21, 21, 28, 39, 21, 21, 39, 21, 21, 33, 21, 34, 23, 34, 21, 21,
+            21, 21, 21, 21, 43, 33, 43, 35, -1, -1, 22, -1, -1, -1, 21, -1, -1, -1, 47, -1,
+            -1, -1, 21, 47, 47, -1, 47, -1, 47, -1, -1, -1, -1, 47, 21, 47, -1, 47, 47, 47,
+            47, 47, 47, -1, -1, -1, 24, -1, 24, 24, 24, 24, 24, -1, -1, 47, -1, 47, 24, 47,
+            24, 24, -1, -1, 24, 24, 24, 24, 30, -1, 30, 30, 30, 30, 30, -1, -1, 30, -1, -1,
+            30, -1, 30, 30, -1, -1, 30, 30, 26, 30, 26, 26, 26, 26, 26, -1, -1, -1, -1, -1,
+            26, -1, 26, 26, -1, -1, 26, 26, 40, 26, 40, 40, 40, 40, 40, -1, -1, -1, -1, -1,
+            40, -1, 40, 40, -1, -1, 40, 40, 41, 40, 41, 41, 41, 41, 41, -1, -1, -1, -1, -1,
+            41, -1, 41, 41, -1, -1, 41, 41, 42, 41, 42, 42, 42, 42, 42, -1, -1, -1, -1, -1,
+            42, -1, 42, 42, -1, -1, 42, 42, -1, 42,
+    };
+    static final int[] next = {
+            0, 3, 2, 3, 3, 22, 3, 112, 55, 8, 9, 8, 112, 112, 54, 112, 5, 112, 4, 5,
+            0, 5, 112, 55, 112, 55, 112, 112, 112, 112, 112, 112, 112, 112, 112, 30, 63, 30, 18, 102,
+            101, 18, 72, 18, 112, 55, 112, 113, 112, 112, 112, 112, 112, 100, 72, 19, 62, 6, 100, 100,
+            7, 100, 7, 100, 13, 14, 1, 15, 100, 12, 100, 11, 100, 100, 100, 100, 100, 100, 99, 98,
+            100, 64, 64, 111, 64, 10, 16, 29, 71, 71, 100, 71, 100, 17, 100, 100, 100, 96, 97, 95,
+            70, 70, 27, 70, 95, 95, 28, 95, 110, 95, 20, 110, 21, 59, 95, 25, 95, 59, 95, 95,
+            95, 95, 95, 95, 57, 58, 94, 73, 73, 23, 73, 24, 32, 47, 26, 31, 95, 51, 95, 52,
+            95, 92, 93, 43, 44, 45, 56, 75, 34, 35, 74, 45, 36, 66, 40, 67, 48, 68, 37, 38,
+            45, 39, 45, 42, 90, 65, 91, 69, 0, 0, 46, 0, 0, 0, 41, 0, 0, 0, 103, 0,
+            0, 0, 45, 103, 103, 0, 103, 0, 103, 0, 0, 0, 0, 103, 33, 103, 0, 104, 109, 105,
+            106, 107, 108, 0, 0, 0, 49, 0, 49, 49, 49, 49, 49, 0, 0, 103, 0, 103, 49, 103,
+            49, 49, 0, 0, 49, 49, 50, 49, 60, 0, 60, 60, 60, 60, 60, 0, 0, 61, 0, 0,
+            60, 0, 60, 60, 0, 0, 60, 60, 53, 60, 53, 53, 53, 53, 53, 0, 0, 0, 0, 0,
+            53, 0, 53, 53, 0, 0, 53, 53, 76, 53, 76, 76, 76, 76, 76, 0, 0, 0, 0, 0,
+            76, 0, 76, 76, 0, 0, 76, 76, 77, 76, 77, 77, 77, 77, 77, 0, 0, 0, 0, 0,
+            77, 0, 77, 77, 0, 0, 77, 77, 80, 77, 86, 87, 88, 89, 81, 0, 0, 0, 0, 0,
+            85, 0, 79, 78, 0, 0, 83, 84, 0, 82,
+    };
+    static final int[] rhsStart = {
+            0, 12, 13, 19, 21, 27, 29, 35, 37, 40, 46, 51, 54, 54, 55, 56, 57, 62, 65, 65,
+            71, 74, 74, 90, 92, 92, 96, 102, 105, 105, 108, 108, 111, 111, 113, 120, 127, 133, 140, 151,
+            157, 165, 172, 175, 179, 181, 183, 186, 186, 189, 192, 195, 198, 198, 201, 203, 203, 206, 206, 208,
+            210, 212, 214, 217, 217, 220, 224, 225, 228, 228, 229, 235, 238, 238, 241, 244, 244, 247, 250, 254,
+            257, 261, 264, 267, 269, 271, 275, 281, 287, 293, 299, 302, 302, 306, 310, 314, 314, 318, 322, 326,
+            330, 330, 333, 336, 336, 339, 342, 345, 348, 351, 354, 354, 357, 357, 362,
+    };
+    static final int[] rhs = {
+            107, 108, 45, 58, 63, 62, 61, 60, 59, 43, 58, 0, 56, 107, 109, 44, 65, 64, 2, 107,
+            109, 107, 111, 68, 44, 67, 3, 107, 111, 107, 117, 76, 44, 74, 1, 107, 117, 107, 114, 72,
+            107, 119, 7, 79, 78, 6, 107, 110, 66, 31, 58, 65, 64, 46, 53, 54, 58, 107, 112, 69,
+            31, 58, 68, 44, 67, 107, 113, 48, 70, 58, 47, 70, 58, 46, 107, 115, 44, 58, 63, 61,
+            60, 59, 44, 58, 43, 48, 73, 47, 58, 4, 72, 71, 107, 116, 75, 74, 107, 118, 58, 43,
+            77, 58, 75, 74, 44, 76, 44, 74, 77, 58, 46, 107, 80, 107, 120, 48, 82, 81, 47, 10,
+            107, 121, 84, 78, 12, 83, 11, 107, 122, 78, 15, 83, 14, 107, 123, 83, 22, 85, 78, 20,
+            107, 124, 78, 48, 86, 44, 87, 44, 86, 47, 21, 107, 125, 24, 88, 78, 23, 107, 126, 7,
+            90, 89, 17, 83, 16, 107, 127, 48, 91, 58, 47, 36, 107, 128, 25, 107, 129, 83, 5, 107,
+            63, 107, 130, 79, 78, 44, 107, 103, 58, 107, 131, 83, 107, 132, 92, 82, 81, 46, 107, 104,
+            97, 78, 13, 85, 78, 44, 107, 80, 107, 130, 107, 83, 107, 138, 88, 78, 44, 94, 44, 93,
+            107, 135, 78, 19, 107, 91, 58, 46, 55, 107, 133, 78, 43, 96, 95, 94, 44, 93, 107, 105,
+            66, 96, 95, 46, 107, 101, 98, 107, 102, 99, 107, 146, 99, 50, 107, 99, 49, 107, 152, 99,
+            35, 107, 153, 41, 107, 106, 58, 107, 53, 107, 54, 107, 48, 83, 47, 107, 155, 48, 83, 47,
+            37, 107, 156, 48, 83, 47, 38, 107, 157, 48, 83, 47, 39, 107, 158, 48, 83, 47, 40, 100,
+            83, 46, 101, 145, 98, 49, 101, 146, 98, 50, 101, 147, 98, 34, 102, 148, 99, 51, 102, 149,
+            99, 52, 102, 150, 99, 33, 102, 151, 99, 32, 136, 83, 9, 137, 58, 8, 139, 97, 26, 140,
+            97, 28, 141, 97, 29, 142, 97, 30, 143, 97, 31, 144, 97, 27, 134, 66, 18, 154, 48, 100,
+            83, 47,
+    };
+}
@@ -1,45 +1,173 @@
 package com.yumantha;
 
 import java.util.ArrayList;
-import java.util.Stack;
 
 public class Parser {
+    private static final int RELATIONAL = 1;
+    private static final int ADDITIVE = 2;
+    private static final int MULTIPLICATIVE = 3;
+
+    // 0 for tokens that are not binary operators
+    private static final int[] precedence = new int[Token.Type.values().length];
+    private static final String[] operatorLabel = new String[Token.Type.values().length];
+
+    static {
+        addOperator(Token.Type.LESS_EQUAL_OP, RELATIONAL, "<=");
+        addOperator(Token.Type.LESS_OP, RELATIONAL, "<");
+        addOperator(Token.Type.GREATER_EQUAL_OP, RELATIONAL, ">=");
+        addOperator(Token.Type.GREATER_OP, RELATIONAL, ">");
+        addOperator(Token.Type.EQUAL_OP, RELATIONAL, "=");
+        addOperator(Token.Type.NOT_EQUAL_OP, RELATIONAL, "<>");
+        addOperator(Token.Type.PLUS_OP, ADDITIVE, "+");
+        addOperator(Token.Type.MINUS_OP, ADDITIVE, "-");
+        addOperator(Token.Type.OR_OP, ADDITIVE, "or");
+        addOperator(Token.Type.MULTIPLY_OP, MULTIPLICATIVE, "*");
+        addOperator(Token.Type.DIVIDE_OP, MULTIPLICATIVE, "/");
+        addOperator(Token.Type.AND_OP, MULTIPLICATIVE, "and");
+        addOperator(Token.Type.MOD_OP, MULTIPLICATIVE, "mod");
+    }
+
+    // where panic-mode recovery stops skipping, for each kind of construct it recovers
+    private static final boolean[] statementSync = tokenSet(Token.Type.SEMI_COLON, Token.Type.END, Token.Type.POOL, Token.Type.UNTIL);
+    private static final boolean[] declarationSync = tokenSet(Token.Type.SEMI_COLON, Token.Type.BEGIN, Token.Type.FUNCTION);
+    private static final boolean[] clauseSync = tokenSet(Token.Type.SEMI_COLON, Token.Type.END, Token.Type.OTHERWISE);
+    // tokens that can start a statement other than the empty one
+    private static final boolean[] statementStart = tokenSet(Token.Type.IDENTIFIER, Token.Type.OUTPUT, Token.Type.IF,
+            Token.Type.WHILE, Token.Type.REPEAT, Token.Type.FOR, Token.Type.LOOP, Token.Type.CASE, Token.Type.READ,
+            Token.Type.EXIT, Token.Type.RETURN, Token.Type.BEGIN);
+    // skipping steps over whole nested constructs, so their closing keywords do not stop it
+    private static final boolean[] opensNesting = tokenSet(Token.Type.BEGIN, Token.Type.CASE, Token.Type.LOOP, Token.Type.REPEAT);
+    private static final boolean[] closesNesting = tokenSet(Token.Type.END, Token.Type.POOL, Token.Type.UNTIL);
+
+    private static boolean[] tokenSet(Token.Type... types) {
+        boolean[] set = new boolean[Token.Type.values().length];
+
+        for (Token.Type t_type : types) {
+            set[t_type.ordinal()] = true;
+        }
+
+        return set;
+    }
+
+    private static void addOperator(Token.Type t_type, int level, String label) {
+        precedence[t_type.ordinal()] = level;
+        operatorLabel[t_type.ordinal()] = label;
+    }
+
     public static ASTNode parseWinzig(ArrayList<Token> input) {
-        Parser parser = new Parser(input);
+        return parseWinzig(new TokenListStream(input));
+    }
+
+    public static ASTNode parseWinzig(TokenStream input) {
+        ASTNodeBuilder builder = new ASTNodeBuilder(input.names(), input);
+
+        if (parseWinzig(input, builder)) {
+            return builder.root();
+        } else {
+            return null;
+        }
+    }
+
+    public static ASTArena parseWinzigArena(TokenStream input) {
+        return parseWinzigArena(input, 0);
+    }
+
+    // With the number of tokens, when known, to size the arena: programs have about as many nodes
+    // as tokens, so it then rarely has to grow.
+    public static ASTArena parseWinzigArena(TokenStream input, int tokens) {
+        ASTArena arena = new ASTArena(input.names(), Math.max(64, tokens + tokens / 8));
+
+        if (parseWinzig(input, arena)) {
+            arena.trim();
+            return arena;
+        } else {
+            return null;
+        }
+    }
+
+    // Returns true when the builder ends up holding exactly one finished tree.
+    public static boolean parseWinzig(TokenStream input, TreeBuilder tree) {
+        return parseWinzig(input, tree, (SpanListener) null);
+    }
+
+    public static boolean parseWinzig(TokenStream input, TreeBuilder tree, SpanListener spans) {
+        Parser parser = new Parser(input, tree, spans, null);
         parser.parseWinzig();
         parser.readToken(Token.Type.EOF);
 
-        if (parser.stack.size() == 1) {
-            return parser.stack.get(0);
+        return tree.depth() == 1;
+    }
+
+    // Parses with panic-mode recovery: a syntax error is reported to diagnostics, the tokens up to
+    // the next ; or closing keyword are skipped and parsing goes on, so one pass finds every error.
+    // Returns the tree only when there were none.
+    public static ASTNode parseWinzig(TokenStream input, Diagnostics diagnostics) {
+        ASTNodeBuilder builder = new ASTNodeBuilder(input.names(), input);
+
+        if (parseWinzig(input, builder, diagnostics)) {
+            return builder.root();
         } else {
             return null;
         }
     }
 
-    private ArrayList<Token> input;
-    private int inputIndex;
-    private Token currentToken;
-    private Token eof;
-    private Stack<ASTNode> stack;
+    public static boolean parseWinzig(TokenStream input, TreeBuilder tree, Diagnostics diagnostics) {
+        Parser parser = new Parser(input, tree, null, diagnostics);
 
-    private Parser(ArrayList<Token> input) {
-        this.input = input;
-        this.inputIndex = 0;
+        try {
+            parser.parseWinzig();
+            parser.readToken(Token.Type.EOF);
+        } catch (ParseError e) {
+            // an error nothing could recover from, or one past the limit
+            if (!e.reported && e.tokenIndex != parser.lastErrorIndex) {
+                diagnostics.report(e.getMessage());
+            }
+
+            return false;
+        }
 
-        if (input.isEmpty()) {
-            this.eof = new Token(Token.Type.EOF, "<EOF>", 0, 0);
+        return diagnostics.isEmpty() && tree.depth() == 1;
+    }
+
+    // Parses a single fcn or block starting at the first token of input and stops right after it,
+    // without looking at the token that follows.
+    static boolean parseFragment(TokenStream input, TreeBuilder tree, SpanListener spans, boolean fcn) {
+        Parser parser = new Parser(input, tree, spans, null);
+        parser.currentType = input.type();
+
+        if (fcn) {
+            parser.parseFcn();
         } else {
-            Token last = input.get(input.size() - 1);
-            this.eof = new Token(Token.Type.EOF, "<EOF>", last.line, last.endCol);
+            parser.parseBody();
         }
 
-        this.stack = new Stack<ASTNode>();
+        return tree.depth() == 1;
+    }
+
+    private TokenStream input;
+    private NamePool names;
+    private Token.Type currentType;
+    private int tokenIndex;
+    private TreeBuilder tree;
+    private SpanListener spans;
+    // null to stop at the first error
+    private Diagnostics diagnostics;
+    private int lastErrorIndex;
+
+    private Parser(TokenStream input, TreeBuilder tree, SpanListener spans, Diagnostics diagnostics) {
+        this.input = input;
+        this.names = input.names();
+        this.tokenIndex = 0;
+        this.tree = tree;
+        this.spans = spans;
+        this.diagnostics = diagnostics;
+        this.lastErrorIndex = -1;
     }
 
     private void parseWinzig() {
-        currentToken = checkFirst();
+        currentType = input.type();
 
-        if (currentToken.t_type == Token.Type.PROG) {
+        if (currentType == Token.Type.PROG) {
             int n = 0;
 
             readToken(Token.Type.PROG);
@@ -55,18 +183,18 @@ public class Parser {
 
             buildTree("program", n);
         } else {
-            throw new RuntimeException("Parse error near line: " + currentToken.line + " col: " + currentToken.col + " \nExpected: " + Token.Type.PROG);
+            throw error("Expected: " + Token.Type.PROG);
         }
     }
 
     private int parseConsts() {
-        if (currentToken.t_type == Token.Type.CONST) {
+        if (currentType == Token.Type.CONST) {
             int n = 0;
 
             readToken(Token.Type.CONST);
             n += parseConst();
 
-            while (currentToken.t_type == Token.Type.COMMA) {
+            while (currentType == Token.Type.COMMA) {
                 readToken(Token.Type.COMMA);
                 n += parseConst();
             }
@@ -94,30 +222,28 @@ public class Parser {
     }
 
     private int parseConstValue() {
-        if (currentToken.t_type == Token.Type.INTEGER) {
+        if (currentType == Token.Type.INTEGER) {
             readToken(Token.Type.INTEGER);
             return 1;
-        } else if (currentToken.t_type == Token.Type.CHAR) {
+        } else if (currentType == Token.Type.CHAR) {
             readToken(Token.Type.CHAR);
             return 1;
-        } else if (currentToken.t_type == Token.Type.IDENTIFIER) {
+        } else if (currentType == Token.Type.IDENTIFIER) {
             return parseName();
         } else {
-            throw new RuntimeException("Parse error near line: " + currentToken.line + " col: " + currentToken.col + " \nExpected: " + Token.Type.INTEGER + ", " + Token.Type.CHAR + " or " + Token.Type.IDENTIFIER);
+            throw error("Expected: " + Token.Type.INTEGER + ", " + Token.Type.CHAR + " or " + Token.Type.IDENTIFIER);
         }
     }
 
     private int parseTypes() {
-        if (currentToken.t_type == Token.Type.TYPE) {
+        if (currentType == Token.Type.TYPE) {
             int n = 0;
 
             readToken(Token.Type.TYPE);
-            n += parseType();
-            readToken(Token.Type.SEMI_COLON);
+            n += parseTypeLine();
 
-            while (currentToken.t_type == Token.Type.IDENTIFIER) {
-                n += parseType();
-                readToken(Token.Type.SEMI_COLON);
+            while (currentType == Token.Type.IDENTIFIER) {
+                n += parseTypeLine();
             }
 
             buildTree("types", n);
@@ -129,6 +255,18 @@ public class Parser {
         return 1;
     }
 
+    private int parseTypeLine() {
+        int depth = tree.depth();
+
+        try {
+            int n = parseType();
+            readToken(Token.Type.SEMI_COLON);
+            return n;
+        } catch (ParseError e) {
+            return recoverLine(e, depth, declarationSync);
+        }
+    }
+
     private int parseType() {
         int n = 0;
 
@@ -146,7 +284,7 @@ public class Parser {
         readToken(Token.Type.LPAREN);
         n += parseName();
 
-        while (currentToken.t_type == Token.Type.COMMA) {
+        while (currentType == Token.Type.COMMA) {
             readToken(Token.Type.COMMA);
             n += parseName();
         }
@@ -160,7 +298,7 @@ public class Parser {
     private int parseSubProgs() {
         int n = 0;
 
-        while (currentToken.t_type == Token.Type.FUNCTION) {
+        while (currentType == Token.Type.FUNCTION) {
             n += parseFcn();
         }
 
@@ -169,6 +307,7 @@ public class Parser {
     }
 
     private int parseFcn() {
+        int start = input.offset();
         int n = 0;
 
         readToken(Token.Type.FUNCTION);
@@ -187,6 +326,7 @@ public class Parser {
         readToken(Token.Type.SEMI_COLON);
 
         buildTree("fcn", n);
+        recordSpan(start);
         return 1;
     }
 
@@ -195,7 +335,7 @@ public class Parser {
 
         n += parseDcln();
 
-        while (currentToken.t_type == Token.Type.SEMI_COLON) {
+        while (currentType == Token.Type.SEMI_COLON) {
             readToken(Token.Type.SEMI_COLON);
             n += parseDcln();
         }
@@ -205,16 +345,14 @@ public class Parser {
     }
 
     private int parseDclns() {
-        if (currentToken.t_type == Token.Type.VAR) {
+        if (currentType == Token.Type.VAR) {
             int n = 0;
 
             readToken(Token.Type.VAR);
-            n += parseDcln();
-            readToken(Token.Type.SEMI_COLON);
+            n += parseDclnLine();
 
-            while (currentToken.t_type == Token.Type.IDENTIFIER) {
-                n += parseDcln();
-                readToken(Token.Type.SEMI_COLON);
+            while (currentType == Token.Type.IDENTIFIER) {
+                n += parseDclnLine();
             }
 
             buildTree("dclns", n);
@@ -227,12 +365,24 @@ public class Parser {
         return 1;
     }
 
+    private int parseDclnLine() {
+        int depth = tree.depth();
+
+        try {
+            int n = parseDcln();
+            readToken(Token.Type.SEMI_COLON);
+            return n;
+        } catch (ParseError e) {
+            return recoverLine(e, depth, declarationSync);
+        }
+    }
+
     private int parseDcln() {
         int n = 0;
 
         n += parseName();
 
-        while (currentToken.t_type == Token.Type.COMMA) {
+        while (currentType == Token.Type.COMMA) {
             readToken(Token.Type.COMMA);
             n += parseName();
         }
@@ -245,33 +395,68 @@ public class Parser {
     }
 
     private int parseBody() {
+        int start = input.offset();
         int n = 0;
 
         readToken(Token.Type.BEGIN);
-        n += parseStatement();
+        n += parseListedStatement();
 
-        while (currentToken.t_type == Token.Type.SEMI_COLON) {
-            readToken(Token.Type.SEMI_COLON);
-            n += parseStatement();
+        while (nextStatement(Token.Type.END)) {
+            n += parseListedStatement();
         }
 
         readToken(Token.Type.END);
 
         buildTree("block", n);
+        recordSpan(start);
         return 1;
     }
 
+    // A statement in a list separated by ;, recovered from on its own.
+    private int parseListedStatement() {
+        int depth = tree.depth();
+
+        try {
+            return parseStatement();
+        } catch (ParseError e) {
+            return recover(e, depth, statementSync);
+        }
+    }
+
+    // Reads the ; before the next statement of a list closed by closer, if there is one. When
+    // recovering, a missing ; before something that starts a statement is reported and taken as
+    // read, and anything else before the end of the list is reported and skipped.
+    private boolean nextStatement(Token.Type closer) {
+        if (currentType == Token.Type.SEMI_COLON) {
+            readToken(Token.Type.SEMI_COLON);
+            return true;
+        }
+
+        if (diagnostics == null || statementSync[currentType.ordinal()] || atEnd()) {
+            return false;
+        }
+
+        if (statementStart[currentType.ordinal()]) {
+            report(error("Expected " + Token.Type.SEMI_COLON));
+            return true;
+        }
+
+        report(error("Expected " + closer));
+        skipTo(statementSync);
+        return nextStatement(closer);
+    }
+
     private int parseStatement() {
-        if (currentToken.t_type == Token.Type.IDENTIFIER) {
+        if (currentType == Token.Type.IDENTIFIER) {
             return parseAssignment();
-        } else if (currentToken.t_type == Token.Type.OUTPUT) {
+        } else if (currentType == Token.Type.OUTPUT) {
             int n = 0;
 
             readToken(Token.Type.OUTPUT);
             readToken(Token.Type.LPAREN);
             n += parseOutExp();
 
-            while (currentToken.t_type == Token.Type.COMMA) {
+            while (currentType == Token.Type.COMMA) {
                 readToken(Token.Type.COMMA);
                 n += parseOutExp();
             }
@@ -280,7 +465,7 @@ public class Parser {
 
             buildTree("output", n);
             return 1;
-        } else if (currentToken.t_type == Token.Type.IF) {
+        } else if (currentType == Token.Type.IF) {
             int n = 0;
 
             readToken(Token.Type.IF);
@@ -288,14 +473,14 @@ public class Parser {
             readToken(Token.Type.THEN);
             n += parseStatement();
 
-            if (currentToken.t_type == Token.Type.ELSE) {
+            if (currentType == Token.Type.ELSE) {
                 readToken(Token.Type.ELSE);
                 n += parseStatement();
             }
 
             buildTree("if", n);
             return 1;
-        } else if (currentToken.t_type == Token.Type.WHILE) {
+        } else if (currentType == Token.Type.WHILE) {
             int n = 0;
 
             readToken(Token.Type.WHILE);
@@ -305,15 +490,14 @@ public class Parser {
 
             buildTree("while", n);
             return 1;
-        } else if (currentToken.t_type == Token.Type.REPEAT) {
+        } else if (currentType == Token.Type.REPEAT) {
             int n = 0;
 
             readToken(Token.Type.REPEAT);
-            n += parseStatement();
+            n += parseListedStatement();
 
-            while (currentToken.t_type == Token.Type.SEMI_COLON) {
-                readToken(Token.Type.SEMI_COLON);
-                n += parseStatement();
+            while (nextStatement(Token.Type.UNTIL)) {
+                n += parseListedStatement();
             }
 
             readToken(Token.Type.UNTIL);
@@ -321,7 +505,7 @@ public class Parser {
 
             buildTree("repeat", n);
             return 1;
-        } else if (currentToken.t_type == Token.Type.FOR) {
+        } else if (currentType == Token.Type.FOR) {
             int n = 0;
 
             readToken(Token.Type.FOR);
@@ -336,22 +520,21 @@ public class Parser {
 
             buildTree("for", n);
             return 1;
-        } else if (currentToken.t_type == Token.Type.LOOP) {
+        } else if (currentType == Token.Type.LOOP) {
             int n = 0;
 
             readToken(Token.Type.LOOP);
-            n += parseStatement();
+            n += parseListedStatement();
 
-            while (currentToken.t_type == Token.Type.SEMI_COLON) {
-                readToken(Token.Type.SEMI_COLON);
-                n += parseStatement();
+            while (nextStatement(Token.Type.POOL)) {
+                n += parseListedStatement();
             }
 
             readToken(Token.Type.POOL);
 
             buildTree("loop", n);
             return 1;
-        } else if (currentToken.t_type == Token.Type.CASE) {
+        } else if (currentType == Token.Type.CASE) {
             int n = 0;
 
             readToken(Token.Type.CASE);
@@ -363,14 +546,14 @@ public class Parser {
 
             buildTree("case", n);
             return 1;
-        } else if (currentToken.t_type == Token.Type.READ) {
+        } else if (currentType == Token.Type.READ) {
             int n = 0;
 
             readToken(Token.Type.READ);
             readToken(Token.Type.LPAREN);
             n += parseName();
 
-            while (currentToken.t_type == Token.Type.COMMA) {
+            while (currentType == Token.Type.COMMA) {
                 readToken(Token.Type.COMMA);
                 n += parseName();
             }
@@ -379,14 +562,14 @@ public class Parser {
 
             buildTree("read", n);
             return 1;
-        } else if (currentToken.t_type == Token.Type.EXIT) {
+        } else if (currentType == Token.Type.EXIT) {
             int n = 0;
 
             readToken(Token.Type.EXIT);
 
             buildTree("exit", n);
             return 1;
-        } else if (currentToken.t_type == Token.Type.RETURN) {
+        } else if (currentType == Token.Type.RETURN) {
             int n = 0;
 
             readToken(Token.Type.RETURN);
@@ -394,7 +577,7 @@ public class Parser {
 
             buildTree("return", n);
             return 1;
-        } else if (currentToken.t_type == Token.Type.BEGIN) {
+        } else if (currentType == Token.Type.BEGIN) {
             return parseBody();
         } else {
             int n = 0;
@@ -404,25 +587,25 @@ public class Parser {
     }
 
     private int parseOutExp() {
-        if ((currentToken.t_type == Token.Type.MINUS_OP) ||
-                (currentToken.t_type == Token.Type.PLUS_OP) ||
-                (currentToken.t_type == Token.Type.NOT_OP) ||
-                (currentToken.t_type == Token.Type.EOF) ||
-                (currentToken.t_type == Token.Type.IDENTIFIER) ||
-                (currentToken.t_type == Token.Type.INTEGER) ||
-                (currentToken.t_type == Token.Type.CHAR) ||
-                (currentToken.t_type == Token.Type.LPAREN) ||
-                (currentToken.t_type == Token.Type.SUCC) ||
-                (currentToken.t_type == Token.Type.PRED) ||
-                (currentToken.t_type == Token.Type.CHR) ||
-                (currentToken.t_type == Token.Type.ORD)) {
+        if ((currentType == Token.Type.MINUS_OP) ||
+                (currentType == Token.Type.PLUS_OP) ||
+                (currentType == Token.Type.NOT_OP) ||
+                (currentType == Token.Type.EOF) ||
+                (currentType == Token.Type.IDENTIFIER) ||
+                (currentType == Token.Type.INTEGER) ||
+                (currentType == Token.Type.CHAR) ||
+                (currentType == Token.Type.LPAREN) ||
+                (currentType == Token.Type.SUCC) ||
+                (currentType == Token.Type.PRED) ||
+                (currentType == Token.Type.CHR) ||
+                (currentType == Token.Type.ORD)) {
             int n = 0;
 
             n += parseExpression();
 
             buildTree("integer", n);
             return 1;
-        } else if (currentToken.t_type == Token.Type.STRING) {
+        } else if (currentType == Token.Type.STRING) {
             int n = 0;
 
             n += parseStringNode();
@@ -430,7 +613,7 @@ public class Parser {
             buildTree("string", n);
             return 1;
         } else {
-            throw new RuntimeException("Parse error near line: " + currentToken.line + " col: " + currentToken.col + " \nExpected: "
+            throw error("Expected: "
                     + Token.Type.MINUS_OP + ", "
                     + Token.Type.PLUS_OP + ", "
                     + Token.Type.NOT_OP + ", "
@@ -456,25 +639,35 @@ public class Parser {
     private int parseCaseClauses() {
         int n = 0;
 
-        n += parseCaseClause();
-        readToken(Token.Type.SEMI_COLON);
+        n += parseCaseClauseLine();
 
-        while ((currentToken.t_type == Token.Type.INTEGER) ||
-                (currentToken.t_type == Token.Type.CHAR) ||
-                (currentToken.t_type == Token.Type.IDENTIFIER)) {
-            n += parseCaseClause();
-            readToken(Token.Type.SEMI_COLON);
+        while ((currentType == Token.Type.INTEGER) ||
+                (currentType == Token.Type.CHAR) ||
+                (currentType == Token.Type.IDENTIFIER)) {
+            n += parseCaseClauseLine();
         }
 
         return n;
     }
 
+    private int parseCaseClauseLine() {
+        int depth = tree.depth();
+
+        try {
+            int n = parseCaseClause();
+            readToken(Token.Type.SEMI_COLON);
+            return n;
+        } catch (ParseError e) {
+            return recoverLine(e, depth, clauseSync);
+        }
+    }
+
     private int parseCaseClause() {
         int n = 0;
 
         n += parseCaseExpression();
 
-        while (currentToken.t_type == Token.Type.COMMA) {
+        while (currentType == Token.Type.COMMA) {
             readToken(Token.Type.COMMA);
             n += parseCaseExpression();
         }
@@ -491,7 +684,7 @@ public class Parser {
 
         n += parseConstValue();
 
-        if (currentToken.t_type == Token.Type.CASE_DOTS) {
+        if (currentType == Token.Type.CASE_DOTS) {
             readToken(Token.Type.CASE_DOTS);
             n += parseConstValue();
 
@@ -503,7 +696,7 @@ public class Parser {
     }
 
     private int parseOtherwiseClause() {
-        if (currentToken.t_type == Token.Type.OTHERWISE) {
+        if (currentType == Token.Type.OTHERWISE) {
             int n = 0;
 
             readToken(Token.Type.OTHERWISE);
@@ -521,25 +714,25 @@ public class Parser {
 
         n += parseName();
 
-        if (currentToken.t_type == Token.Type.ASSIGN) {
+        if (currentType == Token.Type.ASSIGN) {
             readToken(Token.Type.ASSIGN);
             n += parseExpression();
 
             buildTree("assign", n);
             return 1;
-        } else if (currentToken.t_type == Token.Type.SWAP) {
+        } else if (currentType == Token.Type.SWAP) {
             readToken(Token.Type.SWAP);
             n += parseName();
 
             buildTree("swap", n);
             return 1;
         } else {
-            throw new RuntimeException("Parse error near line: " + currentToken.line + " col: " + currentToken.col + " \nExpected: " + Token.Type.ASSIGN + " or " + Token.Type.SWAP);
+            throw error("Expected: " + Token.Type.ASSIGN + " or " + Token.Type.SWAP);
         }
     }
 
     private int parseForStat() {
-        if (currentToken.t_type == Token.Type.IDENTIFIER) {
+        if (currentType == Token.Type.IDENTIFIER) {
             return parseAssignment();
         } else {
             int n = 0;
@@ -550,18 +743,18 @@ public class Parser {
     }
 
     private int parseForExp() {
-        if ((currentToken.t_type == Token.Type.MINUS_OP) ||
-                (currentToken.t_type == Token.Type.PLUS_OP) ||
-                (currentToken.t_type == Token.Type.NOT_OP) ||
-                (currentToken.t_type == Token.Type.EOF) ||
-                (currentToken.t_type == Token.Type.IDENTIFIER) ||
-                (currentToken.t_type == Token.Type.INTEGER) ||
-                (currentToken.t_type == Token.Type.CHAR) ||
-                (currentToken.t_type == Token.Type.LPAREN) ||
-                (currentToken.t_type == Token.Type.SUCC) ||
-                (currentToken.t_type == Token.Type.PRED) ||
-                (currentToken.t_type == Token.Type.CHR) ||
-                (currentToken.t_type == Token.Type.ORD)) {
+        if ((currentType == Token.Type.MINUS_OP) ||
+                (currentType == Token.Type.PLUS_OP) ||
+                (currentType == Token.Type.NOT_OP) ||
+                (currentType == Token.Type.EOF) ||
+                (currentType == Token.Type.IDENTIFIER) ||
+                (currentType == Token.Type.INTEGER) ||
+                (currentType == Token.Type.CHAR) ||
+                (currentType == Token.Type.LPAREN) ||
+                (currentType == Token.Type.SUCC) ||
+                (currentType == Token.Type.PRED) ||
+                (currentType == Token.Type.CHR) ||
+                (currentType == Token.Type.ORD)) {
             return parseExpression();
         } else {
             int n = 0;
@@ -572,145 +765,45 @@ public class Parser {
     }
 
     private int parseExpression() {
-        int n = 0;
-
-        n += parseTerm();
-
-        if (currentToken.t_type == Token.Type.LESS_EQUAL_OP) {
-            readToken(Token.Type.LESS_EQUAL_OP);
-            n += parseTerm();
-
-            buildTree("<=", n);
-            return 1;
-        } else if (currentToken.t_type == Token.Type.LESS_OP) {
-            readToken(Token.Type.LESS_OP);
-            n += parseTerm();
-
-            buildTree("<", n);
-            return 1;
-        } else if (currentToken.t_type == Token.Type.GREATER_EQUAL_OP) {
-            readToken(Token.Type.GREATER_EQUAL_OP);
-            n += parseTerm();
-
-            buildTree(">=", n);
-            return 1;
-        } else if (currentToken.t_type == Token.Type.GREATER_OP) {
-            readToken(Token.Type.GREATER_OP);
-            n += parseTerm();
-
-            buildTree(">", n);
-            return 1;
-        } else if (currentToken.t_type == Token.Type.EQUAL_OP) {
-            readToken(Token.Type.EQUAL_OP);
-            n += parseTerm();
-
-            buildTree("=", n);
-            return 1;
-        } else if (currentToken.t_type == Token.Type.NOT_EQUAL_OP) {
-            readToken(Token.Type.NOT_EQUAL_OP);
-            n += parseTerm();
-
-            buildTree("<>", n);
-            return 1;
-        }
-
-        return n;
+        return parseBinary(RELATIONAL);
     }
 
-    private int parseTerm() {
+    // Precedence climbing over the operator table. Term and Factor operators are left-associative;
+    // a relational operator joins exactly two Terms, so at most one is consumed per Expression.
+    private int parseBinary(int minPrecedence) {
         int n = 0;
 
-        n += parseFactor();
-
-        if ((currentToken.t_type == Token.Type.PLUS_OP) ||
-                (currentToken.t_type == Token.Type.MINUS_OP) ||
-                (currentToken.t_type == Token.Type.OR_OP)) {
-            while ((currentToken.t_type == Token.Type.PLUS_OP) ||
-                    (currentToken.t_type == Token.Type.MINUS_OP) ||
-                    (currentToken.t_type == Token.Type.OR_OP)) {
-                parseTermInternal(n);
-            }
-            return 1;
-        } else {
-            return n;
-        }
-    }
-
-    private void parseTermInternal(int n) {
-        if (currentToken.t_type == Token.Type.PLUS_OP) {
-            readToken(Token.Type.PLUS_OP);
-            n += parseFactor();
+        n += parsePrimary();
 
-            buildTree("+", n);
-        } else if (currentToken.t_type == Token.Type.MINUS_OP) {
-            readToken(Token.Type.MINUS_OP);
-            n += parseFactor();
+        while (precedence[currentType.ordinal()] >= minPrecedence) {
+            Token.Type operator = currentType;
+            int operatorPrecedence = precedence[operator.ordinal()];
 
-            buildTree("-", n);
-        } else if (currentToken.t_type == Token.Type.OR_OP) {
-            readToken(Token.Type.OR_OP);
-            n += parseFactor();
+            readToken(operator);
+            n += parseBinary(operatorPrecedence + 1);
 
-            buildTree("or", n);
-        }
-    }
+            buildTree(operatorLabel[operator.ordinal()], n);
+            n = 1;
 
-    private int parseFactor() {
-        int n = 0;
-
-        n += parsePrimary();
-
-        if ((currentToken.t_type == Token.Type.MULTIPLY_OP) ||
-                (currentToken.t_type == Token.Type.DIVIDE_OP) ||
-                (currentToken.t_type == Token.Type.AND_OP) ||
-                (currentToken.t_type == Token.Type.MOD_OP)) {
-            while ((currentToken.t_type == Token.Type.MULTIPLY_OP) ||
-                    (currentToken.t_type == Token.Type.DIVIDE_OP) ||
-                    (currentToken.t_type == Token.Type.AND_OP) ||
-                    (currentToken.t_type == Token.Type.MOD_OP)) {
-                parseFactorInternal(n);
+            if (operatorPrecedence == RELATIONAL) {
+                break;
             }
-            return 1;
-        } else {
-            return n;
         }
-    }
-
-    private void parseFactorInternal(int n) {
-        if (currentToken.t_type == Token.Type.MULTIPLY_OP) {
-            readToken(Token.Type.MULTIPLY_OP);
-            n += parsePrimary();
-
-            buildTree("*", n);
-        } else if (currentToken.t_type == Token.Type.DIVIDE_OP) {
-            readToken(Token.Type.DIVIDE_OP);
-            n += parsePrimary();
-
-            buildTree("/", n);
-        } else if (currentToken.t_type == Token.Type.AND_OP) {
-            readToken(Token.Type.AND_OP);
-            n += parsePrimary();
-
-            buildTree("and", n);
-        } else if (currentToken.t_type == Token.Type.MOD_OP) {
-            readToken(Token.Type.MOD_OP);
-            n += parsePrimary();
 
-            buildTree("mod", n);
-        }
+        return n;
     }
 
     private int parsePrimary() {
-        if (currentToken.t_type == Token.Type.IDENTIFIER) {
+        if (currentType == Token.Type.IDENTIFIER) {
             int n = 0;
 
             n += parseName();
 
-            if (currentToken.t_type == Token.Type.LPAREN) {
+            if (currentType == Token.Type.LPAREN) {
                 readToken(Token.Type.LPAREN);
                 n += parseExpression();
 
-                while (currentToken.t_type == Token.Type.COMMA) {
+                while (currentType == Token.Type.COMMA) {
                     readToken(Token.Type.COMMA);
                     n += parseExpression();
                 }
@@ -721,7 +814,7 @@ public class Parser {
                 return 1;
             }
             return n;
-        } else if (currentToken.t_type == Token.Type.MINUS_OP) {
+        } else if (currentType == Token.Type.MINUS_OP) {
             int n = 0;
 
             readToken(Token.Type.MINUS_OP);
@@ -729,10 +822,10 @@ public class Parser {
 
             buildTree("-", n);
             return 1;
-        } else if (currentToken.t_type == Token.Type.PLUS_OP) {
+        } else if (currentType == Token.Type.PLUS_OP) {
             readToken(Token.Type.PLUS_OP);
             return parsePrimary();
-        } else if (currentToken.t_type == Token.Type.NOT_OP) {
+        } else if (currentType == Token.Type.NOT_OP) {
             int n = 0;
 
             readToken(Token.Type.NOT_OP);
@@ -740,27 +833,27 @@ public class Parser {
 
             buildTree("not", n);
             return 1;
-        } else if (currentToken.t_type == Token.Type.EOF) {
+        } else if (currentType == Token.Type.EOF) {
             int n = 0;
 
             readToken(Token.Type.EOF);
 
             buildTree("eof", n);
             return 1;
-        } else if (currentToken.t_type == Token.Type.INTEGER) {
+        } else if (currentType == Token.Type.INTEGER) {
             readToken(Token.Type.INTEGER);
             return 1;
-        } else if (currentToken.t_type == Token.Type.CHAR) {
+        } else if (currentType == Token.Type.CHAR) {
             readToken(Token.Type.CHAR);
             return 1;
-        } else if (currentToken.t_type == Token.Type.LPAREN) {
+        } else if (currentType == Token.Type.LPAREN) {
             int n = 0;
 
             readToken(Token.Type.LPAREN);
-            n += parseExpression();
+            n += parseBinary(RELATIONAL);
             readToken(Token.Type.RPAREN);
             return n;
-        } else if (currentToken.t_type == Token.Type.SUCC) {
+        } else if (currentType == Token.Type.SUCC) {
             int n = 0;
 
             readToken(Token.Type.SUCC);
@@ -770,7 +863,7 @@ public class Parser {
 
             buildTree("succ", n);
             return 1;
-        } else if (currentToken.t_type == Token.Type.PRED) {
+        } else if (currentType == Token.Type.PRED) {
             int n = 0;
 
             readToken(Token.Type.PRED);
@@ -780,7 +873,7 @@ public class Parser {
 
             buildTree("pred", n);
             return 1;
-        } else if (currentToken.t_type == Token.Type.CHR) {
+        } else if (currentType == Token.Type.CHR) {
             int n = 0;
 
             readToken(Token.Type.CHR);
@@ -790,7 +883,7 @@ public class Parser {
 
             buildTree("chr", n);
             return 1;
-        } else if (currentToken.t_type == Token.Type.ORD) {
+        } else if (currentType == Token.Type.ORD) {
             int n = 0;
 
             readToken(Token.Type.ORD);
@@ -801,7 +894,7 @@ public class Parser {
             buildTree("ord", n);
             return 1;
         } else {
-            throw new RuntimeException("Parse error near line: " + currentToken.line + " col: " + currentToken.col + " \nExpected: "
+            throw error("Expected: "
                     + Token.Type.MINUS_OP + ", "
                     + Token.Type.PLUS_OP + ", "
                     + Token.Type.NOT_OP + ", "
@@ -823,48 +916,115 @@ public class Parser {
         return 1;
     }
 
-    private Token checkFirst() {
-        if (inputIndex < input.size()) {
-            return input.get(inputIndex);
+    private void readToken(Token.Type expType) {
+        if (currentType == expType) {
+            if (currentType == Token.Type.IDENTIFIER) {
+                buildLeaf(NamePool.IDENTIFIER);
+            } else if (currentType == Token.Type.STRING) {
+                buildLeaf(NamePool.STRING);
+            } else if (currentType == Token.Type.INTEGER) {
+                buildLeaf(NamePool.INTEGER);
+            } else if (currentType == Token.Type.CHAR) {
+                buildLeaf(NamePool.CHAR);
+            }
+
+            input.advance();
+            tokenIndex++;
+            currentType = input.type();
+        } else {
+            throw error("Expected " + expType);
         }
+    }
 
-        return eof;
+    private ParseError error(String expected) {
+        return new ParseError("Parse error near line: " + input.line() + " col: " + input.col() + " \n" + expected, tokenIndex);
     }
 
-    private void readToken(Token.Type expType) {
-        if (currentToken.t_type == expType) {
-            if (currentToken.t_type == Token.Type.IDENTIFIER) {
-                buildTree(currentToken.text, 0);
-                buildTree("<identifier>", 1);
-            } else if (currentToken.t_type == Token.Type.STRING) {
-                buildTree(currentToken.text, 0);
-                buildTree("<string>", 1);
-            } else if (currentToken.t_type == Token.Type.INTEGER) {
-                buildTree(currentToken.text, 0);
-                buildTree("<integer>", 1);
-            } else if (currentToken.t_type == Token.Type.CHAR) {
-                buildTree(currentToken.text, 0);
-                buildTree("<char>", 1);
+    // Records e, unless an error was already reported at the same token. Throws it on when not
+    // recovering, or when it is past the limit.
+    private void report(ParseError e) {
+        if (diagnostics == null || e.reported) {
+            throw e;
+        }
+
+        if (e.tokenIndex == lastErrorIndex) {
+            return;
+        }
+
+        lastErrorIndex = e.tokenIndex;
+        e.reported = true;
+
+        if (!diagnostics.report(e.getMessage())) {
+            throw e;
+        }
+    }
+
+    // Panic mode: reports e, skips to a token in sync and puts whatever the failed construct had
+    // built since the builder was at depth under one <error> node in its place.
+    private int recover(ParseError e, int depth, boolean[] sync) {
+        report(e);
+        skipTo(sync);
+        buildTree("<error>", tree.depth() - depth);
+        return 1;
+    }
+
+    // recover for a construct ended by ;, which is read if that is where skipping stopped
+    private int recoverLine(ParseError e, int depth, boolean[] sync) {
+        int n = recover(e, depth, sync);
+
+        if (currentType == Token.Type.SEMI_COLON) {
+            readToken(Token.Type.SEMI_COLON);
+        }
+
+        return n;
+    }
+
+    private void skipTo(boolean[] sync) {
+        int nesting = 0;
+
+        while ((nesting > 0 || !sync[currentType.ordinal()]) && !atEnd()) {
+            if (opensNesting[currentType.ordinal()]) {
+                nesting++;
+            } else if (closesNesting[currentType.ordinal()]) {
+                nesting--;
             }
 
-            inputIndex++;
-            currentToken = checkFirst();
-        } else {
-            throw new RuntimeException("Parse error near line: " + currentToken.line + " col: " + currentToken.col + " \nExpected " + expType);
+            input.advance();
+            tokenIndex++;
+            currentType = input.type();
         }
     }
 
-    private void buildTree(String ruleName, int n) {
-        ASTNode node = new ASTNode(ruleName, n);
+    // the eof keyword has the same token type as the end of the input
+    private boolean atEnd() {
+        return currentType == Token.Type.EOF && input.text().equals("<EOF>");
+    }
 
-        for (int i = 0; i < n; i++) {
-            ASTNode childNode = stack.pop();
-            childNode.setParent(node);
+    private void buildLeaf(int wrapper) {
+        tree.buildTree(input.symbol(), 0, tokenIndex);
+        tree.buildTree(wrapper, 1, tokenIndex);
+    }
+
+    private void buildTree(String ruleName, int n) {
+        tree.buildTree(names.intern(ruleName), n, -1);
+    }
 
-            node.addChild(childNode);
+    private void recordSpan(int start) {
+        if (spans != null) {
+            spans.span(start, input.offset());
         }
+    }
+
+    private static class ParseError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
 
-        node.reverseChildren();
-        stack.push(node);
+        // index of the token the error was found at
+        final int tokenIndex;
+        boolean reported;
+
+        ParseError(String message, int tokenIndex) {
+            super(message);
+            this.tokenIndex = tokenIndex;
+        }
     }
 }
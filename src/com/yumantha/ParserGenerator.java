@@ -0,0 +1,736 @@
+package com.yumantha;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+// Builds the LL(1) tables TableParser runs on from the tree-building grammar in
+// grammar/winzigc.grammar and writes them out as ParseTables.java.
+//
+//   java -cp src com.yumantha.ParserGenerator grammar/winzigc.grammar src/com/yumantha/ParseTables.java
+//
+// Groups with *, + and ? become helper nonterminals, immediate left recursion is turned into a
+// right-recursive tail and alternatives sharing a prefix are left-factored. A conflict between an
+// alternative that can be empty and one that starts with the token is settled in favour of the
+// latter, which binds a dangling else to the nearest if; any other conflict is an error.
+//
+// A production ending in => "label" builds a node from everything its right-hand side built. After
+// left factoring and left recursion removal that production is spread over helper nonterminals, so
+// the tree depth is marked when the grammar's own nonterminal is expanded and each label takes the
+// subtrees built since that mark; a left-recursive tail then finds the node it just built as the
+// first child of the next one, as a left-associative operator should.
+public class ParserGenerator {
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: java com.yumantha.ParserGenerator <grammar> <ParseTables.java>");
+            System.exit(2);
+        }
+
+        String grammar = new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8);
+        ParserGenerator generator = new ParserGenerator(Paths.get(args[0]).getFileName().toString());
+
+        try {
+            generator.read(grammar);
+            generator.transform();
+            generator.buildTables();
+        } catch (RuntimeException e) {
+            System.err.println(args[0] + ": " + e.getMessage());
+            System.exit(1);
+        }
+
+        for (String warning : generator.warnings) {
+            System.err.println(args[0] + ": " + warning);
+        }
+
+        // written beside the target and moved over it, so a failed run never leaves half a file
+        Path target = Paths.get(args[1]);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(temp, generator.javaSource().getBytes(StandardCharsets.UTF_8));
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static final Token.Type[] types = Token.Type.values();
+    private static final int T = types.length;
+    // right-hand side symbols: terminals are Token.Type ordinals, nonterminals T and up, actions negative
+    private static final int POP = Integer.MIN_VALUE;
+
+    private final String source;
+    private final ArrayList<String> names = new ArrayList<String>();
+    private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+    private final ArrayList<ArrayList<int[]>> alternatives = new ArrayList<ArrayList<int[]>>();
+    // nonterminals that have their alternatives, to catch names used but never defined
+    private final BitSet defined = new BitSet();
+    private final BitSet marked = new BitSet();
+    private final ArrayList<String> labels = new ArrayList<String>();
+    private final ArrayList<String> warnings = new ArrayList<String>();
+    private int helpers = 0;
+
+    // filled in by buildTables
+    private BitSet nullable;
+    private BitSet[] first;
+    private BitSet[] follow;
+    private ArrayList<int[]> productions;
+    private int[][] predict;
+
+    private ParserGenerator(String source) {
+        this.source = source;
+    }
+
+    private static boolean isTerminal(int symbol) {
+        return symbol >= 0 && symbol < T;
+    }
+
+    private static boolean isNonterminal(int symbol) {
+        return symbol >= T;
+    }
+
+    private static int build(int label) {
+        return -1 - label;
+    }
+
+    // ---- reading the grammar ----
+
+    private String text;
+    private int pos;
+    private String token;
+
+    private void read(String grammar) {
+        this.text = grammar;
+        this.pos = 0;
+        next();
+
+        while (token != null) {
+            String name = token;
+
+            if (!isIdentifier(name)) {
+                throw error("Expected a nonterminal, found " + name);
+            }
+
+            int nonterminal = nonterminal(name);
+
+            if (defined.get(nonterminal - T)) {
+                throw error(name + " is defined twice");
+            }
+
+            defined.set(nonterminal - T);
+            next();
+
+            while ("->".equals(token)) {
+                next();
+                ArrayList<Integer> symbols = new ArrayList<Integer>();
+                readSequence(name, symbols);
+
+                if ("=>".equals(token)) {
+                    next();
+
+                    if (token == null || !token.startsWith("\"")) {
+                        throw error("Expected a \"label\" after =>");
+                    }
+
+                    symbols.add(build(label(token.substring(1, token.length() - 1))));
+                    marked.set(nonterminal - T);
+                    next();
+                }
+
+                alternatives.get(nonterminal - T).add(toArray(symbols));
+            }
+
+            if (!";".equals(token)) {
+                throw error("Expected ; at the end of " + name + ", found " + token);
+            }
+
+            next();
+        }
+
+        for (int i = 0; i < names.size(); i++) {
+            if (!defined.get(i)) {
+                throw new RuntimeException(names.get(i) + " is used but never defined");
+            }
+        }
+    }
+
+    private void readSequence(String owner, ArrayList<Integer> symbols) {
+        while (token != null && !token.equals("->") && !token.equals("=>") && !token.equals(";") && !token.equals(")")) {
+            ArrayList<Integer> item = new ArrayList<Integer>();
+
+            if (token.equals(",")) {
+                // a stray separator, as in (',', Name)*
+                next();
+                continue;
+            } else if (token.equals("(")) {
+                next();
+                readSequence(owner, item);
+
+                if (!")".equals(token)) {
+                    throw error("Expected )");
+                }
+            } else if (token.startsWith("'")) {
+                item.add(terminal(token.substring(1, token.length() - 1)));
+            } else if (isIdentifier(token)) {
+                item.add(nonterminal(token));
+            } else {
+                throw error("Unexpected " + token);
+            }
+
+            next();
+
+            if ("*".equals(token) || "+".equals(token) || "?".equals(token)) {
+                int helper = helper(owner);
+                int[] body = toArray(item);
+
+                if (token.equals("?")) {
+                    alternatives.get(helper - T).add(body);
+                    symbols.add(helper);
+                } else {
+                    // X* is H -> X H | empty, and X+ is X H
+                    int[] repeat = Arrays.copyOf(body, body.length + 1);
+                    repeat[body.length] = helper;
+                    alternatives.get(helper - T).add(repeat);
+
+                    if (token.equals("+")) {
+                        symbols.addAll(item);
+                    }
+
+                    symbols.add(helper);
+                }
+
+                alternatives.get(helper - T).add(new int[0]);
+                next();
+            } else {
+                symbols.addAll(item);
+            }
+        }
+    }
+
+    private void next() {
+        while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+
+        if (pos >= text.length()) {
+            token = null;
+            return;
+        }
+
+        int start = pos;
+        char c = text.charAt(pos);
+
+        if (c == '\'' || c == '"') {
+            int end = text.indexOf(c, pos + 1);
+
+            if (end < 0) {
+                throw error("Unterminated " + c);
+            }
+
+            pos = end + 1;
+        } else if ((c == '-' || c == '=') && pos + 1 < text.length() && text.charAt(pos + 1) == '>') {
+            pos += 2;
+        } else if (Character.isLetter(c) || c == '_') {
+            while (pos < text.length() && (Character.isLetterOrDigit(text.charAt(pos)) || text.charAt(pos) == '_')) {
+                pos++;
+            }
+        } else {
+            pos++;
+        }
+
+        token = text.substring(start, pos);
+    }
+
+    private RuntimeException error(String message) {
+        int line = 1;
+
+        for (int i = 0; i < Math.min(pos, text.length()); i++) {
+            if (text.charAt(i) == '\n') {
+                line++;
+            }
+        }
+
+        return new RuntimeException("line " + line + ": " + message);
+    }
+
+    private static boolean isIdentifier(String token) {
+        return Character.isLetter(token.charAt(0)) || token.charAt(0) == '_';
+    }
+
+    private int terminal(String spelling) {
+        switch (spelling) {
+            case "<identifier>":
+                return Token.Type.IDENTIFIER.ordinal();
+            case "<integer>":
+                return Token.Type.INTEGER.ordinal();
+            case "<char>":
+                return Token.Type.CHAR.ordinal();
+            case "<string>":
+                return Token.Type.STRING.ordinal();
+        }
+
+        for (Token.Type t_type : types) {
+            if (spelling.equals(Lexer.fixedText(t_type))) {
+                return t_type.ordinal();
+            }
+        }
+
+        throw error("No token is spelled '" + spelling + "'");
+    }
+
+    private int nonterminal(String name) {
+        Integer id = ids.get(name);
+
+        if (id == null) {
+            id = T + names.size();
+            ids.put(name, id);
+            names.add(name);
+            alternatives.add(new ArrayList<int[]>());
+        }
+
+        return id;
+    }
+
+    // helpers are named after the nonterminal they were made for, as Term_17
+    private int helper(String owner) {
+        int id = nonterminal(owner + "_" + (++helpers));
+        defined.set(id - T);
+        return id;
+    }
+
+    private int label(String label) {
+        int i = labels.indexOf(label);
+
+        if (i < 0) {
+            labels.add(label);
+            i = labels.size() - 1;
+        }
+
+        return i;
+    }
+
+    private static int[] toArray(List<Integer> symbols) {
+        int[] array = new int[symbols.size()];
+
+        for (int i = 0; i < array.length; i++) {
+            array[i] = symbols.get(i);
+        }
+
+        return array;
+    }
+
+    // ---- making the grammar LL(1) ----
+
+    private void transform() {
+        int count = names.size();
+
+        for (int a = 0; a < count; a++) {
+            removeLeftRecursion(a);
+        }
+
+        for (int a = 0; a < names.size(); a++) {
+            leftFactor(a);
+        }
+
+        // a marked nonterminal drops its mark once all of it, helpers included, has been parsed
+        for (int a = marked.nextSetBit(0); a >= 0; a = marked.nextSetBit(a + 1)) {
+            ArrayList<int[]> alts = alternatives.get(a);
+
+            for (int i = 0; i < alts.size(); i++) {
+                int[] alt = Arrays.copyOf(alts.get(i), alts.get(i).length + 1);
+                alt[alt.length - 1] = POP;
+                alts.set(i, alt);
+            }
+        }
+    }
+
+    // A -> A x | y  becomes  A -> y A'  and  A' -> x A' | empty
+    private void removeLeftRecursion(int a) {
+        ArrayList<int[]> alts = alternatives.get(a);
+        ArrayList<int[]> recursive = new ArrayList<int[]>();
+        ArrayList<int[]> others = new ArrayList<int[]>();
+
+        for (int[] alt : alts) {
+            if (alt.length > 0 && alt[0] == T + a) {
+                recursive.add(alt);
+            } else {
+                others.add(alt);
+            }
+        }
+
+        if (recursive.isEmpty()) {
+            return;
+        }
+
+        if (others.isEmpty()) {
+            throw new RuntimeException(names.get(a) + " has no alternative that is not left-recursive");
+        }
+
+        int tail = helper(names.get(a));
+        ArrayList<int[]> tailAlts = alternatives.get(tail - T);
+
+        for (int[] alt : recursive) {
+            int[] rest = Arrays.copyOfRange(alt, 1, alt.length + 1);
+            rest[rest.length - 1] = tail;
+            tailAlts.add(rest);
+        }
+
+        tailAlts.add(new int[0]);
+        alts.clear();
+
+        for (int[] alt : others) {
+            int[] withTail = Arrays.copyOf(alt, alt.length + 1);
+            withTail[alt.length] = tail;
+            alts.add(withTail);
+        }
+    }
+
+    // Alternatives starting with the same symbol share their longest common prefix, followed by
+    // a helper holding what differs.
+    private void leftFactor(int a) {
+        ArrayList<int[]> alts = alternatives.get(a);
+
+        for (int i = 0; i < alts.size(); i++) {
+            int[] alt = alts.get(i);
+
+            if (alt.length == 0) {
+                continue;
+            }
+
+            ArrayList<int[]> group = new ArrayList<int[]>();
+            group.add(alt);
+
+            for (int j = i + 1; j < alts.size(); j++) {
+                if (alts.get(j).length > 0 && alts.get(j)[0] == alt[0]) {
+                    group.add(alts.get(j));
+                }
+            }
+
+            if (group.size() == 1) {
+                continue;
+            }
+
+            int prefix = alt.length;
+
+            for (int[] other : group) {
+                int k = 0;
+
+                while (k < prefix && k < other.length && other[k] == alt[k]) {
+                    k++;
+                }
+
+                prefix = k;
+            }
+
+            int helper = helper(names.get(a));
+            ArrayList<int[]> helperAlts = alternatives.get(helper - T);
+
+            for (int[] member : group) {
+                helperAlts.add(Arrays.copyOfRange(member, prefix, member.length));
+            }
+
+            int[] factored = Arrays.copyOf(alt, prefix + 1);
+            factored[prefix] = helper;
+
+            alts.removeAll(group);
+            alts.add(i, factored);
+        }
+    }
+
+    // ---- FIRST, FOLLOW and the predict table ----
+
+    private void buildTables() {
+        int count = names.size();
+
+        nullable = new BitSet(count);
+        first = new BitSet[count];
+        follow = new BitSet[count];
+
+        for (int a = 0; a < count; a++) {
+            first[a] = new BitSet(T);
+            follow[a] = new BitSet(T);
+        }
+
+        follow[0].set(Token.Type.EOF.ordinal());
+
+        for (boolean changed = true; changed; ) {
+            changed = false;
+
+            for (int a = 0; a < count; a++) {
+                for (int[] alt : alternatives.get(a)) {
+                    BitSet altFirst = new BitSet(T);
+
+                    if (firstOf(alt, 0, altFirst) && !nullable.get(a)) {
+                        nullable.set(a);
+                        changed = true;
+                    }
+
+                    if (!contains(first[a], altFirst)) {
+                        first[a].or(altFirst);
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        for (boolean changed = true; changed; ) {
+            changed = false;
+
+            for (int a = 0; a < count; a++) {
+                for (int[] alt : alternatives.get(a)) {
+                    for (int i = 0; i < alt.length; i++) {
+                        if (!isNonterminal(alt[i])) {
+                            continue;
+                        }
+
+                        int b = alt[i] - T;
+                        BitSet after = new BitSet(T);
+
+                        if (firstOf(alt, i + 1, after)) {
+                            after.or(follow[a]);
+                        }
+
+                        if (!contains(follow[b], after)) {
+                            follow[b].or(after);
+                            changed = true;
+                        }
+                    }
+                }
+            }
+        }
+
+        productions = new ArrayList<int[]>();
+        predict = new int[count][T];
+
+        for (int a = 0; a < count; a++) {
+            Arrays.fill(predict[a], -1);
+            // alternatives predicted by their first token go in before the ones predicted by FOLLOW
+            int firstProduction = productions.size();
+            ArrayList<int[]> alts = alternatives.get(a);
+
+            productions.addAll(alts);
+
+            for (int i = 0; i < alts.size(); i++) {
+                BitSet altFirst = new BitSet(T);
+                firstOf(alts.get(i), 0, altFirst);
+
+                for (int t = altFirst.nextSetBit(0); t >= 0; t = altFirst.nextSetBit(t + 1)) {
+                    if (predict[a][t] >= 0) {
+                        throw new RuntimeException("Not LL(1): " + names.get(a) + " has two alternatives starting with " + types[t]);
+                    }
+
+                    predict[a][t] = firstProduction + i;
+                }
+            }
+
+            for (int i = 0; i < alts.size(); i++) {
+                if (!firstOf(alts.get(i), 0, new BitSet(T))) {
+                    continue;
+                }
+
+                for (int t = follow[a].nextSetBit(0); t >= 0; t = follow[a].nextSetBit(t + 1)) {
+                    int taken = predict[a][t];
+
+                    if (taken < 0) {
+                        predict[a][t] = firstProduction + i;
+                    } else if (taken == firstProduction + i) {
+                        continue;
+                    } else if (firstOf(productions.get(taken), 0, new BitSet(T))) {
+                        throw new RuntimeException("Not LL(1): " + names.get(a) + " has two alternatives that can be empty before " + types[t]);
+                    } else {
+                        warnings.add("resolved conflict on " + types[t] + " in " + names.get(a) + " in favour of the alternative that reads it");
+                    }
+                }
+            }
+        }
+    }
+
+    // Adds FIRST(alt[from..]) to into; true when that part of alt can derive the empty string.
+    private boolean firstOf(int[] alt, int from, BitSet into) {
+        for (int i = from; i < alt.length; i++) {
+            int symbol = alt[i];
+
+            if (isTerminal(symbol)) {
+                into.set(symbol);
+                return false;
+            } else if (isNonterminal(symbol)) {
+                into.or(first[symbol - T]);
+
+                if (!nullable.get(symbol - T)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean contains(BitSet set, BitSet subset) {
+        BitSet missing = (BitSet) subset.clone();
+        missing.andNot(set);
+        return missing.isEmpty();
+    }
+
+    // ---- writing ParseTables.java ----
+
+    private String javaSource() {
+        int count = names.size();
+        int popCode = T + count;
+        int buildCode = popCode + 1;
+
+        // row displacement: row a lives at base[a] in one shared array, check says whose slot it is
+        int[] base = new int[count];
+        int[] check = new int[0];
+        int[] next = new int[0];
+        Integer[] order = new Integer[count];
+
+        for (int a = 0; a < count; a++) {
+            order[a] = a;
+        }
+
+        // densest rows first pack best
+        Arrays.sort(order, (x, y) -> rowSize(y) - rowSize(x));
+
+        for (int a : order) {
+            int b = 0;
+
+            while (!fits(check, b, a)) {
+                b++;
+            }
+
+            base[a] = b;
+
+            if (check.length < b + T) {
+                int old = check.length;
+                check = Arrays.copyOf(check, b + T);
+                next = Arrays.copyOf(next, b + T);
+                Arrays.fill(check, old, check.length, -1);
+            }
+
+            for (int t = 0; t < T; t++) {
+                if (predict[a][t] >= 0) {
+                    check[b + t] = a;
+                    next[b + t] = predict[a][t];
+                }
+            }
+        }
+
+        int[] rhsStart = new int[productions.size() + 1];
+        ArrayList<Integer> rhs = new ArrayList<Integer>();
+
+        for (int p = 0; p < productions.size(); p++) {
+            int[] alt = productions.get(p);
+            rhsStart[p] = rhs.size();
+
+            // pushed in reverse so the first symbol ends up on top of the parse stack
+            for (int i = alt.length - 1; i >= 0; i--) {
+                int symbol = alt[i];
+
+                if (symbol == POP) {
+                    rhs.add(popCode);
+                } else if (symbol < 0) {
+                    rhs.add(buildCode + (-1 - symbol));
+                } else {
+                    rhs.add(symbol);
+                }
+            }
+        }
+
+        rhsStart[productions.size()] = rhs.size();
+
+        boolean[] marks = new boolean[count];
+
+        for (int a = marked.nextSetBit(0); a >= 0; a = marked.nextSetBit(a + 1)) {
+            marks[a] = true;
+        }
+
+        String[] typeNames = new String[T];
+
+        for (int t = 0; t < T; t++) {
+            typeNames[t] = types[t].name();
+        }
+
+        StringWriter text = new StringWriter();
+        PrintWriter out = new PrintWriter(text);
+
+        out.println("package com.yumantha;");
+        out.println();
+        out.println("// Generated by ParserGenerator from " + source + "; do not edit, run make tables instead.");
+        out.println("//");
+        out.println("// Parse stack codes: a terminal is its Token.Type ordinal, nonterminal a is TERMINALS + a, then");
+        out.println("// POP drops the innermost mark and BUILD + i builds labels[i] from the subtrees since that mark.");
+        out.println("// Nonterminal a with lookahead t expands production next[base[a] + t] when check[base[a] + t] == a;");
+        out.println("// its symbols are rhs[rhsStart[p]] up to rhsStart[p + 1], last symbol first.");
+        out.println("final class ParseTables {");
+        out.println("    static final int TERMINALS = " + T + ";");
+        out.println("    static final int NONTERMINALS = " + count + ";");
+        out.println("    static final int START = TERMINALS;");
+        out.println("    static final int POP = TERMINALS + NONTERMINALS;");
+        out.println("    static final int BUILD = POP + 1;");
+        out.println();
+        out.println("    // Token.Type names the tables were built for, checked when TableParser loads");
+        writeArray(out, "String[]", "terminals", typeNames);
+        writeArray(out, "String[]", "nonterminals", names.toArray(new String[0]));
+        writeArray(out, "String[]", "labels", labels.toArray(new String[0]));
+        out.println("    // nonterminals that mark the tree depth when expanded");
+        writeArray(out, "boolean[]", "marks", marks);
+        writeArray(out, "int[]", "base", base);
+        writeArray(out, "int[]", "check", check);
+        writeArray(out, "int[]", "next", next);
+        writeArray(out, "int[]", "rhsStart", rhsStart);
+        writeArray(out, "int[]", "rhs", toArray(rhs));
+        out.println("}");
+        out.flush();
+
+        return text.toString();
+    }
+
+    private int rowSize(int a) {
+        int size = 0;
+
+        for (int t = 0; t < T; t++) {
+            if (predict[a][t] >= 0) {
+                size++;
+            }
+        }
+
+        return size;
+    }
+
+    private boolean fits(int[] check, int b, int a) {
+        for (int t = 0; t < T; t++) {
+            if (predict[a][t] >= 0 && b + t < check.length && check[b + t] >= 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static void writeArray(PrintWriter out, String type, String name, Object values) {
+        int length = Array.getLength(values);
+        boolean strings = values instanceof String[];
+        int perLine = strings ? 6 : 20;
+
+        out.println("    static final " + type + " " + name + " = {");
+
+        for (int i = 0; i < length; i += perLine) {
+            StringBuilder line = new StringBuilder("            ");
+
+            for (int j = i; j < Math.min(i + perLine, length); j++) {
+                Object value = Array.get(values, j);
+                line.append(strings ? "\"" + value + "\"" : String.valueOf(value)).append(", ");
+            }
+
+            out.println(line.toString().replaceAll(" $", ""));
+        }
+
+        out.println("    };");
+    }
+}
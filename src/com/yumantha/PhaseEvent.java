@@ -0,0 +1,37 @@
+package com.yumantha;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Flight recorder event for one phase (read, scan, parse or emit) of compiling one file; begun and
+// committed by CompileStats.
+@Name("com.yumantha.CompilePhase")
+@Label("WinZigC Compile Phase")
+@Category("WinZigC")
+@StackTrace(false)
+@Description("One phase of compiling a source file")
+public class PhaseEvent extends jdk.jfr.Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Source Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Tokens")
+    public long tokens;
+
+    @Label("Nodes")
+    public long nodes;
+
+    @Label("Allocated")
+    @DataAmount
+    public long allocated;
+}
@@ -0,0 +1,361 @@
+package com.yumantha;
+
+import java.io.IOException;
+import java.util.Random;
+
+// Writes random but valid WinZigC for scale and stress testing; the same settings and seed always
+// give the same program. Besides being syntactically valid, programs declare every name they use,
+// call only functions defined earlier with the right number of arguments, and only use exit inside
+// loop ... pool and return inside functions.
+public class ProgramGenerator {
+    // approximate size of the program in characters
+    public long size = 10000;
+    public int functions = 8;
+    // deepest nesting of compound statements
+    public int depth = 4;
+    // operands per expression, at most
+    public int expressionLength = 6;
+    public int caseClauses = 4;
+    // chance of a comment before a statement, and of blank lines or extra spaces around one
+    public double commentDensity = 0.1;
+    public double whitespaceDensity = 0.1;
+
+    private static final int PARAMS = 3;
+    private static final int LOCALS = 4;
+    private static final int GLOBALS = 4;
+    private static final String[] words = {"check", "the", "next", "value", "swap", "loop", "count", "sum", "index", "result"};
+
+    private Random random;
+    private Appendable out;
+    private long written;
+    private int indent;
+    // function being written, -1 in the main body
+    private int function;
+    private int loops;
+
+    public void generate(long seed, Appendable out) throws IOException {
+        this.random = new Random(seed);
+        this.out = out;
+        this.written = 0;
+        this.indent = 0;
+        this.loops = 0;
+
+        int count = Math.max(functions, 0);
+        long share = size / (count + 1);
+
+        String name = "Generated" + Long.toUnsignedString(seed);
+
+        line("program " + name + ":");
+        line("const limit = 10, letter = 'w';");
+        line("type Color = (red, green, blue);");
+        line("var");
+        line("    g0, g1, g2, g3 : integer;");
+        line("    ch : char;");
+        line("    flag : boolean;");
+        line("    hue : Color;");
+
+        for (int f = 0; f < count; f++) {
+            function = f;
+            writeFunction(f, written + share);
+        }
+
+        function = -1;
+        line("");
+        writeBody(written + share, name + ".");
+    }
+
+    public String generate(long seed) {
+        StringBuilder program = new StringBuilder((int) Math.min(size + 1024, Integer.MAX_VALUE - 16));
+
+        try {
+            generate(seed, program);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        return program.toString();
+    }
+
+    private void writeFunction(int f, long until) throws IOException {
+        line("");
+        line("function f" + f + " (a0, a1 : integer; a2 : integer) : integer;");
+        line("var x0, x1 : integer;");
+        line("    x2, x3 : integer;");
+        writeBody(until, "f" + f + ";");
+    }
+
+    // begin ... end with statements until the output reaches until
+    private void writeBody(long until, String closing) throws IOException {
+        line("begin");
+        indent++;
+
+        do {
+            space();
+            writeStatement(depth);
+
+            if (written < until) {
+                append(";");
+                newline();
+            }
+        } while (written < until);
+
+        if (function >= 0) {
+            append(";");
+            newline();
+            indentation();
+            append("return (" + expression() + ")");
+        }
+
+        newline();
+        indent--;
+        line("end " + closing);
+    }
+
+    private void writeStatement(int budget) throws IOException {
+        if (random.nextDouble() < commentDensity) {
+            comment();
+        }
+
+        indentation();
+
+        int choice = random.nextInt(budget > 0 ? 14 : 5);
+
+        switch (choice) {
+            case 0:
+            case 1:
+                append(variable() + " := " + expression());
+                break;
+            case 2:
+                append("output (" + expression() + ", \"" + word() + "\")");
+                break;
+            case 3:
+                append(variable() + " :=: " + variable());
+                break;
+            case 4:
+                if (loops > 0 && random.nextInt(3) == 0) {
+                    append("exit");
+                } else {
+                    append("read (" + variable() + ")");
+                }
+                break;
+            case 5:
+                append("if " + condition() + " then");
+                nested(budget);
+
+                if (random.nextBoolean()) {
+                    newline();
+                    indentation();
+                    append("else");
+                    nested(budget);
+                }
+                break;
+            case 6:
+                append("while " + condition() + " do");
+                nested(budget);
+                break;
+            case 7:
+                append("repeat");
+                statementList(budget);
+                newline();
+                indentation();
+                append("until " + condition());
+                break;
+            case 8:
+                String counter = variable();
+                append("for (" + counter + " := 1; " + counter + " <= limit; " + counter + " := " + counter + " + 1)");
+                nested(budget);
+                break;
+            case 9:
+                loops++;
+                append("loop");
+                statementList(budget);
+                append(";");
+                newline();
+                indentation();
+                append("    if " + condition() + " then exit");
+                newline();
+                indentation();
+                append("pool");
+                loops--;
+                break;
+            case 10:
+                writeCase(budget);
+                break;
+            case 11:
+                append("begin");
+                statementList(budget);
+                newline();
+                indentation();
+                append("end");
+                break;
+            case 12:
+                append("hue := " + (random.nextBoolean() ? "green" : "blue"));
+                break;
+            default:
+                append("ch := " + (random.nextBoolean() ? "'x'" : "chr (ord (letter) + 1)"));
+                break;
+        }
+    }
+
+    private void nested(int budget) throws IOException {
+        newline();
+        indent++;
+        writeStatement(budget - 1);
+        indent--;
+    }
+
+    private void statementList(int budget) throws IOException {
+        int count = 1 + random.nextInt(3);
+
+        indent++;
+
+        for (int i = 0; i < count; i++) {
+            newline();
+            writeStatement(budget - 1);
+
+            if (i + 1 < count) {
+                append(";");
+            }
+        }
+
+        indent--;
+    }
+
+    private void writeCase(int budget) throws IOException {
+        append("case " + expression() + " of");
+        indent++;
+
+        int value = 0;
+
+        for (int i = 0; i < Math.max(caseClauses, 1); i++) {
+            newline();
+            indentation();
+
+            if (random.nextInt(3) == 0) {
+                append(value + ".." + (value + 2) + ":");
+                value += 3;
+            } else {
+                append(value + ", " + (value + 1) + ":");
+                value += 2;
+            }
+
+            indent++;
+            newline();
+            writeStatement(budget - 1);
+            append(";");
+            indent--;
+        }
+
+        if (random.nextBoolean()) {
+            newline();
+            indentation();
+            append("otherwise");
+            indent++;
+            newline();
+            writeStatement(budget - 1);
+            indent--;
+        }
+
+        indent--;
+        newline();
+        indentation();
+        append("end");
+    }
+
+    private String condition() {
+        String[] relations = {"<", "<=", ">", ">=", "=", "<>"};
+
+        return "(" + term(Math.max(expressionLength / 2, 1)) + " " + relations[random.nextInt(relations.length)] + " " + term(Math.max(expressionLength / 2, 1)) + ")";
+    }
+
+    private String expression() {
+        return term(1 + random.nextInt(Math.max(expressionLength, 1)));
+    }
+
+    // operands joined by operators of random precedence
+    private String term(int operands) {
+        String[] operators = {"+", "-", "*", "/", "mod", "+", "-", "*"};
+        StringBuilder term = new StringBuilder(primary(operands));
+
+        for (int i = 1; i < operands; i++) {
+            term.append(' ').append(operators[random.nextInt(operators.length)]).append(' ').append(primary(operands));
+        }
+
+        return term.toString();
+    }
+
+    private String primary(int operands) {
+        switch (random.nextInt(10)) {
+            case 0:
+                return Integer.toString(random.nextInt(1000));
+            case 1:
+                return "limit";
+            case 2:
+                // functions defined so far: all of them from the main body
+                int callable = (function < 0) ? Math.max(functions, 0) : function;
+
+                if (callable > 0) {
+                    int callee = random.nextInt(callable);
+                    return "f" + callee + " (" + variable() + ", " + random.nextInt(10) + ", " + variable() + ")";
+                }
+                return variable();
+            case 3:
+                return operands > 2 ? "(" + term(2) + ")" : "-" + variable();
+            case 4:
+                return "ord (ch)";
+            default:
+                return variable();
+        }
+    }
+
+    private String variable() {
+        if (function < 0 || random.nextInt(4) == 0) {
+            return "g" + random.nextInt(GLOBALS);
+        }
+
+        return random.nextBoolean() ? "a" + random.nextInt(PARAMS) : "x" + random.nextInt(LOCALS);
+    }
+
+    private String word() {
+        return words[random.nextInt(words.length)];
+    }
+
+    private void comment() throws IOException {
+        indentation();
+
+        if (random.nextBoolean()) {
+            append("# " + word() + " " + word());
+        } else {
+            append("{ " + word() + " " + word() + " }");
+        }
+
+        newline();
+    }
+
+    private void space() throws IOException {
+        if (random.nextDouble() < whitespaceDensity) {
+            newline();
+        }
+    }
+
+    private void indentation() throws IOException {
+        for (int i = 0; i < indent; i++) {
+            append(random.nextDouble() < whitespaceDensity ? "\t" : "    ");
+        }
+    }
+
+    private void line(String text) throws IOException {
+        indentation();
+        append(text);
+        newline();
+    }
+
+    private void newline() throws IOException {
+        append("\n");
+    }
+
+    private void append(String text) throws IOException {
+        out.append(text);
+        written += text.length();
+    }
+}
@@ -0,0 +1,173 @@
+package com.yumantha;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+// read, output and eof for running WinZigC programs, called by the classes JvmBackend generates.
+// All values are integers in both directions: read takes the next whitespace-separated integer,
+// output writes each of its items on a line of its own, characters as their codes, and eof is 1
+// once nothing but whitespace is left. One program runs at a time; its streams are set with use.
+public class ProgramIO {
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    private static InputStream in = System.in;
+    private static OutputStream out = System.out;
+    private static final byte[] input = new byte[BUFFER_SIZE];
+    private static int inputPos = 0;
+    private static int inputEnd = 0;
+    private static final byte[] output = new byte[BUFFER_SIZE];
+    private static int outputCount = 0;
+
+    public static void use(InputStream in, OutputStream out) {
+        ProgramIO.in = in;
+        ProgramIO.out = out;
+        inputPos = 0;
+        inputEnd = 0;
+        outputCount = 0;
+    }
+
+    public static int readInteger() {
+        if (skipWhitespace() < 0) {
+            throw new RuntimeException("Read past the end of the input");
+        }
+
+        boolean negative = false;
+        int c = input[inputPos];
+
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            inputPos++;
+        }
+
+        long value = 0;
+        int digits = 0;
+
+        while ((c = peek()) >= '0' && c <= '9') {
+            value = value * 10 + (c - '0');
+            inputPos++;
+            digits++;
+
+            if (value > (negative ? Integer.MAX_VALUE + 1L : Integer.MAX_VALUE)) {
+                throw new RuntimeException("Integer in the input is too large");
+            }
+        }
+
+        if (digits == 0) {
+            throw new RuntimeException("Expected an integer in the input");
+        }
+
+        return (int) (negative ? -value : value);
+    }
+
+    public static int eof() {
+        return skipWhitespace() < 0 ? 1 : 0;
+    }
+
+    public static void output(int value) {
+        if (outputCount + 12 > output.length) {
+            flush();
+        }
+
+        if (value < 0) {
+            output[outputCount++] = '-';
+        }
+
+        // digits of the magnitude, written backwards and then reversed in place
+        int start = outputCount;
+        long magnitude = Math.abs((long) value);
+
+        do {
+            output[outputCount++] = (byte) ('0' + magnitude % 10);
+            magnitude /= 10;
+        } while (magnitude > 0);
+
+        for (int i = start, j = outputCount - 1; i < j; i++, j--) {
+            byte digit = output[i];
+            output[i] = output[j];
+            output[j] = digit;
+        }
+
+        output[outputCount++] = '\n';
+    }
+
+    public static void output(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (outputCount == output.length) {
+                flush();
+            }
+
+            output[outputCount++] = (byte) text.charAt(i);
+        }
+
+        if (outputCount == output.length) {
+            flush();
+        }
+
+        output[outputCount++] = '\n';
+    }
+
+    public static void flush() {
+        try {
+            out.write(output, 0, outputCount);
+            out.flush();
+            outputCount = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // What a program that threw e reports after "Run error: ", whichever way it was run.
+    public static String errorMessage(Throwable e) {
+        if (e instanceof ArithmeticException) {
+            return "Division by zero";
+        } else if (e instanceof StackOverflowError) {
+            return "Calls nested too deeply";
+        } else if (e instanceof RuntimeException) {
+            return e.getMessage();
+        }
+
+        return e.toString();
+    }
+
+    // Called by the main of a compiled program when its body throws, after the body has flushed
+    // the output.
+    public static void fail(Throwable e) {
+        System.err.println("Run error: " + errorMessage(e));
+        System.exit(1);
+    }
+
+    // the first non-whitespace byte, left unread, or -1 at the end of the input
+    private static int skipWhitespace() {
+        int c;
+
+        while ((c = peek()) == ' ' || c == '\t' || c == '\n' || c == '\r') {
+            inputPos++;
+        }
+
+        return c;
+    }
+
+    private static int peek() {
+        if (inputPos == inputEnd) {
+            // whatever was output so far is a prompt for this input
+            flush();
+
+            try {
+                inputEnd = in.read(input, 0, input.length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            inputPos = 0;
+
+            if (inputEnd <= 0) {
+                inputEnd = 0;
+                return -1;
+            }
+        }
+
+        return input[inputPos];
+    }
+}
@@ -83,21 +83,39 @@ public class Scanner {
     }
 
     private ArrayList<Token> result;
-    private String input;
+    private final String input;
+    private int pos;
     private int line;
     private int col;
 
+    private final Matcher identifierMatcher;
+    private final Matcher integerMatcher;
+    private final Matcher charMatcher;
+    private final Matcher stringMatcher;
+    private final Matcher multiCommentMatcher;
+    private final Matcher singleCommentMatcher;
+    private final Matcher whitespaceMatcher;
+
     private Scanner(String input) {
         this.result = new ArrayList<Token>();
         this.input = input;
+        this.pos = 0;
         this.line = 1;
         this.col = 1;
+
+        this.identifierMatcher = identifierPattern.matcher(input);
+        this.integerMatcher = integerPattern.matcher(input);
+        this.charMatcher = charPattern.matcher(input);
+        this.stringMatcher = stringPattern.matcher(input);
+        this.multiCommentMatcher = multiCommentPattern.matcher(input);
+        this.singleCommentMatcher = singleCommentPattern.matcher(input);
+        this.whitespaceMatcher = whitespacePattern.matcher(input);
     }
 
     private void scan() {
         skipWhitespacesAndComments();
 
-        while (!input.isEmpty()) {
+        while (pos < input.length()) {
             boolean isValidToken =
 //                    checkToken("\n", Type.NEWLINE) ||
                     checkIfIdentifier() ||
@@ -154,9 +172,9 @@ public class Scanner {
                             checkToken("-", Type.MINUS_OP) ||
                             checkToken("*", Type.MULTIPLY_OP) ||
                             checkToken("/", Type.DIVIDE_OP) ||
-                            checkRegExp(integerPattern, Type.INTEGER) ||
-                            checkRegExp(charPattern, Type.CHAR) ||
-                            checkRegExp(stringPattern, Type.STRING);
+                            checkRegExp(integerMatcher, Type.INTEGER) ||
+                            checkRegExp(charMatcher, Type.CHAR) ||
+                            checkRegExp(stringMatcher, Type.STRING);
             if (!isValidToken) {
                 throw new RuntimeException("Cannot tokenize at line: " + line + " col: " + col);
             }
@@ -171,51 +189,48 @@ public class Scanner {
         return whitespaceMatcher.matches();
     }
 
-    private boolean startsWithSingleComment() {
-        Matcher singleCommentMatcher = singleCommentPattern.matcher(input);
+    private boolean lookingAt(Matcher m) {
+        m.region(pos, input.length());
 
-        return (input.startsWith("#") && singleCommentMatcher.lookingAt());
+        return m.lookingAt();
     }
 
-    private boolean startsWithMultiComment() {
-        Matcher multiCommentMatcher = multiCommentPattern.matcher(input);
+    private boolean startsWithSingleComment() {
+        return (input.startsWith("#", pos) && lookingAt(singleCommentMatcher));
+    }
 
-        return (input.startsWith("{") && multiCommentMatcher.lookingAt());
+    private boolean startsWithMultiComment() {
+        return (input.startsWith("{", pos) && lookingAt(multiCommentMatcher));
     }
 
     private boolean startsWithWhiteSpace() {
-        Matcher whitespaceMatcher = whitespacePattern.matcher(input);
-
-        return (whitespaceMatcher.lookingAt());
+        return lookingAt(whitespaceMatcher);
     }
 
     private void skipWhiteSpaces() {
-        int i = 0;
+        int i = pos;
 
         while (i < input.length() && isWhiteSpace(input.charAt(i))) {
             i++;
         }
 
-        readInput(i);
+        readInput(i - pos);
     }
 
     private void skipComments() {
-        Matcher singleCommentMatcher = singleCommentPattern.matcher(input);
-        Matcher multiCommentMatcher = multiCommentPattern.matcher(input);
-
-        if (input.startsWith("#")) {
-            if (singleCommentMatcher.lookingAt()) {
-                readInput(singleCommentMatcher.end());
+        if (input.startsWith("#", pos)) {
+            if (lookingAt(singleCommentMatcher)) {
+                readInput(singleCommentMatcher.end() - pos);
             }
-        } else if (input.startsWith("{")) {
-            if (multiCommentMatcher.lookingAt()) {
-                readInput(multiCommentMatcher.end());
+        } else if (input.startsWith("{", pos)) {
+            if (lookingAt(multiCommentMatcher)) {
+                readInput(multiCommentMatcher.end() - pos);
             }
         }
     }
 
     private void skipWhitespacesAndComments() {
-        while (input.length() > 0 && (startsWithWhiteSpace() || startsWithMultiComment() || startsWithSingleComment())) {
+        while (pos < input.length() && (startsWithWhiteSpace() || startsWithMultiComment() || startsWithSingleComment())) {
             if (startsWithWhiteSpace()) {
                 skipWhiteSpaces();
             }
@@ -228,7 +243,7 @@ public class Scanner {
     }
 
     private boolean checkToken(String expected, Token.Type t_type) {
-        if (input.startsWith(expected)) {
+        if (input.startsWith(expected, pos)) {
             result.add(new Token(t_type, expected, line, col));
             readInput(expected.length());
             return true;
@@ -237,12 +252,10 @@ public class Scanner {
         }
     }
 
-    private boolean checkRegExp(Pattern p, Token.Type t_type) {
-        Matcher m = p.matcher(input);
-
-        if (m.lookingAt()) {
+    private boolean checkRegExp(Matcher m, Token.Type t_type) {
+        if (lookingAt(m)) {
             result.add(new Token(t_type, m.group(), line, col));
-            readInput(m.end());
+            readInput(m.end() - pos);
             return true;
         } else {
             return false;
@@ -250,7 +263,7 @@ public class Scanner {
     }
 
     private boolean checkIfIdentifier() {
-        if (checkRegExp(identifierPattern, Type.IDENTIFIER)) {
+        if (checkRegExp(identifierMatcher, Type.IDENTIFIER)) {
             Token t = result.get(result.size() - 1);
             Token.Type t_type = keywords.get(t.text);
 
@@ -266,7 +279,9 @@ public class Scanner {
     }
 
     private void readInput(int amount) {
-        for (int i = 0; i < amount; ++i) {
+        int end = pos + amount;
+
+        for (int i = pos; i < end; ++i) {
             char c = input.charAt(i);
 
             if (c == '\n') {
@@ -277,6 +292,6 @@ public class Scanner {
             }
         }
 
-        input = input.substring(amount);
+        pos = end;
     }
 }
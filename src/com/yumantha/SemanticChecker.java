@@ -0,0 +1,348 @@
+package com.yumantha;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// Resolves every name in a parsed program against the declarations under consts, types, dclns and
+// params, in a program scope and one scope per function, and reports names used before they are
+// declared, declared twice in one scope, used as the wrong kind of name, and calls with the wrong
+// number of arguments. One walk over the tree; each name costs a SymbolTable lookup.
+//
+// The lenient mode is for older programs that assign to variables they never declare, as the
+// samples do with d in d:=f(x). Names that are assigned, read or swapped but declared nowhere in
+// reach are added to the program's dclns as integer variables before the check, so the tree the
+// backends get declares them like any other variable.
+public class SemanticChecker {
+    private final NamePool names;
+    private final Diagnostics diagnostics;
+    private final SymbolTable symbols;
+
+    private final int integerType;
+    private final int charType;
+    // "program X" or "function f", for messages
+    private String where;
+    // the undeclared variables found, when collecting them for the lenient mode
+    private Set<Integer> undeclared;
+
+    public SemanticChecker(NamePool names, Diagnostics diagnostics) {
+        this.names = names;
+        this.diagnostics = diagnostics;
+        this.symbols = new SymbolTable();
+
+        // predeclared names, in a scope outside the program so that it may redeclare them
+        symbols.enterScope();
+        this.integerType = symbols.declare(names.intern("integer"), SymbolTable.TYPE, -1);
+        this.charType = symbols.declare(names.intern("char"), SymbolTable.TYPE, -1);
+        int booleanType = symbols.declare(names.intern("boolean"), SymbolTable.TYPE, -1);
+        symbols.declare(names.intern("true"), SymbolTable.LITERAL, booleanType);
+        symbols.declare(names.intern("false"), SymbolTable.LITERAL, booleanType);
+    }
+
+    // Returns false when any error was reported.
+    public static boolean check(ASTNode prog, NamePool names, Diagnostics diagnostics) {
+        return check(prog, names, diagnostics, false);
+    }
+
+    // Leniently, the program's undeclared variables are declared first, changing prog.
+    public static boolean check(ASTNode prog, NamePool names, Diagnostics diagnostics, boolean lenient) {
+        int before = diagnostics.count();
+
+        if (lenient) {
+            declareUndeclared(prog, names);
+        }
+
+        new SemanticChecker(names, diagnostics).checkProgram(prog);
+
+        return diagnostics.count() == before;
+    }
+
+    // A check into diagnostics nobody reads finds the names; they go into one more var(n) at the end
+    // of dclns, program(7)'s fourth child.
+    private static void declareUndeclared(ASTNode prog, NamePool names) {
+        SemanticChecker finder = new SemanticChecker(names, new Diagnostics());
+        finder.undeclared = new LinkedHashSet<Integer>();
+        finder.checkProgram(prog);
+
+        if (finder.undeclared.isEmpty()) {
+            return;
+        }
+
+        ASTNode dclns = prog.getChild(3);
+        ASTNode[] vars = dclns.getChildren().toArray(new ASTNode[dclns.getChildCount() + 1]);
+        ASTNode[] var = new ASTNode[finder.undeclared.size() + 1];
+        int i = 0;
+
+        for (int name : finder.undeclared) {
+            var[i++] = identifier(names, name);
+        }
+
+        var[i] = identifier(names, names.intern("integer"));
+        vars[vars.length - 1] = new ASTNode(names, names.intern("var"), var);
+        prog.replaceChild(dclns, new ASTNode(names, dclns.getSymbol(), vars));
+    }
+
+    private static ASTNode identifier(NamePool names, int name) {
+        return new ASTNode(names, NamePool.IDENTIFIER, new ASTNode[]{new ASTNode(names, name, 0)});
+    }
+
+    // program(7): name consts types dclns subprogs block name
+    public void checkProgram(ASTNode prog) {
+        where = "program " + nameOf(prog.getChild(0));
+        checkEndName(prog.getChild(0), prog.getChild(6));
+
+        symbols.enterScope();
+        checkDeclarations(prog.getChild(1), prog.getChild(2), prog.getChild(3));
+
+        ASTNode subprogs = prog.getChild(4);
+
+        for (int i = 0; i < subprogs.getChildCount(); i++) {
+            checkFunction(subprogs.getChild(i));
+        }
+
+        where = "program " + nameOf(prog.getChild(0));
+        check(prog.getChild(5));
+        symbols.exitScope();
+    }
+
+    // fcn(8): name params type consts types dclns block name
+    private void checkFunction(ASTNode fcn) {
+        ASTNode params = fcn.getChild(1);
+        int arity = 0;
+
+        where = "function " + nameOf(fcn.getChild(0));
+        checkEndName(fcn.getChild(0), fcn.getChild(7));
+        checkType(fcn.getChild(2));
+
+        for (int i = 0; i < params.getChildCount(); i++) {
+            arity += params.getChild(i).getChildCount() - 1;
+        }
+
+        // declared before its body so that it can call itself
+        declare(fcn.getChild(0), SymbolTable.FUNCTION, arity);
+
+        symbols.enterScope();
+        checkVariables(params);
+        checkDeclarations(fcn.getChild(3), fcn.getChild(4), fcn.getChild(5));
+        check(fcn.getChild(6));
+        symbols.exitScope();
+    }
+
+    private void checkDeclarations(ASTNode consts, ASTNode types, ASTNode dclns) {
+        // const(2): name value
+        for (int i = 0; i < consts.getChildCount(); i++) {
+            ASTNode constant = consts.getChild(i);
+            declare(constant.getChild(0), SymbolTable.CONST, checkConstant(constant.getChild(1)));
+        }
+
+        // type(2): name lit(n)
+        for (int i = 0; i < types.getChildCount(); i++) {
+            ASTNode type = types.getChild(i);
+            ASTNode literals = type.getChild(1);
+            int entry = declare(type.getChild(0), SymbolTable.TYPE, -1);
+
+            for (int j = 0; j < literals.getChildCount(); j++) {
+                declare(literals.getChild(j), SymbolTable.LITERAL, entry);
+            }
+        }
+
+        checkVariables(dclns);
+    }
+
+    // var(n): names type, under dclns or params
+    private void checkVariables(ASTNode dclns) {
+        for (int i = 0; i < dclns.getChildCount(); i++) {
+            ASTNode var = dclns.getChild(i);
+            int type = checkType(var.getChild(var.getChildCount() - 1));
+
+            for (int j = 0; j < var.getChildCount() - 1; j++) {
+                declare(var.getChild(j), SymbolTable.VARIABLE, type);
+            }
+        }
+    }
+
+    // Statements and expressions. Names are checked where they are used; everything else only
+    // has its children checked.
+    private void check(ASTNode node) {
+        int symbol = node.getSymbol();
+
+        if (symbol == NamePool.IDENTIFIER) {
+            checkValue(node);
+        } else if (symbol == NamePool.INTEGER) {
+            checkInteger(node);
+        } else if (symbol == NamePool.CALL) {
+            checkCall(node);
+        } else if (symbol == NamePool.ASSIGN) {
+            checkVariable(node.getChild(0));
+            check(node.getChild(1));
+        } else if (symbol == NamePool.SWAP || symbol == NamePool.READ) {
+            for (int i = 0; i < node.getChildCount(); i++) {
+                checkVariable(node.getChild(i));
+            }
+        } else if (symbol == NamePool.CASE_CLAUSE) {
+            // case_clause(n): labels statement
+            for (int i = 0; i < node.getChildCount() - 1; i++) {
+                ASTNode label = node.getChild(i);
+
+                if (label.getSymbol() == NamePool.RANGE) {
+                    checkConstant(label.getChild(0));
+                    checkConstant(label.getChild(1));
+                } else {
+                    checkConstant(label);
+                }
+            }
+
+            check(node.getChild(node.getChildCount() - 1));
+        } else {
+            for (int i = 0; i < node.getChildCount(); i++) {
+                check(node.getChild(i));
+            }
+        }
+    }
+
+    // call(n): name arguments
+    private void checkCall(ASTNode call) {
+        int entry = lookup(call.getChild(0));
+        int arguments = call.getChildCount() - 1;
+
+        if (entry >= 0) {
+            if (symbols.kind(entry) != SymbolTable.FUNCTION) {
+                error(call.getChild(0), quoted(call.getChild(0)) + " is not a function");
+            } else if (symbols.info(entry) != arguments) {
+                int arity = symbols.info(entry);
+                error(call.getChild(0), quoted(call.getChild(0)) + " takes " + arity + (arity == 1 ? " argument" : " arguments") + ", not " + arguments);
+            }
+        }
+
+        for (int i = 1; i < call.getChildCount(); i++) {
+            check(call.getChild(i));
+        }
+    }
+
+    private void checkValue(ASTNode name) {
+        int entry = lookup(name);
+
+        if (entry < 0) {
+            return;
+        }
+
+        if (symbols.kind(entry) == SymbolTable.FUNCTION) {
+            error(name, quoted(name) + " is a function and must be called with arguments");
+        } else if (symbols.kind(entry) == SymbolTable.TYPE) {
+            error(name, quoted(name) + " is a type, not a value");
+        }
+    }
+
+    private void checkVariable(ASTNode name) {
+        int entry = lookup(name);
+
+        if (entry < 0 && undeclared != null) {
+            undeclared.add(symbolOf(name));
+        } else if (entry >= 0 && symbols.kind(entry) != SymbolTable.VARIABLE) {
+            error(name, quoted(name) + " is not a variable");
+        }
+    }
+
+    // Returns the type entry of a constant value, or -1 when it has none.
+    private int checkConstant(ASTNode value) {
+        if (value.getSymbol() == NamePool.INTEGER) {
+            checkInteger(value);
+            return integerType;
+        } else if (value.getSymbol() == NamePool.CHAR) {
+            return charType;
+        }
+
+        int entry = lookup(value);
+
+        if (entry < 0) {
+            return -1;
+        }
+
+        if (symbols.kind(entry) != SymbolTable.CONST && symbols.kind(entry) != SymbolTable.LITERAL) {
+            error(value, quoted(value) + " is not a constant");
+            return -1;
+        }
+
+        return symbols.info(entry);
+    }
+
+    private void checkInteger(ASTNode literal) {
+        if (integerValue(literal) < 0) {
+            error(literal, literal.getChild(0).getRuleName() + " is too large for an integer, which is at most " + Integer.MAX_VALUE);
+        }
+    }
+
+    // Returns the type entry, or -1 when name is not a type.
+    private int checkType(ASTNode name) {
+        int entry = lookup(name);
+
+        if (entry >= 0 && symbols.kind(entry) != SymbolTable.TYPE) {
+            error(name, quoted(name) + " is not a type");
+            return -1;
+        }
+
+        return entry;
+    }
+
+    private void checkEndName(ASTNode name, ASTNode endName) {
+        if (symbolOf(name) != symbolOf(endName)) {
+            error(endName, "ends with " + quoted(endName) + " instead of " + quoted(name));
+        }
+    }
+
+    private int declare(ASTNode name, int kind, int info) {
+        int entry = symbols.declare(symbolOf(name), kind, info);
+
+        if (entry < 0) {
+            error(name, quoted(name) + " is already declared");
+        }
+
+        return entry;
+    }
+
+    // the entry of a name, or -1 after reporting it undeclared
+    private int lookup(ASTNode name) {
+        int entry = symbols.lookup(symbolOf(name));
+
+        if (entry < 0) {
+            error(name, quoted(name) + " is not declared");
+        }
+
+        return entry;
+    }
+
+    // at the token node was built from, when it was built from one
+    private void error(ASTNode node, String message) {
+        String at = node.getLine() > 0 ? " near line: " + node.getLine() + " col: " + node.getCol() : "";
+        diagnostics.report("Semantic error in " + where + at + " \n" + message);
+    }
+
+    // The value of an <integer>, or -1 when it does not fit in an int. Checked programs have none
+    // of those, so the backends take their values from here as well.
+    public static int integerValue(ASTNode literal) {
+        String digits = literal.getChild(0).getRuleName();
+        long value = 0;
+
+        for (int i = 0; i < digits.length(); i++) {
+            value = value * 10 + (digits.charAt(i) - '0');
+
+            if (value > Integer.MAX_VALUE) {
+                return -1;
+            }
+        }
+
+        return (int) value;
+    }
+
+    // the id of the name under an <identifier> node
+    private static int symbolOf(ASTNode identifier) {
+        return identifier.getChild(0).getSymbol();
+    }
+
+    private String nameOf(ASTNode identifier) {
+        return names.name(symbolOf(identifier));
+    }
+
+    private String quoted(ASTNode identifier) {
+        return "'" + nameOf(identifier) + "'";
+    }
+}
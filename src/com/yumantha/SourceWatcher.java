@@ -0,0 +1,166 @@
+package com.yumantha;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Keeps the .tree outputs of one or more directory trees up to date. Every source is compiled
+// once at start; after that a source is recompiled only when its content hash changes, so touches
+// and editor re-saves of identical content cost one read and no compile.
+public class SourceWatcher {
+    // events arriving within this window of each other are handled as one batch
+    private static final long QUIET_MILLIS = 50;
+
+    private final List<Path> roots;
+    private final PrintStream err;
+    private final WatchService watcher;
+    private final Map<WatchKey, Path> directories;
+    private final Map<Path, byte[]> hashes;
+
+    public SourceWatcher(List<Path> roots, PrintStream err) throws IOException {
+        this.roots = roots;
+        this.err = err;
+        this.watcher = FileSystems.getDefault().newWatchService();
+        this.directories = new HashMap<WatchKey, Path>();
+        this.hashes = new HashMap<Path, byte[]>();
+    }
+
+    // Runs until the thread is interrupted.
+    public void watch() throws IOException {
+        try {
+            for (Path root : roots) {
+                register(root);
+            }
+
+            while (true) {
+                Set<Path> changed = new LinkedHashSet<Path>();
+                WatchKey key = watcher.take();
+
+                while (key != null) {
+                    collect(key, changed);
+                    key = watcher.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                for (Path file : changed) {
+                    recompile(file);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            watcher.close();
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changed) throws IOException {
+        Path directory = directories.get(key);
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // events were dropped; the hashes tell which files really changed
+                for (Path root : roots) {
+                    changed.addAll(sources(root));
+                }
+                continue;
+            }
+
+            Path file = directory.resolve((Path) event.context());
+
+            if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                changed.remove(file);
+
+                // the tree of a source that is gone would only mislead
+                if (hashes.remove(file) != null && Files.deleteIfExists(treeOf(file))) {
+                    err.println(file + ": deleted, removed " + treeOf(file).getFileName());
+                }
+            } else if (Files.isDirectory(file)) {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    register(file);
+                }
+            } else if (BatchCompiler.isSource(file)) {
+                changed.add(file);
+            }
+        }
+
+        if (!key.reset()) {
+            directories.remove(key);
+        }
+    }
+
+    // Watches every directory under root and compiles the sources found there.
+    private void register(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path directory : paths.filter(Files::isDirectory).collect(Collectors.toList())) {
+                WatchKey key = directory.register(watcher,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY,
+                        StandardWatchEventKinds.ENTRY_DELETE);
+                directories.put(key, directory);
+            }
+        }
+
+        for (Path file : sources(root)) {
+            recompile(file);
+        }
+    }
+
+    private List<Path> sources(Path root) throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isRegularFile).filter(BatchCompiler::isSource).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private void recompile(Path file) {
+        byte[] content;
+
+        try {
+            content = Files.readAllBytes(file);
+        } catch (IOException e) {
+            // gone again before we got to it; a delete event follows
+            return;
+        }
+
+        byte[] hash = hash(content);
+
+        if (Arrays.equals(hash, hashes.get(file))) {
+            return;
+        }
+
+        hashes.put(file, hash);
+
+        // the bytes that were hashed, so the tree always belongs to the recorded hash
+        CompileResult result = BatchCompiler.compileToFile(file.toString(), ByteBuffer.wrap(content), null, null);
+        err.println(result);
+    }
+
+    private static Path treeOf(Path source) {
+        return source.resolveSibling(source.getFileName() + BatchCompiler.TREE_SUFFIX);
+    }
+
+    private static byte[] hash(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    }
+}
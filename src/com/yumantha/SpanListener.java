@@ -0,0 +1,8 @@
+package com.yumantha;
+
+// Told by Parser the source range of every fcn and block node, right after the node is built.
+// end is the offset of the token that follows the node, so the range includes trailing
+// whitespace and comments.
+public interface SpanListener {
+    void span(int start, int end);
+}
@@ -0,0 +1,161 @@
+package com.yumantha;
+
+import java.util.Arrays;
+
+// Names declared in nested scopes, looked up by their NamePool id. Each declaration is an entry in
+// flat parallel arrays. An open-addressing table maps a name to its innermost entry, and every
+// entry remembers the one it shadows, so leaving a scope restores the outer declarations in place.
+// Table slots are never freed: a name whose last declaration went out of scope keeps its slot,
+// with no entry, for when it is declared again.
+public class SymbolTable {
+    public static final int TYPE = 0;
+    public static final int CONST = 1;
+    // a value of an enumerated type, or true and false
+    public static final int LITERAL = 2;
+    public static final int VARIABLE = 3;
+    public static final int FUNCTION = 4;
+
+    // per entry
+    private int[] names;
+    private int[] kinds;
+    private int[] infos;
+    private int[] shadowed;
+    private int size;
+
+    // first entry of each open scope
+    private int[] scopes;
+    private int depth;
+
+    // name id + 1, 0 for a free slot, and the innermost entry of that name or -1
+    private int[] keys;
+    private int[] innermost;
+    private int used;
+
+    public SymbolTable() {
+        this.names = new int[64];
+        this.kinds = new int[64];
+        this.infos = new int[64];
+        this.shadowed = new int[64];
+        this.size = 0;
+        this.scopes = new int[4];
+        this.depth = 0;
+        this.keys = new int[128];
+        this.innermost = new int[128];
+        this.used = 0;
+    }
+
+    public void enterScope() {
+        if (depth == scopes.length) {
+            scopes = Arrays.copyOf(scopes, depth * 2);
+        }
+
+        scopes[depth++] = size;
+    }
+
+    public void exitScope() {
+        int first = scopes[--depth];
+
+        while (size > first) {
+            size--;
+            innermost[slot(names[size])] = shadowed[size];
+        }
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    // Returns the new entry, or -1 when the name is already declared in the innermost scope.
+    // info is whatever the caller keeps for the kind: the type entry of a value, or the parameter
+    // count of a function.
+    public int declare(int name, int kind, int info) {
+        int slot = slot(name);
+
+        if (keys[slot] == 0) {
+            keys[slot] = name + 1;
+            innermost[slot] = -1;
+            used++;
+        }
+
+        int outer = innermost[slot];
+
+        if (outer >= scopes[depth - 1]) {
+            return -1;
+        }
+
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            kinds = Arrays.copyOf(kinds, size * 2);
+            infos = Arrays.copyOf(infos, size * 2);
+            shadowed = Arrays.copyOf(shadowed, size * 2);
+        }
+
+        int entry = size++;
+        names[entry] = name;
+        kinds[entry] = kind;
+        infos[entry] = info;
+        shadowed[entry] = outer;
+        innermost[slot] = entry;
+
+        // keep the load factor at or below one half
+        if (used * 2 > keys.length) {
+            rehash();
+        }
+
+        return entry;
+    }
+
+    // the innermost visible entry for name, or -1
+    public int lookup(int name) {
+        int mask = keys.length - 1;
+
+        for (int slot = name & mask; ; slot = (slot + 1) & mask) {
+            if (keys[slot] == name + 1) {
+                return innermost[slot];
+            }
+
+            if (keys[slot] == 0) {
+                return -1;
+            }
+        }
+    }
+
+    public int name(int entry) {
+        return names[entry];
+    }
+
+    public int kind(int entry) {
+        return kinds[entry];
+    }
+
+    public int info(int entry) {
+        return infos[entry];
+    }
+
+    // the slot holding name, or the free slot it goes in; ids are dense, so their low bits spread well
+    private int slot(int name) {
+        int mask = keys.length - 1;
+        int slot = name & mask;
+
+        while (keys[slot] != 0 && keys[slot] != name + 1) {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        int[] oldInnermost = innermost;
+        keys = new int[oldKeys.length * 2];
+        innermost = new int[oldKeys.length * 2];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(oldKeys[i] - 1);
+                keys[slot] = oldKeys[i];
+                innermost[slot] = oldInnermost[i];
+            }
+        }
+    }
+}
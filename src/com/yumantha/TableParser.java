@@ -0,0 +1,140 @@
+package com.yumantha;
+
+import java.util.Arrays;
+
+// An LL(1) parser driven by the tables ParserGenerator builds from grammar/winzigc.grammar. It builds
+// the same trees as Parser, through the same TreeBuilder calls, but chooses each production with
+// an array lookup on the lookahead's Token.Type ordinal instead of a chain of comparisons. Stops at
+// the first error.
+public class TableParser {
+    private static final Token.Type[] types = Token.Type.values();
+    // NamePool wrapper symbol for terminals that become leaves, -1 for the others
+    private static final int[] leafWrapper = new int[types.length];
+
+    static {
+        if (ParseTables.TERMINALS != types.length) {
+            throw new IllegalStateException("ParseTables was built for other tokens, run make tables");
+        }
+
+        for (int t = 0; t < types.length; t++) {
+            if (!types[t].name().equals(ParseTables.terminals[t])) {
+                throw new IllegalStateException("ParseTables was built for other tokens, run make tables");
+            }
+        }
+
+        Arrays.fill(leafWrapper, -1);
+        leafWrapper[Token.Type.IDENTIFIER.ordinal()] = NamePool.IDENTIFIER;
+        leafWrapper[Token.Type.STRING.ordinal()] = NamePool.STRING;
+        leafWrapper[Token.Type.INTEGER.ordinal()] = NamePool.INTEGER;
+        leafWrapper[Token.Type.CHAR.ordinal()] = NamePool.CHAR;
+    }
+
+    public static ASTNode parseWinzig(TokenStream input) {
+        ASTNodeBuilder builder = new ASTNodeBuilder(input.names(), input);
+
+        if (parseWinzig(input, builder)) {
+            return builder.root();
+        } else {
+            return null;
+        }
+    }
+
+    // Returns true when the builder ends up holding exactly one finished tree.
+    public static boolean parseWinzig(TokenStream input, TreeBuilder tree) {
+        NamePool names = input.names();
+        int[] labels = new int[ParseTables.labels.length];
+
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = names.intern(ParseTables.labels[i]);
+        }
+
+        int[] stack = new int[64];
+        int top = 0;
+        int[] marks = new int[32];
+        int markTop = 0;
+        int tokenIndex = 0;
+        int current = input.type().ordinal();
+
+        stack[top++] = Token.Type.EOF.ordinal();
+        stack[top++] = ParseTables.START;
+
+        while (top > 0) {
+            int symbol = stack[--top];
+
+            if (symbol < ParseTables.TERMINALS) {
+                if (symbol != current) {
+                    throw error(input, "Expected " + types[symbol]);
+                }
+
+                if (leafWrapper[current] >= 0) {
+                    tree.buildTree(input.symbol(), 0, tokenIndex);
+                    tree.buildTree(leafWrapper[current], 1, tokenIndex);
+                }
+
+                input.advance();
+                tokenIndex++;
+                current = input.type().ordinal();
+            } else if (symbol < ParseTables.POP) {
+                int nonterminal = symbol - ParseTables.TERMINALS;
+                int slot = ParseTables.base[nonterminal] + current;
+
+                if (ParseTables.check[slot] != nonterminal) {
+                    throw error(input, expected(nonterminal));
+                }
+
+                if (ParseTables.marks[nonterminal]) {
+                    if (markTop == marks.length) {
+                        marks = Arrays.copyOf(marks, markTop * 2);
+                    }
+
+                    marks[markTop++] = tree.depth();
+                }
+
+                int production = ParseTables.next[slot];
+                int from = ParseTables.rhsStart[production];
+                int to = ParseTables.rhsStart[production + 1];
+
+                if (top + (to - from) > stack.length) {
+                    stack = Arrays.copyOf(stack, (top + to - from) * 2);
+                }
+
+                for (int i = from; i < to; i++) {
+                    stack[top++] = ParseTables.rhs[i];
+                }
+            } else if (symbol == ParseTables.POP) {
+                markTop--;
+            } else {
+                int mark = marks[markTop - 1];
+                tree.buildTree(labels[symbol - ParseTables.BUILD], tree.depth() - mark, -1);
+            }
+        }
+
+        return tree.depth() == 1;
+    }
+
+    private static RuntimeException error(TokenStream input, String expected) {
+        return new RuntimeException("Parse error near line: " + input.line() + " col: " + input.col() + " \n" + expected);
+    }
+
+    // the tokens nonterminal has a production for, in Parser's wording
+    private static String expected(int nonterminal) {
+        StringBuilder text = new StringBuilder("Expected: ");
+        int base = ParseTables.base[nonterminal];
+        int count = 0;
+
+        for (int t = 0; t < types.length; t++) {
+            if (ParseTables.check[base + t] == nonterminal) {
+                count++;
+            }
+        }
+
+        for (int t = 0, seen = 0; t < types.length; t++) {
+            if (ParseTables.check[base + t] == nonterminal) {
+                seen++;
+                text.append(types[t]).append(seen == count ? "" : (seen == count - 1 ? " or " : ", "));
+            }
+        }
+
+        return text.toString();
+    }
+}
@@ -0,0 +1,153 @@
+package com.yumantha;
+
+import java.util.Arrays;
+
+// Tokens stored column-wise over the source text: one slot per token in each primitive array,
+// with the token text only materialised when text(i) is called.
+public class TokenBuffer {
+    private static final Token.Type[] types = Token.Type.values();
+
+    private final CharSequence source;
+    private final NamePool names;
+    private byte[] type;
+    private int[] start;
+    private int[] length;
+    private int[] line;
+    private int[] col;
+    private int size;
+    private int eofLine;
+    private int eofCol;
+
+    TokenBuffer(CharSequence source, NamePool names) {
+        int capacity = source.length() / 6 + 16;
+
+        this.source = source;
+        this.names = names;
+        this.type = new byte[capacity];
+        this.start = new int[capacity];
+        this.length = new int[capacity];
+        this.line = new int[capacity];
+        this.col = new int[capacity];
+        this.size = 0;
+    }
+
+    void add(Token.Type t_type, int tokenStart, int tokenEnd, int tokenLine, int tokenCol) {
+        if (size == type.length) {
+            int capacity = size + (size >> 1) + 1;
+
+            type = Arrays.copyOf(type, capacity);
+            start = Arrays.copyOf(start, capacity);
+            length = Arrays.copyOf(length, capacity);
+            line = Arrays.copyOf(line, capacity);
+            col = Arrays.copyOf(col, capacity);
+        }
+
+        type[size] = (byte) t_type.ordinal();
+        start[size] = tokenStart;
+        length[size] = tokenEnd - tokenStart;
+        line[size] = tokenLine;
+        col[size] = tokenCol;
+        size++;
+    }
+
+    void setEof(int line, int col) {
+        this.eofLine = line;
+        this.eofCol = col;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Token.Type type(int i) {
+        return types[type[i]];
+    }
+
+    public int start(int i) {
+        return start[i];
+    }
+
+    public int length(int i) {
+        return length[i];
+    }
+
+    public int line(int i) {
+        return line[i];
+    }
+
+    public int col(int i) {
+        return col[i];
+    }
+
+    public String text(int i) {
+        String text = Lexer.fixedText(types[type[i]]);
+
+        if (text != null) {
+            return text;
+        }
+
+        return names.name(symbol(i));
+    }
+
+    public int symbol(int i) {
+        return names.intern(source, start[i], start[i] + length[i]);
+    }
+
+    public NamePool names() {
+        return names;
+    }
+
+    public Token get(int i) {
+        return new Token(type(i), text(i), line[i], col[i]);
+    }
+
+    public TokenStream stream() {
+        return new Cursor();
+    }
+
+    private class Cursor implements TokenStream {
+        private int index = 0;
+
+        @Override
+        public Token.Type type() {
+            return index < size ? types[type[index]] : Token.Type.EOF;
+        }
+
+        @Override
+        public String text() {
+            return index < size ? TokenBuffer.this.text(index) : "<EOF>";
+        }
+
+        @Override
+        public int symbol() {
+            return TokenBuffer.this.symbol(index);
+        }
+
+        @Override
+        public NamePool names() {
+            return names;
+        }
+
+        @Override
+        public int line() {
+            return index < size ? line[index] : eofLine;
+        }
+
+        @Override
+        public int col() {
+            return index < size ? col[index] : eofCol;
+        }
+
+        @Override
+        public int offset() {
+            return index < size ? start[index] : source.length();
+        }
+
+        @Override
+        public void advance() {
+            if (index < size) {
+                index++;
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.yumantha;
+
+import java.util.ArrayList;
+
+public class TokenListStream implements TokenStream {
+    private ArrayList<Token> input;
+    private int inputIndex;
+    private Token currentToken;
+    private Token eof;
+    private NamePool names;
+
+    public TokenListStream(ArrayList<Token> input) {
+        this(input, new NamePool());
+    }
+
+    public TokenListStream(ArrayList<Token> input, NamePool names) {
+        this.input = input;
+        this.names = names;
+        this.inputIndex = 0;
+
+        if (input.isEmpty()) {
+            this.eof = new Token(Token.Type.EOF, "<EOF>", 0, 0);
+        } else {
+            Token last = input.get(input.size() - 1);
+            this.eof = new Token(Token.Type.EOF, "<EOF>", last.line, last.endCol);
+        }
+
+        this.currentToken = checkFirst();
+    }
+
+    @Override
+    public Token.Type type() {
+        return currentToken.t_type;
+    }
+
+    @Override
+    public String text() {
+        return currentToken.text;
+    }
+
+    @Override
+    public int symbol() {
+        return names.intern(currentToken.text);
+    }
+
+    @Override
+    public NamePool names() {
+        return names;
+    }
+
+    @Override
+    public int line() {
+        return currentToken.line;
+    }
+
+    @Override
+    public int col() {
+        return currentToken.col;
+    }
+
+    @Override
+    public int offset() {
+        return -1;
+    }
+
+    @Override
+    public void advance() {
+        if (inputIndex < input.size()) {
+            inputIndex++;
+        }
+
+        currentToken = checkFirst();
+    }
+
+    private Token checkFirst() {
+        if (inputIndex < input.size()) {
+            return input.get(inputIndex);
+        }
+
+        return eof;
+    }
+}
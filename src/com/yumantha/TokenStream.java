@@ -0,0 +1,23 @@
+package com.yumantha;
+
+// A cursor over tokens with single-token lookahead. Once the input is exhausted the cursor
+// stays on an EOF token positioned just after the last real token.
+public interface TokenStream {
+    Token.Type type();
+
+    String text();
+
+    // id of text() in names(), for identifier and literal tokens
+    int symbol();
+
+    NamePool names();
+
+    int line();
+
+    int col();
+
+    // source offset of the current token, or -1 when the tokens do not come from source text
+    int offset();
+
+    void advance();
+}
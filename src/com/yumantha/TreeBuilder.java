@@ -0,0 +1,11 @@
+package com.yumantha;
+
+// Receives the tree bottom-up from Parser: each call turns the last n finished subtrees into the
+// children of a new node labelled with symbol. token is the index of the token a leaf was read
+// from, or -1 for interior nodes.
+public interface TreeBuilder {
+    void buildTree(int symbol, int n, int token);
+
+    // number of finished subtrees that have not been given a parent yet
+    int depth();
+}
@@ -0,0 +1,182 @@
+package com.yumantha;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+// Writes the indented ". label(n)" tree text. Depth is carried on an explicit stack instead of
+// being recomputed from parent pointers, and lines are assembled in one reusable char buffer.
+public class TreeWriter {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    public static void write(ASTNode root, Writer out) throws IOException {
+        TreeWriter writer = new TreeWriter(out);
+        writer.writeNodes(root);
+        writer.flush();
+    }
+
+    public static void write(ASTArena arena, Writer out) throws IOException {
+        TreeWriter writer = new TreeWriter(out);
+        writer.writeNodes(arena);
+        writer.flush();
+    }
+
+    public static void write(BinaryTree tree, Writer out) throws IOException {
+        TreeWriter writer = new TreeWriter(out);
+        BinaryTree.Cursor cursor = tree.cursor();
+
+        while (cursor.next()) {
+            writer.writeLine(cursor.depth(), cursor.labelText(), cursor.childCount());
+        }
+
+        writer.flush();
+    }
+
+    private final Writer out;
+    private char[] buffer;
+    private int count;
+    private char[] indent;
+
+    private TreeWriter(Writer out) {
+        this.out = out;
+        this.buffer = new char[BUFFER_SIZE];
+        this.count = 0;
+        this.indent = new char[0];
+    }
+
+    private void writeNodes(ASTNode root) throws IOException {
+        ASTNode[] nodes = new ASTNode[32];
+        int[] depths = new int[32];
+        int top = 0;
+
+        nodes[top] = root;
+        depths[top] = root.getLevel();
+        top++;
+
+        while (top > 0) {
+            top--;
+            ASTNode node = nodes[top];
+            int depth = depths[top];
+            nodes[top] = null;
+
+            writeLine(depth, node.getRuleName(), node.getN());
+
+            int n = node.getChildCount();
+
+            if (top + n > nodes.length) {
+                nodes = Arrays.copyOf(nodes, (top + n) * 2);
+                depths = Arrays.copyOf(depths, (top + n) * 2);
+            }
+
+            // push children last-to-first so the first child is written next
+            for (int i = n - 1; i >= 0; i--) {
+                nodes[top] = node.getChild(i);
+                depths[top] = depth + 1;
+                top++;
+            }
+        }
+    }
+
+    private void writeNodes(ASTArena arena) throws IOException {
+        if (arena.size() == 0) {
+            return;
+        }
+
+        int[] nodes = new int[32];
+        int[] depths = new int[32];
+        int top = 0;
+
+        nodes[top] = arena.root();
+        depths[top] = 0;
+        top++;
+
+        while (top > 0) {
+            top--;
+            int node = nodes[top];
+            int depth = depths[top];
+            int n = arena.childCount(node);
+
+            writeLine(depth, arena.label(node), n);
+
+            if (top + n > nodes.length) {
+                nodes = Arrays.copyOf(nodes, (top + n) * 2);
+                depths = Arrays.copyOf(depths, (top + n) * 2);
+            }
+
+            for (int i = n - 1; i >= 0; i--) {
+                nodes[top] = arena.child(node, i);
+                depths[top] = depth + 1;
+                top++;
+            }
+        }
+    }
+
+    private void writeLine(int depth, String label, int n) throws IOException {
+        int prefix = 2 * depth;
+        // label, parentheses, up to 11 digits of n and the newline
+        int needed = prefix + label.length() + 14;
+
+        if (count + needed > buffer.length) {
+            flushBuffer();
+
+            if (needed > buffer.length) {
+                buffer = new char[needed];
+            }
+        }
+
+        if (prefix > indent.length) {
+            growIndent(prefix);
+        }
+
+        System.arraycopy(indent, 0, buffer, count, prefix);
+        count += prefix;
+
+        label.getChars(0, label.length(), buffer, count);
+        count += label.length();
+
+        buffer[count++] = '(';
+        appendInt(n);
+        buffer[count++] = ')';
+        buffer[count++] = '\n';
+    }
+
+    private void appendInt(int value) {
+        if (value < 0) {
+            buffer[count++] = '-';
+            value = -value;
+        }
+
+        int start = count;
+
+        do {
+            buffer[count++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+
+        // digits were produced least significant first
+        for (int i = start, j = count - 1; i < j; i++, j--) {
+            char c = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = c;
+        }
+    }
+
+    private void growIndent(int prefix) {
+        indent = new char[Math.max(prefix, indent.length * 2)];
+
+        for (int i = 0; i < indent.length; i += 2) {
+            indent[i] = '.';
+            indent[i + 1] = ' ';
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, count);
+        count = 0;
+    }
+
+    private void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+}
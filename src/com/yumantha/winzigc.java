@@ -1,37 +1,450 @@
 package com.yumantha;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 public class winzigc {
-    private static final String usage = "Usage: java -jar winzigc.jar -ast input-file > output-file";
+    private static final String usage = "Usage: java -jar winzigc.jar -ast input-file > output-file\n"
+            + "           --stats[=file] with -ast or -batch writes per-phase times and allocation\n"
+            + "           as JSON lines to standard error or the file\n"
+            + "       java -jar winzigc.jar -ast-binary input-file output-file\n"
+            + "           write the tree in the compact binary form\n"
+            + "       java -jar winzigc.jar -ast-text binary-file > output-file\n"
+            + "           turn a binary tree back into the text -ast writes\n"
+            + "       java -jar winzigc.jar -check [-lenient] input-file\n"
+            + "           check that every name is declared and used as what it is declared as\n"
+            + "       java -jar winzigc.jar -run [-lenient] input-file\n"
+            + "           check the program, compile it to JVM bytecode and run it on standard input\n"
+            + "           and output; -lenient declares names that are assigned but never declared,\n"
+            + "           like d in the samples' d:=f(x), as integer variables of the program\n"
+            + "       java -jar winzigc.jar -interpret [-lenient] input-file\n"
+            + "           run the program in the bytecode interpreter, without generating classes\n"
+            + "       java -jar winzigc.jar -jar [-lenient] input-file output-jar\n"
+            + "           write the compiled program as a jar that runs with java -jar\n"
+            + "       java -jar winzigc.jar -generate [-seed n] [-size chars] [-functions n] [-depth n]\n"
+            + "                                 [-expr n] [-cases n] [-comments p] [-whitespace p]\n"
+            + "           write a random valid program, the same one for the same options\n"
+            + "       java -jar winzigc.jar -batch [-j threads] path...\n"
+            + "           path is a source file, a directory or @file-list; directories are searched\n"
+            + "           recursively for sources named like the samples (no extension) or *.wz\n"
+            + "           each tree is written next to its source as <source>.tree\n"
+            + "           with WINZIGC_CACHE set to a directory, trees of unchanged sources are\n"
+            + "           taken from there (size limit WINZIGC_CACHE_LIMIT bytes, default 256 MB)\n"
+            + "       java -jar winzigc.jar -watch directory...\n"
+            + "           compile every source below the directories, then recompile each one\n"
+            + "           whose content changes until interrupted\n"
+            + "       java -jar winzigc.jar -server [-socket socket-file]\n"
+            + "           keep a warm compiler listening on a UNIX domain socket\n"
+            + "       java -jar winzigc.jar -client [-socket socket-file] -ast|-ast-binary|-ast-text|-batch ...\n"
+            + "           run the command on the server and stream its output back";
+    // the modes that check names before going on, and so take -lenient
+    private static final List<String> checkedModes = Arrays.asList("-check", "-run", "-interpret", "-jar");
     private static final String invArgs = "Invalid arguments\nUse -h or --help for help";
 
     public static void main(String[] args) throws IOException {
         List<String> argList = Arrays.asList(args);
 
-        String inFile = null;
+        if (!argList.isEmpty() && (argList.get(0).equals("-server") || argList.get(0).equals("-client"))) {
+            List<String> rest = new ArrayList<String>(argList.subList(1, argList.size()));
+            Path socket = CompileServer.defaultSocket();
+
+            if (rest.size() >= 2 && rest.get(0).equals("-socket")) {
+                socket = Paths.get(rest.get(1));
+                rest = rest.subList(2, rest.size());
+            }
+
+            if (argList.get(0).equals("-server") && rest.isEmpty()) {
+                try {
+                    new CompileServer(socket).serve();
+                } catch (IOException e) {
+                    System.err.println(e.getMessage());
+                    System.exit(1);
+                }
 
-        if (argList.size() == 1) {
-            if (argList.contains("-h") || argList.contains("--help")) {
-                System.out.println(usage);
                 System.exit(0);
+            } else if (argList.get(0).equals("-client") && !rest.isEmpty()) {
+                System.exit(CompileClient.run(socket, rest));
+            }
+
+            System.out.println(invArgs);
+            System.exit(1);
+        }
+
+        System.exit(run(argList, Paths.get(""), System.out, System.err));
+    }
+
+    // Runs one command line. Relative paths are resolved against workingDirectory so the
+    // server can run commands on behalf of clients started elsewhere.
+    public static int run(List<String> argList, Path workingDirectory, PrintStream out, PrintStream err) throws IOException {
+        // --stats[=file] may go anywhere on the command line
+        List<String> rest = new ArrayList<String>();
+        String statsFile = null;
+
+        for (String arg : argList) {
+            if (arg.equals("--stats")) {
+                statsFile = "";
+            } else if (arg.startsWith("--stats=")) {
+                statsFile = arg.substring("--stats=".length());
             } else {
-                System.out.println(invArgs);
-                System.exit(1);
+                rest.add(arg);
+            }
+        }
+
+        if (statsFile == null) {
+            return run(rest, workingDirectory, out, err, null);
+        } else if (statsFile.isEmpty()) {
+            return run(rest, workingDirectory, out, err, err);
+        }
+
+        try (PrintStream stats = new PrintStream(Files.newOutputStream(workingDirectory.resolve(statsFile)), false, FileHandler.SOURCE_CHARSET)) {
+            return run(rest, workingDirectory, out, err, stats);
+        }
+    }
+
+    private static int run(List<String> argList, Path workingDirectory, PrintStream out, PrintStream err, PrintStream stats) throws IOException {
+        // -lenient goes straight after the mode it applies to
+        boolean lenient = argList.size() >= 2 && checkedModes.contains(argList.get(0)) && argList.get(1).equals("-lenient");
+
+        if (lenient) {
+            List<String> rest = new ArrayList<String>(argList);
+            rest.remove(1);
+            argList = rest;
+        }
+
+        if (argList.size() == 1 && (argList.contains("-h") || argList.contains("--help"))) {
+            out.println(usage);
+            return 0;
+        } else if (argList.size() == 2 && argList.get(0).equals("-ast")) {
+            return compileSingle(workingDirectory.resolve(argList.get(1)).toString(), out, err, stats);
+        } else if (argList.size() == 3 && argList.get(0).equals("-ast-binary")) {
+            return compileBinary(workingDirectory.resolve(argList.get(1)).toString(), workingDirectory.resolve(argList.get(2)).toString(), err);
+        } else if (argList.size() == 2 && argList.get(0).equals("-ast-text")) {
+            return binaryToText(workingDirectory.resolve(argList.get(1)).toString(), out, err);
+        } else if (argList.size() == 2 && argList.get(0).equals("-check")) {
+            return checkProgram(workingDirectory.resolve(argList.get(1)).toString(), lenient, err);
+        } else if (argList.size() == 2 && argList.get(0).equals("-run")) {
+            return runProgram(workingDirectory.resolve(argList.get(1)).toString(), false, lenient, out, err);
+        } else if (argList.size() == 2 && argList.get(0).equals("-interpret")) {
+            return runProgram(workingDirectory.resolve(argList.get(1)).toString(), true, lenient, out, err);
+        } else if (argList.size() == 3 && argList.get(0).equals("-jar")) {
+            return writeJar(workingDirectory.resolve(argList.get(1)).toString(), workingDirectory.resolve(argList.get(2)), lenient, err);
+        } else if (argList.size() >= 1 && argList.get(0).equals("-generate")) {
+            return generate(argList.subList(1, argList.size()), out);
+        } else if (argList.size() >= 2 && argList.get(0).equals("-batch")) {
+            return compileBatch(argList.subList(1, argList.size()), workingDirectory, err, stats);
+        } else if (argList.size() >= 2 && (argList.get(0).equals("-watch") || argList.get(0).equals("--watch"))) {
+            return watch(argList.subList(1, argList.size()), workingDirectory, err);
+        }
+
+        out.println(invArgs);
+        return 1;
+    }
+
+    private static int compileSingle(String inFile, PrintStream out, PrintStream err, PrintStream stats) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out));
+        CompileStats fileStats = (stats == null) ? null : new CompileStats(inFile);
+        ParseCache cache;
+
+        try {
+            cache = ParseCache.fromEnvironment();
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            return 1;
+        }
+
+        CompileResult result = Compiler.compile(inFile, writer, cache, fileStats);
+        writer.flush();
+
+        if (stats != null) {
+            stats.println(fileStats.toJson());
+            stats.flush();
+        }
+
+        if (!result.succeeded()) {
+            err.println(result.error);
+            return 1;
+        }
+
+        return 0;
+    }
+
+    private static int compileBinary(String inFile, String outFile, PrintStream err) throws IOException {
+        CompileResult result = Compiler.compile(inFile);
+
+        if (!result.succeeded()) {
+            err.println(result.error);
+            return 1;
+        }
+
+        new FileHandler().writeBinaryAST(outFile, result.tree);
+        return 0;
+    }
+
+    private static int checkProgram(String inFile, boolean lenient, PrintStream err) {
+        CompileResult result = Compiler.compileChecked(inFile, lenient);
+
+        if (!result.succeeded()) {
+            err.println(result.error);
+            return 1;
+        }
+
+        return 0;
+    }
+
+    // as JVM classes, or in the interpreter
+    private static int runProgram(String inFile, boolean interpret, boolean lenient, PrintStream out, PrintStream err) throws IOException {
+        Interpreter interpreter = null;
+        ClassFile program = null;
+
+        if (interpret) {
+            CompileResult result = Compiler.compileChecked(inFile, lenient);
+
+            if (!result.succeeded()) {
+                err.println(result.error);
+                return 1;
+            }
+
+            try {
+                interpreter = Interpreter.compile(result.tree, result.names);
+            } catch (RuntimeException e) {
+                generationError(inFile, e, err);
+                return 1;
+            }
+        } else {
+            program = compileToClass(inFile, lenient, err);
+
+            if (program == null) {
+                return 1;
             }
-        } else if (argList.size() == 2) {
-            if (argList.get(0).equals("-ast")) {
-                inFile = argList.get(1);
+        }
+
+        try {
+            if (interpret) {
+                interpreter.run(System.in, out);
             } else {
-                System.out.println(invArgs);
-                System.exit(1);
+                JvmBackend.run(program, System.in, out);
             }
+        } catch (Throwable e) {
+            out.flush();
+            err.println("Run error: " + ProgramIO.errorMessage(e));
+            return 1;
+        }
+
+        return 0;
+    }
+
+    private static int writeJar(String inFile, Path jar, boolean lenient, PrintStream err) throws IOException {
+        ClassFile program = compileToClass(inFile, lenient, err);
+
+        if (program == null) {
+            return 1;
+        }
+
+        JvmBackend.writeJar(program, jar);
+        return 0;
+    }
+
+    // the program as a class, or null after reporting why there is none
+    private static ClassFile compileToClass(String inFile, boolean lenient, PrintStream err) {
+        CompileResult result = Compiler.compileChecked(inFile, lenient);
+
+        if (!result.succeeded()) {
+            err.println(result.error);
+            return null;
+        }
+
+        try {
+            return JvmBackend.generate(result.tree, result.names, Paths.get(inFile).getFileName().toString());
+        } catch (RuntimeException e) {
+            generationError(inFile, e, err);
+            return null;
+        }
+    }
+
+    // The backends throw plain RuntimeExceptions with messages meant for the user; anything else
+    // out of them is a compiler bug, reported with its type.
+    private static void generationError(String inFile, RuntimeException e, PrintStream err) {
+        if (e.getClass() == RuntimeException.class) {
+            err.println(inFile + ": " + e.getMessage());
         } else {
-            System.out.println(invArgs);
-            System.exit(1);
+            err.println(inFile + ": internal error while generating code: " + e);
+        }
+    }
+
+    private static int binaryToText(String inFile, PrintStream out, PrintStream err) throws IOException {
+        BinaryTree tree;
+
+        try {
+            tree = BinaryTree.map(inFile);
+        } catch (RuntimeException e) {
+            err.println(inFile + ": " + e.getMessage());
+            return 1;
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out));
+
+        try {
+            tree.writeText(writer);
+        } catch (RuntimeException e) {
+            writer.flush();
+            err.println(inFile + ": " + e.getMessage());
+            return 1;
+        }
+
+        writer.flush();
+        return 0;
+    }
+
+    private static int generate(List<String> args, PrintStream out) throws IOException {
+        ProgramGenerator generator = new ProgramGenerator();
+        long seed = 1;
+
+        if (args.size() % 2 != 0) {
+            out.println(invArgs);
+            return 1;
+        }
+
+        try {
+            for (int i = 0; i < args.size(); i += 2) {
+                String value = args.get(i + 1);
+
+                switch (args.get(i)) {
+                    case "-seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "-size":
+                        generator.size = Long.parseLong(value);
+                        break;
+                    case "-functions":
+                        generator.functions = Integer.parseInt(value);
+                        break;
+                    case "-depth":
+                        generator.depth = Integer.parseInt(value);
+                        break;
+                    case "-expr":
+                        generator.expressionLength = Integer.parseInt(value);
+                        break;
+                    case "-cases":
+                        generator.caseClauses = Integer.parseInt(value);
+                        break;
+                    case "-comments":
+                        generator.commentDensity = Double.parseDouble(value);
+                        break;
+                    case "-whitespace":
+                        generator.whitespaceDensity = Double.parseDouble(value);
+                        break;
+                    default:
+                        out.println(invArgs);
+                        return 1;
+                }
+            }
+        } catch (NumberFormatException e) {
+            out.println(invArgs);
+            return 1;
+        }
+
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out));
+        generator.generate(seed, writer);
+        writer.flush();
+        return 0;
+    }
+
+    private static int watch(List<String> args, Path workingDirectory, PrintStream err) throws IOException {
+        List<Path> roots = new ArrayList<Path>();
+
+        for (String arg : args) {
+            Path root = workingDirectory.resolve(arg);
+
+            if (!Files.isDirectory(root)) {
+                err.println("Not a directory: " + arg);
+                return 1;
+            }
+
+            roots.add(root);
+        }
+
+        new SourceWatcher(roots, err).watch();
+        return 0;
+    }
+
+    private static int compileBatch(List<String> args, Path workingDirectory, PrintStream err, PrintStream stats) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> paths = args;
+
+        if (args.get(0).equals("-j")) {
+            threads = (args.size() >= 3) ? positiveInt(args.get(1)) : -1;
+            paths = args.subList(Math.min(2, args.size()), args.size());
+
+            if (threads <= 0) {
+                err.println(invArgs);
+                return 1;
+            }
+        }
+
+        ParseCache cache;
+
+        try {
+            cache = ParseCache.fromEnvironment();
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            return 1;
+        }
+
+        List<String> inputs = BatchCompiler.collectInputs(paths, workingDirectory);
+        List<CompileStats> fileStats = null;
+
+        if (stats != null) {
+            fileStats = new ArrayList<CompileStats>();
+
+            for (String input : inputs) {
+                fileStats.add(new CompileStats(input));
+            }
+        }
+
+        List<CompileResult> results = BatchCompiler.compileAll(inputs, threads, cache, fileStats);
+        int failed = 0;
+
+        if (stats != null) {
+            for (CompileStats file : fileStats) {
+                stats.println(file.toJson());
+            }
+
+            stats.println(CompileStats.total(fileStats).toJson());
+            stats.flush();
+        }
+
+        for (CompileResult result : results) {
+            if (!result.succeeded()) {
+                err.println(result);
+                failed++;
+            }
+        }
+
+        err.println("Compiled " + (results.size() - failed) + " of " + results.size() + " files, " + failed + " failed");
+
+        if (cache != null) {
+            err.println(cache);
+        }
+
+        return failed == 0 ? 0 : 1;
+    }
+
+    // a count given on the command line, or -1 when it is not a positive integer
+    private static int positiveInt(String value) {
+        try {
+            int count = Integer.parseInt(value);
+            return count > 0 ? count : -1;
+        } catch (NumberFormatException e) {
+            return -1;
         }
-        Compiler.compile(inFile);
     }
 }